@@ -0,0 +1,46 @@
+package sml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A simple harness measuring the cold-start time of {@link Main}: every run launches a new JVM on
+ * {@code test_program.txt}, with the instruction factory created through Spring, as before the fast bootstrap, and
+ * with the default bootstrap of {@link AbstractInstructionFactory#getInstance()}.
+ * <p>
+ * Usage: {@code java sml.ColdStartBenchmark [runs]}, with the same class path as {@code Main}.
+ */
+public class ColdStartBenchmark {
+
+	public static void main(String... args) throws IOException, InterruptedException {
+		int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+		time("Spring /beans.xml", runs, "-D" + AbstractInstructionFactory.BEANS_PROPERTY + "=/beans.xml");
+		time("default bootstrap", runs);
+	}
+
+	private static void time(String name, int runs, String... options) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.addAll(Arrays.asList(options));
+		command.add(Main.class.getName());
+		command.add("test_program.txt");
+
+		long[] millis = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+					.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			if (process.waitFor() != 0)
+				throw new IllegalStateException(name + " failed with exit code " + process.exitValue());
+			millis[i] = (System.nanoTime() - start) / 1_000_000;
+		}
+		Arrays.sort(millis);
+		System.out.printf("%-20s median %5d ms  min %5d ms  max %5d ms%n",
+				name, millis[runs / 2], millis[0], millis[runs - 1]);
+	}
+}
@@ -0,0 +1,90 @@
+package sml;
+
+import sml.compiler.BlockEngine;
+import sml.compiler.BytecodeEngine;
+import sml.compiler.ClosureEngine;
+import sml.compiler.PackedEngine;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.SubInstruction;
+import sml.optimizer.PeepholeOptimizer;
+import sml.trace.TraceBuffer;
+import sml.trace.Tracer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static sml.Registers.Register.*;
+
+/**
+ * A simple timing harness comparing the execution engines of {@link Machine} on the factorial loop of
+ * {@code test_program.txt}, without the final {@code out EBX}.
+ * <p>
+ * Usage: {@code java sml.EngineBenchmark [iterations [engine...]]}, where each engine is one of {@code interpreter},
+ * {@code optimized}, {@code closure}, {@code block}, {@code packed}, {@code bytecode} and {@code traced}; run one
+ * engine per JVM to keep the profiles of the engines apart. The {@code optimized} engine is the interpreter running
+ * the program after the {@link PeepholeOptimizer}, and the {@code traced} engine is the {@link Tracer} recording into
+ * a ring buffer.
+ */
+public class EngineBenchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int MEASURED_ROUNDS = 10;
+
+	public static void main(String... args) {
+		int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+
+		Map<String, ExecutionEngine> engines = new LinkedHashMap<>();
+		engines.put("interpreter", null);
+		engines.put("optimized", null);
+		engines.put("closure", new ClosureEngine());
+		engines.put("block", new BlockEngine());
+		engines.put("packed", new PackedEngine());
+		engines.put("bytecode", new BytecodeEngine());
+		engines.put("traced", new Tracer(new TraceBuffer(1 << 16)));
+
+		if (args.length > 1)
+			engines.keySet().retainAll(List.of(args).subList(1, args.length));
+
+		for (Map.Entry<String, ExecutionEngine> engine : engines.entrySet()) {
+			Machine machine = factorial(iterations);
+			machine.setEngine(engine.getValue());
+			if (engine.getKey().equals("optimized"))
+				PeepholeOptimizer.optimize(machine);
+
+			long start = System.nanoTime();
+			machine.execute();
+			long firstRunNanos = System.nanoTime() - start;
+
+			for (int i = 0; i < WARMUP_ROUNDS; i++)
+				machine.execute();
+			start = System.nanoTime();
+			for (int i = 0; i < MEASURED_ROUNDS; i++)
+				machine.execute();
+			long nanos = System.nanoTime() - start;
+
+			System.out.printf("%-12s first run %8.3f ms %8.3f ms/run %8.3f ns/iteration%n",
+					engine.getKey(), firstRunNanos / 1e6, nanos / 1e6 / MEASURED_ROUNDS,
+					(double) nanos / ((long) MEASURED_ROUNDS * iterations));
+		}
+	}
+
+	/**
+	 * Returns a linked machine holding the factorial loop of {@code test_program.txt} for the given count.
+	 */
+	static Machine factorial(int n) {
+		Machine machine = new Machine(new Registers());
+		machine.getLabels().addLabel("f3", 3);
+		machine.getProgram().addAll(List.of(
+				new MovInstruction(null, EAX, n),
+				new MovInstruction(null, EBX, 1),
+				new MovInstruction(null, ECX, 1),
+				new MulInstruction("f3", EBX, EAX),
+				new SubInstruction(null, EAX, ECX),
+				new JnzInstruction(null, EAX, "f3")));
+		machine.link();
+		return machine;
+	}
+}
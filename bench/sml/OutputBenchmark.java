@@ -0,0 +1,76 @@
+package sml;
+
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+import sml.output.BufferedSink;
+import sml.output.CollectingSink;
+import sml.output.DiscardingSink;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static sml.Registers.Register.*;
+
+/**
+ * A simple timing harness comparing the output sinks of {@link Machine} on a loop printing every value of a
+ * countdown. The timings go to {@link System#err}, so that the printed values can be sent elsewhere.
+ * <p>
+ * Usage: {@code java sml.OutputBenchmark [values [sink...]] > /dev/null}, where each sink is one of {@code console},
+ * {@code buffered}, {@code collecting} and {@code discarding}.
+ */
+public class OutputBenchmark {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+
+	public static void main(String... args) {
+		int values = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+
+		Map<String, Supplier<OutputSink>> sinks = new LinkedHashMap<>();
+		sinks.put("console", OutputSink::console);
+		sinks.put("buffered", BufferedSink::new);
+		sinks.put("collecting", CollectingSink::new);
+		sinks.put("discarding", () -> DiscardingSink.INSTANCE);
+
+		if (args.length > 1)
+			sinks.keySet().retainAll(List.of(args).subList(1, args.length));
+
+		for (Map.Entry<String, Supplier<OutputSink>> sink : sinks.entrySet()) {
+			Machine machine = countdown(values);
+			for (int i = 0; i < WARMUP_ROUNDS; i++) {
+				machine.setOutput(sink.getValue().get());
+				machine.execute();
+			}
+			long nanos = 0;
+			for (int i = 0; i < MEASURED_ROUNDS; i++) {
+				machine.setOutput(sink.getValue().get());
+				long start = System.nanoTime();
+				machine.execute();
+				nanos += System.nanoTime() - start;
+			}
+
+			System.err.printf("%-12s %8.3f ms/run %8.3f ns/value%n",
+					sink.getKey(), nanos / 1e6 / MEASURED_ROUNDS, (double) nanos / ((long) MEASURED_ROUNDS * values));
+		}
+	}
+
+	/**
+	 * Returns a linked machine printing the values from n down to 1.
+	 */
+	static Machine countdown(int n) {
+		Machine machine = new Machine(new Registers());
+		machine.getLabels().addLabel("loop", 2);
+		machine.getProgram().addAll(List.of(
+				new MovInstruction(null, EAX, n),
+				new MovInstruction(null, ECX, 1),
+				new OutInstruction("loop", EAX),
+				new SubInstruction(null, EAX, ECX),
+				new JnzInstruction(null, EAX, "loop")));
+		machine.link();
+		return machine;
+	}
+}
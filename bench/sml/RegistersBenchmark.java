@@ -0,0 +1,111 @@
+package sml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static sml.Registers.Register.*;
+
+/**
+ * A simple timing harness for the register file, run on the factorial loop of {@code test_program.txt}.
+ * <p>
+ * The same loop is executed against a {@code HashMap<Register, Integer>} (the previous storage of {@link Registers})
+ * and against {@link Registers}, accessed both by register name and by the index instructions resolve their operands
+ * to. Every variant performs the same gets and sets without instruction dispatch, so that the timings compare the
+ * register files only.
+ * <p>
+ * Usage: {@code java sml.RegistersBenchmark [iterations]}
+ */
+public class RegistersBenchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int MEASURED_ROUNDS = 10;
+
+	public static void main(String... args) {
+		int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			hashMapFactorial(iterations);
+			namedFactorial(iterations);
+			indexedFactorial(iterations);
+		}
+
+		long mapNanos = 0, namedNanos = 0, indexedNanos = 0;
+		int mapResult = 0, namedResult = 0, indexedResult = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long start = System.nanoTime();
+			mapResult = hashMapFactorial(iterations);
+			mapNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			namedResult = namedFactorial(iterations);
+			namedNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			indexedResult = indexedFactorial(iterations);
+			indexedNanos += System.nanoTime() - start;
+		}
+
+		if (mapResult != namedResult || mapResult != indexedResult)
+			throw new IllegalStateException("Register file results differ");
+
+		report("HashMap<Register, Integer>", mapNanos, iterations);
+		report("Registers, by name", namedNanos, iterations);
+		report("Registers, by index", indexedNanos, iterations);
+		System.out.printf("speedup: %.2fx by name, %.2fx by index%n",
+				(double) mapNanos / namedNanos, (double) mapNanos / indexedNanos);
+	}
+
+	/**
+	 * Runs the factorial loop against a map-based register file, as {@link Registers} used to do.
+	 */
+	private static int hashMapFactorial(int n) {
+		Map<Registers.Register, Integer> registers = new HashMap<>();
+		for (Registers.Register register : Registers.Register.values())
+			registers.put(register, 0);
+		registers.put(EAX, n);
+		registers.put(EBX, 1);
+		registers.put(ECX, 1);
+		do {
+			registers.put(EBX, registers.get(EBX) * registers.get(EAX));
+			registers.put(EAX, registers.get(EAX) - registers.get(ECX));
+		} while (registers.get(EAX) != 0);
+		return registers.get(EBX);
+	}
+
+	/**
+	 * Runs the factorial loop against {@link Registers}, accessing the registers by name.
+	 */
+	private static int namedFactorial(int n) {
+		Registers registers = new Registers();
+		registers.set(EAX, n);
+		registers.set(EBX, 1);
+		registers.set(ECX, 1);
+		do {
+			registers.set(EBX, registers.get(EBX) * registers.get(EAX));
+			registers.set(EAX, registers.get(EAX) - registers.get(ECX));
+		} while (registers.get(EAX) != 0);
+		return registers.get(EBX);
+	}
+
+	/**
+	 * Runs the factorial loop against {@link Registers}, accessing the registers by index, as instructions do.
+	 */
+	private static int indexedFactorial(int n) {
+		int eax = Registers.indexOf(EAX), ebx = Registers.indexOf(EBX), ecx = Registers.indexOf(ECX);
+		Registers registers = new Registers();
+		registers.set(eax, n);
+		registers.set(ebx, 1);
+		registers.set(ecx, 1);
+		do {
+			registers.set(ebx, registers.get(ebx) * registers.get(eax));
+			registers.set(eax, registers.get(eax) - registers.get(ecx));
+		} while (registers.get(eax) != 0);
+		return registers.get(ebx);
+	}
+
+	private static void report(String name, long nanos, int iterations) {
+		double perIteration = (double) nanos / ((long) MEASURED_ROUNDS * iterations);
+		System.out.printf("%-32s %8.3f ms/run %8.3f ns/iteration%n",
+				name, nanos / 1e6 / MEASURED_ROUNDS, perIteration);
+	}
+}
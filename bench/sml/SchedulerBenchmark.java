@@ -0,0 +1,71 @@
+package sml;
+
+import sml.instruction.AddInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.SubInstruction;
+import sml.output.DiscardingSink;
+import sml.scheduler.Scheduler;
+import sml.scheduler.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+/**
+ * A simple timing harness running short programs on a {@link Scheduler} next to programs that never end, to show
+ * that the latency of the short programs depends on the number of machines sharing the carrier threads and not on
+ * how long the stuck ones run.
+ * <p>
+ * Usage: {@code java sml.SchedulerBenchmark [threads [stuck [short [quantum]]]]}.
+ */
+public class SchedulerBenchmark {
+
+	public static void main(String... args) throws Exception {
+		int threads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int stuck = (args.length > 1) ? Integer.parseInt(args[1]) : 1_000;
+		int programs = (args.length > 2) ? Integer.parseInt(args[2]) : 1_000;
+		long quantum = (args.length > 3) ? Long.parseLong(args[3]) : Scheduler.DEFAULT_QUANTUM;
+
+		try (Scheduler scheduler = new Scheduler(threads, quantum)) {
+			for (int i = 0; i < stuck; i++)
+				scheduler.submit(countdown(0));
+
+			List<Task> tasks = new ArrayList<>(programs);
+			long start = System.nanoTime();
+			for (int i = 0; i < programs; i++)
+				tasks.add(scheduler.submit(countdown(100_000)));
+			long[] latencies = new long[programs];
+			for (int i = 0; i < programs; i++) {
+				tasks.get(i).completion().get();
+				latencies[i] = System.nanoTime() - start;
+			}
+			Arrays.sort(latencies);
+
+			System.out.printf("%d threads, %d stuck, %d programs of 300,000 steps, quantum %d%n",
+					threads, stuck, programs, quantum);
+			System.out.printf("latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+					latencies[programs / 2] / 1e6, latencies[programs * 99 / 100] / 1e6, latencies[programs - 1] / 1e6);
+			System.out.println(scheduler.statistics());
+		}
+	}
+
+	/**
+	 * Returns a machine counting down from n to 0, which never ends if n is 0.
+	 */
+	static Machine countdown(int n) {
+		Machine machine = new Machine(new Registers());
+		machine.setOutput(DiscardingSink.INSTANCE);
+		machine.getLabels().addLabel("loop", 2);
+		machine.getProgram().addAll(List.of(
+				new MovInstruction(null, EAX, n),
+				new MovInstruction(null, ECX, 1),
+				new AddInstruction("loop", EBX, ECX),
+				new SubInstruction(null, EAX, ECX),
+				new JnzInstruction(null, EAX, "loop")));
+		machine.link();
+		return machine;
+	}
+}
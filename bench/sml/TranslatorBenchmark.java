@@ -0,0 +1,74 @@
+package sml;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A simple throughput harness comparing {@link Translator}, {@link StreamingTranslator} and
+ * {@link ParallelTranslator} on a large generated source.
+ * <p>
+ * Usage: {@code java sml.TranslatorBenchmark [lines]}
+ */
+public class TranslatorBenchmark {
+
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 5;
+
+	public static void main(String... args) throws IOException {
+		int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+		Path source = generate(lines);
+		try {
+			long bytes = Files.size(source);
+			time("Translator", bytes, () -> new Translator(source.toString())::readAndTranslate);
+			time("StreamingTranslator", bytes, () -> new StreamingTranslator(source.toString())::readAndTranslate);
+			time("ParallelTranslator", bytes, () -> new ParallelTranslator(source.toString())::readAndTranslate);
+		} finally {
+			Files.delete(source);
+		}
+	}
+
+	/**
+	 * Writes a source of the given number of lines, made of repeated labelled factorial loops.
+	 */
+	static Path generate(int lines) throws IOException {
+		Path source = Files.createTempFile("sml", ".txt");
+		try (BufferedWriter writer = Files.newBufferedWriter(source)) {
+			String[] body = {"mov EAX 6", "mov EBX 1", "mov ECX 1", "mul EBX EAX", "sub EAX ECX", "jnz EAX f", "out EBX"};
+			for (int i = 0; i < lines; i++) {
+				int loop = i / body.length;
+				String line = body[i % body.length].replace("jnz EAX f", "jnz EAX f" + loop);
+				writer.write((i % body.length == 3) ? "f" + loop + ": " + line : line);
+				writer.newLine();
+			}
+		}
+		return source;
+	}
+
+	private interface Reader {
+		void readAndTranslate(Labels labels, List<Instruction> program) throws IOException;
+	}
+
+	private interface ReaderFactory {
+		Reader create();
+	}
+
+	private static void time(String name, long bytes, ReaderFactory factory) throws IOException {
+		Labels labels = new Labels();
+		List<Instruction> program = new ArrayList<>();
+		long nanos = 0;
+		for (int i = 0; i < WARMUP_ROUNDS + MEASURED_ROUNDS; i++) {
+			Reader reader = factory.create();
+			long start = System.nanoTime();
+			reader.readAndTranslate(labels, program);
+			if (i >= WARMUP_ROUNDS)
+				nanos += System.nanoTime() - start;
+		}
+		double seconds = nanos / 1e9 / MEASURED_ROUNDS;
+		System.out.printf("%-20s %8.1f ms/run %8.1f MB/s %,12d instructions%n",
+				name, seconds * 1e3, bytes / 1e6 / seconds, program.size());
+	}
+}
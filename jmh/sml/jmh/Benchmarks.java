@@ -0,0 +1,27 @@
+package sml.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes their results as JSON, to {@code jmh-result.json} unless {@code -rff} names another
+ * file.
+ * <p>
+ * Usage: {@code java sml.jmh.Benchmarks [JMH options]}; for example, {@code -p engine=packed,bytecode ExecutionBenchmark}
+ * compares two engines only.
+ */
+public class Benchmarks {
+
+	public static void main(String... args) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.resultFormat(ResultFormatType.JSON)
+				.build();
+		new Runner(options).run();
+	}
+}
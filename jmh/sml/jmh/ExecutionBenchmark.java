@@ -0,0 +1,92 @@
+package sml.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import sml.ExecutionEngine;
+import sml.Machine;
+import sml.Registers;
+import sml.compiler.BlockEngine;
+import sml.compiler.BytecodeEngine;
+import sml.compiler.ClosureEngine;
+import sml.compiler.PackedEngine;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+import sml.optimizer.PeepholeOptimizer;
+import sml.output.DiscardingSink;
+import sml.trace.TraceBuffer;
+import sml.trace.Tracer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static sml.Registers.Register.*;
+
+/**
+ * Measures {@link Machine#execute()} on the factorial loop of {@code test_program.txt}, side by side for every
+ * execution engine. Values printed by the program are discarded. The {@code optimized} engine is the interpreter
+ * running the program after the {@link PeepholeOptimizer}.
+ * <p>
+ * A new engine is compared by adding its name to {@link #engine} and to {@link #engine(String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecutionBenchmark {
+
+	/** The engine, or {@code interpreter} for none. */
+	@Param({"interpreter", "optimized", "closure", "block", "packed", "bytecode", "traced"})
+	public String engine;
+
+	/** The number of iterations of the loop. */
+	@Param({"10", "1000", "100000"})
+	public int iterations;
+
+	private Machine machine;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		machine = factorial(iterations);
+		machine.setEngine(engine(engine));
+		if (engine.equals("optimized"))
+			PeepholeOptimizer.optimize(machine);
+		machine.setOutput(DiscardingSink.INSTANCE);
+	}
+
+	@Benchmark
+	public Registers execute() {
+		machine.execute();
+		return machine.getRegisters();
+	}
+
+	static ExecutionEngine engine(String name) {
+		return switch (name) {
+			case "interpreter", "optimized" -> null;
+			case "closure" -> new ClosureEngine();
+			case "block" -> new BlockEngine();
+			case "packed" -> new PackedEngine();
+			case "bytecode" -> new BytecodeEngine();
+			case "traced" -> new Tracer(new TraceBuffer(1 << 16));
+			default -> throw new IllegalArgumentException("Unknown engine: " + name);
+		};
+	}
+
+	/**
+	 * Returns a linked machine holding the program of {@code test_program.txt} for the given count.
+	 */
+	static Machine factorial(int n) {
+		Machine machine = new Machine(new Registers());
+		machine.getLabels().addLabel("f3", 3);
+		machine.getProgram().addAll(List.of(
+				new MovInstruction(null, EAX, n),
+				new MovInstruction(null, EBX, 1),
+				new MovInstruction(null, ECX, 1),
+				new MulInstruction("f3", EBX, EAX),
+				new SubInstruction(null, EAX, ECX),
+				new JnzInstruction(null, EAX, "f3"),
+				new OutInstruction(null, EBX)));
+		machine.link();
+		return machine;
+	}
+}
@@ -0,0 +1,57 @@
+package sml.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import sml.AbstractInstructionFactory;
+import sml.Instruction;
+import sml.InstructionFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the creation of one instruction of each opcode, by the reflective {@link InstructionFactory} and by the
+ * factory that {@link AbstractInstructionFactory#getInstance()} selects by default.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FactoryBenchmark {
+
+	private static final Map<String, String[]> OPERANDS = Map.of(
+			"add", new String[]{"EAX", "EBX"},
+			"sub", new String[]{"EAX", "EBX"},
+			"mul", new String[]{"EAX", "EBX"},
+			"div", new String[]{"EAX", "EBX"},
+			"mov", new String[]{"EAX", "42"},
+			"out", new String[]{"EAX"},
+			"jnz", new String[]{"EAX", "f3"});
+
+	/** The opcode of the instruction created. */
+	@Param({"add", "sub", "mul", "div", "mov", "out", "jnz"})
+	public String opcode;
+
+	/** The factory, {@code reflective} or {@code default}. */
+	@Param({"reflective", "default"})
+	public String factory;
+
+	private AbstractInstructionFactory instance;
+
+	private String[] operands;
+
+	private int next;
+
+	private final Supplier<String> scan = () -> operands[next++];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		instance = factory.equals("reflective") ? InstructionFactory.getInstance() : AbstractInstructionFactory.getInstance();
+		operands = OPERANDS.get(opcode);
+	}
+
+	@Benchmark
+	public Instruction createInstruction() {
+		next = 0;
+		return instance.createInstruction(null, opcode, scan);
+	}
+}
@@ -0,0 +1,50 @@
+package sml.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sml.Registers;
+
+import java.util.concurrent.TimeUnit;
+
+import static sml.Registers.Register.*;
+
+/**
+ * Measures {@link Registers#get} and {@link Registers#set}, by register name and by register file index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegistersBenchmark {
+
+	private final Registers registers = new Registers();
+
+	private final int index = Registers.indexOf(EBX);
+
+	private int value;
+
+	@Benchmark
+	public int getByName() {
+		return registers.get(EBX);
+	}
+
+	@Benchmark
+	public int getByIndex() {
+		return registers.get(index);
+	}
+
+	@Benchmark
+	public void setByName() {
+		registers.set(EBX, value++);
+	}
+
+	@Benchmark
+	public void setByIndex() {
+		registers.set(index, value++);
+	}
+
+	@Benchmark
+	public void getAll(Blackhole blackhole) {
+		for (int i = 0; i < Registers.COUNT; i++)
+			blackhole.consume(registers.get(i));
+	}
+}
@@ -0,0 +1,63 @@
+package sml.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import sml.Instruction;
+import sml.Labels;
+import sml.Translator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Translator#readAndTranslate} on generated sources of increasing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TranslatorBenchmark {
+
+	/** The number of lines of the source. */
+	@Param({"1000", "10000", "100000"})
+	public int lines;
+
+	private Path source;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		source = generate(lines);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.delete(source);
+	}
+
+	@Benchmark
+	public List<Instruction> readAndTranslate() throws IOException {
+		List<Instruction> program = new ArrayList<>(lines);
+		new Translator(source.toString()).readAndTranslate(new Labels(), program);
+		return program;
+	}
+
+	/**
+	 * Writes a source of the given number of lines, made of repeated labelled factorial loops.
+	 */
+	static Path generate(int lines) throws IOException {
+		Path source = Files.createTempFile("sml", ".txt");
+		try (BufferedWriter writer = Files.newBufferedWriter(source)) {
+			String[] body = {"mov EAX 6", "mov EBX 1", "mov ECX 1", "mul EBX EAX", "sub EAX ECX", "jnz EAX f", "out EBX"};
+			for (int i = 0; i < lines; i++) {
+				int loop = i / body.length;
+				String line = body[i % body.length].replace("jnz EAX f", "jnz EAX f" + loop);
+				writer.write((i % body.length == 3) ? "f" + loop + ": " + line : line);
+				writer.newLine();
+			}
+		}
+		return source;
+	}
+}
@@ -0,0 +1,188 @@
+package sml.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates {@code sml.GeneratedInstructionFactory}, an instruction factory without reflection, from the instruction
+ * classes annotated with {@code sml.Opcode}.
+ * <p>
+ * The generated factory selects the instruction with a {@code switch} over the opcodes and calls its constructor
+ * directly, reading the arguments from the supplier in the order of the constructor parameters. Opcodes without an
+ * annotated class are handed to the reflective {@code sml.InstructionFactory}, so instructions added without the
+ * annotation still work.
+ * <p>
+ * The factory is generated from every annotated class of the {@code sml.instruction} package, including those read
+ * from class files because an incremental build only compiles some of them, as well as from the annotated classes
+ * compiled elsewhere. The annotation therefore has class retention.
+ * <p>
+ * The generated factory is also registered as a {@code java.util.ServiceLoader} provider of
+ * {@code sml.AbstractInstructionFactory}, so that it is found without any configuration.
+ */
+@SupportedAnnotationTypes(InstructionFactoryProcessor.OPCODE)
+public final class InstructionFactoryProcessor extends AbstractProcessor {
+
+    static final String OPCODE = "sml.Opcode";
+    private static final String INSTRUCTIONS = "sml.instruction";
+    private static final String FACTORY = "sml.GeneratedInstructionFactory";
+
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if (generated || annotations.isEmpty())
+            return false;
+
+        Messager messager = processingEnv.getMessager();
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement annotation = elements.getTypeElement(OPCODE);
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (Element element : round.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS)
+                messager.printMessage(Diagnostic.Kind.ERROR, "@Opcode only applies to classes", element);
+            else
+                types.add((TypeElement) element);
+        }
+        PackageElement instructions = elements.getPackageElement(INSTRUCTIONS);
+        if (instructions != null)
+            for (TypeElement type : ElementFilter.typesIn(instructions.getEnclosedElements()))
+                if (type.getKind() == ElementKind.CLASS && isAnnotated(type, annotation))
+                    types.add(type);
+
+        Map<String, String> cases = new TreeMap<>();
+        for (TypeElement type : types) {
+            String opcode = opcode(type, annotation);
+            String creation = creation(type);
+            if (opcode == null || creation == null)
+                continue;
+            if (cases.put(opcode, creation) != null)
+                messager.printMessage(Diagnostic.Kind.ERROR, "Duplicate opcode '" + opcode + "'", type);
+        }
+
+        generated = true;
+        write(cases);
+        return true;
+    }
+
+    private static boolean isAnnotated(TypeElement type, TypeElement annotation) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors())
+            if (mirror.getAnnotationType().asElement().equals(annotation))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the opcode of the class: the value of its annotation, or else the value of its {@code OP_CODE} constant.
+     */
+    private String opcode(TypeElement type, TypeElement annotation) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation))
+                continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues().entrySet())
+                if (value.getKey().getSimpleName().contentEquals("value") && !value.getValue().getValue().toString().isEmpty())
+                    return value.getValue().getValue().toString();
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+            if (field.getSimpleName().contentEquals("OP_CODE") && field.getConstantValue() instanceof String opcode)
+                return opcode;
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "@Opcode needs a value or an OP_CODE String constant", type);
+        return null;
+    }
+
+    /**
+     * Returns the expression creating the instruction from {@code label} and {@code scan}.
+     */
+    private String creation(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (!constructor.getModifiers().contains(Modifier.PUBLIC) || parameters.isEmpty()
+                    || !parameters.get(0).asType().toString().equals("java.lang.String"))
+                continue;
+
+            List<String> arguments = new ArrayList<>();
+            arguments.add("label");
+            for (VariableElement parameter : parameters.subList(1, parameters.size())) {
+                switch (parameter.asType().toString()) {
+                    case "sml.RegisterName" -> arguments.add("Registers.Register.valueOf(scan.get())");
+                    case "int" -> arguments.add("Integer.parseInt(scan.get())");
+                    case "java.lang.String" -> arguments.add("scan.get()");
+                    default -> {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                "Unknown argument type: " + parameter.asType(), parameter);
+                        return null;
+                    }
+                }
+            }
+            return "new " + type.getQualifiedName() + "(" + String.join(", ", arguments) + ")";
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "No suitable constructor found for instruction class: " + type.getQualifiedName(), type);
+        return null;
+    }
+
+    private void write(Map<String, String> cases) {
+        Filer filer = processingEnv.getFiler();
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(FACTORY).openWriter())) {
+            out.println("package sml;");
+            out.println();
+            out.println("import java.util.function.Supplier;");
+            out.println();
+            out.println("/**");
+            out.println(" * An instruction factory generated by {@code " + getClass().getName() + "} from the classes");
+            out.println(" * annotated with {@link Opcode}. Other opcodes are created by {@link InstructionFactory}.");
+            out.println(" */");
+            out.println("public final class GeneratedInstructionFactory extends AbstractInstructionFactory {");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Instruction createInstruction(String label, String opcode, Supplier<String> scan) throws IllegalArgumentException {");
+            out.println("        return switch (opcode) {");
+            for (Map.Entry<String, String> entry : cases.entrySet())
+                out.println("            case \"" + entry.getKey() + "\" -> " + entry.getValue() + ";");
+            out.println("            default -> InstructionFactory.getInstance().createInstruction(label, opcode, scan);");
+            out.println("        };");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (PrintWriter out = new PrintWriter(filer.createResource(StandardLocation.CLASS_OUTPUT, "",
+                "META-INF/services/sml.AbstractInstructionFactory").openWriter())) {
+            out.println(FACTORY);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package sml;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.function.Supplier;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
@@ -10,22 +15,120 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
  */
 public abstract class AbstractInstructionFactory {
 
-    private static AbstractInstructionFactory instance;
-    private static BeanFactory beanFactory;
+    /** The system property naming the class of the factory to use. */
+    public static final String FACTORY_PROPERTY = "sml.instructionFactory";
+
+    /** The system property naming a Spring XML configuration defining the "InstructionFactory" bean. */
+    public static final String BEANS_PROPERTY = "sml.instructionFactory.beans";
+
+    private static final String DEFAULT_BEANS = "/beans.xml";
+
+    /**
+     * The singleton instance, or {@code null} until it has been created. A failed creation leaves it {@code null}, so
+     * that it is tried again by the next call instead of failing every later call.
+     */
+    private static volatile AbstractInstructionFactory instance;
 
     /**
-     * Returns the singleton instance of the factory.
-     * If the instance has not been initialized, creates it using Spring's BeanFactory and the "InstructionFactory" bean
-     * defined in the "/beans.xml" configuration file.
+     * Returns the singleton instance of the factory, creating it on the first call. The factory is, in order of
+     * preference:
+     * <ol>
+     *     <li>an instance of the class named by the {@value #FACTORY_PROPERTY} system property;</li>
+     *     <li>the "InstructionFactory" bean of the Spring configuration named by the {@value #BEANS_PROPERTY} system
+     *     property;</li>
+     *     <li>the first factory registered with {@link ServiceLoader}, such as the {@code GeneratedInstructionFactory}
+     *     registered by the annotation processor;</li>
+     *     <li>the "InstructionFactory" bean defined in the "/beans.xml" configuration file, if Spring is available;</li>
+     *     <li>the reflective {@link InstructionFactory}.</li>
+     * </ol>
+     * Only the second and the fourth start Spring, which costs more than translating and running most programs.
+     * The class named by {@value #FACTORY_PROPERTY} needs a public static {@code getInstance()} method, as
+     * {@link InstructionFactory} has, or a public constructor without parameters.
      *
      * @return the singleton instance of the factory.
+     * @throws IllegalStateException if the factory cannot be created; the next call tries again.
      */
     public static AbstractInstructionFactory getInstance() {
-        if (instance == null) {
-            BeanFactory beanFactory = new ClassPathXmlApplicationContext("/beans.xml");
-            instance = (AbstractInstructionFactory) beanFactory.getBean("InstructionFactory");
+        AbstractInstructionFactory factory = instance;
+        if (factory == null) {
+            synchronized (AbstractInstructionFactory.class) {
+                factory = instance;
+                if (factory == null)
+                    instance = factory = create();
+            }
+        }
+        return factory;
+    }
+
+    private static AbstractInstructionFactory create() {
+        String className = System.getProperty(FACTORY_PROPERTY);
+        if (className != null)
+            return instantiate(className);
+
+        String beans = System.getProperty(BEANS_PROPERTY);
+        if (beans != null)
+            return Spring.getBean(beans);
+
+        try {
+            return ServiceLoader.load(AbstractInstructionFactory.class).findFirst()
+                    .orElseGet(() -> Spring.isAvailable() ? Spring.getBean(DEFAULT_BEANS) : InstructionFactory.getInstance());
+        } catch (ServiceConfigurationError e) {
+            throw new IllegalStateException("Cannot load the instruction factory service", e);
+        }
+    }
+
+    private static AbstractInstructionFactory instantiate(String className) {
+        try {
+            Class<? extends AbstractInstructionFactory> type = Class.forName(className).asSubclass(AbstractInstructionFactory.class);
+            Method getInstance = singletonMethod(type);
+            if (getInstance != null)
+                return AbstractInstructionFactory.class.cast(getInstance.invoke(null));
+            return type.getConstructor().newInstance();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("The instruction factory " + className
+                    + " has neither a public static getInstance() method nor a public constructor without parameters", e);
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+            throw new IllegalStateException("Cannot create the instruction factory " + className, e);
+        }
+    }
+
+    /**
+     * Returns the public static {@code getInstance()} method declared by the given factory class, as by
+     * {@link InstructionFactory}, or {@code null} if it declares none. The method inherited from this class does not
+     * count.
+     */
+    private static Method singletonMethod(Class<?> type) {
+        try {
+            Method method = type.getMethod("getInstance");
+            return method.getDeclaringClass() == type && Modifier.isStatic(method.getModifiers()) ? method : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates factories with Spring. Kept apart so that Spring classes are only loaded when Spring is used.
+     */
+    private static final class Spring {
+
+        static boolean isAvailable() {
+            try {
+                Class.forName("org.springframework.context.support.ClassPathXmlApplicationContext", false,
+                        AbstractInstructionFactory.class.getClassLoader());
+                return AbstractInstructionFactory.class.getResource(DEFAULT_BEANS) != null;
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+
+        static AbstractInstructionFactory getBean(String configLocation) {
+            try {
+                BeanFactory beanFactory = new ClassPathXmlApplicationContext(configLocation);
+                return (AbstractInstructionFactory) beanFactory.getBean("InstructionFactory");
+            } catch (BeansException | ClassCastException e) {
+                throw new IllegalStateException("Cannot create the instruction factory from " + configLocation, e);
+            }
         }
-        return instance;
     }
 
     /**
@@ -39,6 +142,3 @@ public abstract class AbstractInstructionFactory {
      */
     public abstract Instruction createInstruction(String label, String opcode, Supplier<String> scan) throws IllegalArgumentException;
 }
-
-
-
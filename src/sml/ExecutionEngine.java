@@ -0,0 +1,18 @@
+package sml;
+
+/**
+ * A strategy for executing the program of a {@link Machine}.
+ * <p>
+ * By default a machine interprets its program one instruction at a time; an engine set with
+ * {@link Machine#setEngine(ExecutionEngine)} replaces that loop. An engine must leave the registers of the machine,
+ * and produce output, exactly as the interpreter would.
+ */
+public interface ExecutionEngine {
+
+    /**
+     * Executes the program of the machine, beginning at instruction 0 with the registers of the machine as they are.
+     *
+     * @param machine the machine whose program is executed
+     */
+    void execute(Machine machine);
+}
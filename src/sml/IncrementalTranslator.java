@@ -0,0 +1,226 @@
+package sml;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * A translator for SML sources that are edited and translated again and again, which only translates the lines
+ * that changed since the previous translation.
+ * <p>
+ * The translator remembers every line of the file with its hash and its instruction. When the file is translated
+ * again, its lines are compared with the remembered ones: the unchanged lines at the start and at the end of the
+ * file are kept, only the lines between them are translated, the instructions of the program are replaced in
+ * place, and the labels of the instructions after the edit are moved by the number of instructions added or
+ * removed. The file is still read, but the cost of translating it is that of the edit.
+ * <p>
+ * An incremental translation needs the {@code Labels} and program filled by the previous call, with the labels
+ * unmodified; if other objects are passed, or if the previous call failed, the whole file is translated. The
+ * instructions of the program may have been replaced since, for example by their linked forms by
+ * {@link Machine#link()}: the remembered instructions are then put back before the edit is applied, so that no jump
+ * keeps an address from before the edit. Lines are translated as by {@link Translator}, and the result is the same
+ * as that of {@link Translator}.
+ */
+public final class IncrementalTranslator {
+
+    /**
+     * A line of the file, with the instruction it was translated to, or {@code null} if it holds no instruction.
+     */
+    private record Line(int hash, String text, Instruction instruction) {
+
+        Line(String text, Instruction instruction) {
+            this(text.hashCode(), text, instruction);
+        }
+
+        boolean matches(String other) {
+            return hash == other.hashCode() && text.equals(other);
+        }
+
+        String label() {
+            return (instruction == null) ? null : instruction.getLabel();
+        }
+    }
+
+    private final String fileName; // source file of SML code
+    private final Translator translator;
+
+    // the lines of the previous translation, and the labels and program it filled; lines is null before the first
+    // translation and after a failed one
+    private List<Line> lines;
+    private Labels labels;
+    private List<Instruction> program;
+    private int translatedLines;
+
+    /**
+     * Constructs a new {@code IncrementalTranslator} object that will read and translate the specified file.
+     *
+     * @param fileName the name of the file containing the SML program
+     */
+    public IncrementalTranslator(String fileName) {
+        this.fileName = fileName;
+        this.translator = new Translator(fileName);
+    }
+
+    /**
+     * Translates the SML program in the file into a list of instructions, only translating the lines that changed
+     * if the labels and program are those filled by the previous call.
+     *
+     * @param labels  the {@code Labels} object to store label information in
+     * @param program the list of {@code Instruction} objects to store the translated program in
+     * @throws IOException if an I/O error occurs while reading the input file
+     */
+    public void readAndTranslate(Labels labels, List<Instruction> program) throws IOException {
+        List<String> texts = readLines();
+        List<Line> previous = lines;
+        lines = null;
+        if (previous != null && labels == this.labels && program == this.program) {
+            if (!holds(program, previous))
+                restore(program, previous);
+            lines = update(previous, texts, labels, program);
+        } else
+            lines = translate(texts, labels, program);
+        this.labels = labels;
+        this.program = program;
+    }
+
+    /**
+     * Returns the number of lines translated by the last call to {@link #readAndTranslate(Labels, List)}.
+     *
+     * @return the number of lines translated
+     */
+    public int getTranslatedLines() {
+        return translatedLines;
+    }
+
+    /**
+     * Reads the lines of the file, split at the same line separators as by {@link Scanner#nextLine()}.
+     */
+    private List<String> readLines() throws IOException {
+        String text = Files.readString(Path.of(fileName), StandardCharsets.UTF_8);
+        List<String> texts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085') {
+                texts.add(text.substring(start, i));
+                if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n')
+                    i++;
+                start = i + 1;
+            }
+        }
+        if (start < text.length())
+            texts.add(text.substring(start));
+        return texts;
+    }
+
+    /**
+     * Returns whether the program still holds exactly the instructions of the lines, the same objects in order.
+     */
+    private static boolean holds(List<Instruction> program, List<Line> lines) {
+        int address = 0;
+        for (Line line : lines) {
+            if (line.instruction() != null) {
+                if (address == program.size() || program.get(address) != line.instruction())
+                    return false;
+                address++;
+            }
+        }
+        return address == program.size();
+    }
+
+    /**
+     * Puts the instructions of the lines back into the program.
+     */
+    private static void restore(List<Instruction> program, List<Line> lines) {
+        program.clear();
+        for (Line line : lines)
+            if (line.instruction() != null)
+                program.add(line.instruction());
+    }
+
+    /**
+     * Translates every line.
+     */
+    private List<Line> translate(List<String> texts, Labels labels, List<Instruction> program) {
+        labels.reset();
+        program.clear();
+        List<Line> translated = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            Line line = new Line(text, translator.translateLine(text));
+            if (line.instruction() != null) {
+                if (line.label() != null)
+                    labels.addLabel(line.label(), program.size());
+                program.add(line.instruction());
+            }
+            translated.add(line);
+        }
+        translatedLines = texts.size();
+        return translated;
+    }
+
+    /**
+     * Translates the lines between the unchanged start and end of the file, and splices them into the remembered
+     * lines, the labels and the program.
+     */
+    private List<Line> update(List<Line> lines, List<String> texts, Labels labels, List<Instruction> program) {
+        int common = Math.min(lines.size(), texts.size());
+        int prefix = 0;
+        while (prefix < common && lines.get(prefix).matches(texts.get(prefix)))
+            prefix++;
+        int suffix = 0;
+        while (suffix < common - prefix
+                && lines.get(lines.size() - 1 - suffix).matches(texts.get(texts.size() - 1 - suffix)))
+            suffix++;
+
+        int address = 0;
+        for (Line line : lines.subList(0, prefix))
+            if (line.instruction() != null)
+                address++;
+
+        List<Line> removed = lines.subList(prefix, lines.size() - suffix);
+        List<Line> added = new ArrayList<>(texts.size() - suffix - prefix);
+        for (String text : texts.subList(prefix, texts.size() - suffix))
+            added.add(new Line(text, translator.translateLine(text)));
+        translatedLines = added.size();
+
+        int removedInstructions = 0;
+        for (Line line : removed) {
+            if (line.instruction() != null) {
+                removedInstructions++;
+                if (line.label() != null)
+                    labels.removeLabel(line.label());
+            }
+        }
+        List<Instruction> addedInstructions = new ArrayList<>(added.size());
+        for (Line line : added)
+            if (line.instruction() != null)
+                addedInstructions.add(line.instruction());
+
+        int shift = addedInstructions.size() - removedInstructions;
+        if (shift != 0) {
+            int next = address + removedInstructions;
+            for (Line line : lines.subList(lines.size() - suffix, lines.size())) {
+                if (line.instruction() != null) {
+                    if (line.label() != null) {
+                        labels.removeLabel(line.label());
+                        labels.addLabel(line.label(), next + shift);
+                    }
+                    next++;
+                }
+            }
+        }
+        for (int i = 0; i < addedInstructions.size(); i++)
+            if (addedInstructions.get(i).getLabel() != null)
+                labels.addLabel(addedInstructions.get(i).getLabel(), address + i);
+
+        program.subList(address, address + removedInstructions).clear();
+        program.addAll(address, addedInstructions);
+        removed.clear();
+        lines.addAll(prefix, added);
+        return lines;
+    }
+}
@@ -62,6 +62,18 @@ public abstract class Instruction {
 	 */
 	public abstract int execute(Machine machine);
 
+	/**
+	 * Returns a linked form of this instruction, in which any label it refers to has been resolved to a program address.
+	 *
+	 * Instructions that do not refer to labels are already linked and return themselves.
+	 *
+	 * @param labels the labels of the program the instruction belongs to
+	 * @return the linked instruction
+	 * @throws IllegalArgumentException if the instruction refers to a label that does not exist
+	 */
+	public Instruction link(Labels labels) {
+		return this;
+	}
 
 	/**
 	 * Returns the label string for this instruction, or the empty string if no label is present.
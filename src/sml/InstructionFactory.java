@@ -12,7 +12,7 @@ import java.util.function.Supplier;
  * one instance of the class in the application at runtime.
  */
 public class InstructionFactory extends AbstractInstructionFactory{
-    private static InstructionFactory instance;
+    private static final InstructionFactory instance = new InstructionFactory();
 
     private InstructionFactory() {}
 
@@ -22,9 +22,6 @@ public class InstructionFactory extends AbstractInstructionFactory{
      * @return the singleton instance of the InstructionFactory class.
      */
     public static InstructionFactory getInstance() {
-        if (instance == null) {
-            instance = new InstructionFactory();
-        }
         return instance;
     }
 
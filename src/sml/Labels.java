@@ -9,7 +9,28 @@ import java.util.StringJoiner;
  * The {@code Labels} class represents a mapping of labels to program addresses.
  */
 public final class Labels {
-	private final Map<String, Integer> labels = new HashMap<>();
+	private final Map<String, Integer> labels;
+
+	/**
+	 * Creates an empty map of labels.
+	 */
+	public Labels() {
+		this.labels = new HashMap<>();
+	}
+
+	private Labels(Map<String, Integer> labels) {
+		this.labels = labels;
+	}
+
+	/**
+	 * Returns an unmodifiable copy of the labels, which can be shared between threads.
+	 *
+	 * @param labels the labels to copy
+	 * @return a copy whose {@code addLabel}, {@code removeLabel} and {@code reset} methods throw {@link UnsupportedOperationException}
+	 */
+	public static Labels unmodifiableCopy(Labels labels) {
+		return new Labels(Map.copyOf(labels.labels));
+	}
 
 	/**
 	 * Adds a label with the associated address to the map.
@@ -27,6 +48,18 @@ public final class Labels {
 		labels.put(label, address);
 	}
 
+	/**
+	 * Removes a label from the map.
+	 *
+	 * @param label the label
+	 * @throws NullPointerException if the label is not present in the map
+	 */
+	public void removeLabel(String label) {
+		if (labels.remove(label) == null) {
+			throw new NullPointerException("Label '" + label + "' does not exist");
+		}
+	}
+
 	/**
 	 * Returns the address associated with the label.
 	 *
@@ -41,6 +74,16 @@ public final class Labels {
 		return labels.get(label);
 	}
 
+	/**
+	 * Returns whether the label is present in the map.
+	 *
+	 * @param label the label
+	 * @return {@code true} if the label refers to an address, {@code false} otherwise
+	 */
+	public boolean contains(String label) {
+		return labels.containsKey(label);
+	}
+
 	/**
 	 * Returns the string representation of the labels map.
 	 *
@@ -15,40 +15,189 @@ import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
  */
 public final class Machine {
 
-	private final Labels labels = new Labels();
+	private final Labels labels;
 
-	private final List<Instruction> program = new ArrayList<>();
+	private final List<Instruction> program;
 
 	private final Registers registers;
 
+	// The shared program image this machine runs, or null if the machine
+	// owns its labels and program.
+	private final Program image;
+
 	// The program counter; it contains the index (in program)
 	// of the next instruction to be executed.
 	private int programCounter = 0;
 
+	// The engine used to execute the program, or null to interpret it
+	// one instruction at a time.
+	private ExecutionEngine engine;
+
+	// The destination of the values printed by out instructions.
+	private OutputSink output = OutputSink.console();
+
 	public Machine(Registers registers) {
+		this.labels = new Labels();
+		this.program = new ArrayList<>();
 		this.registers = registers;
+		this.image = null;
+	}
+
+	/**
+	 * Creates a machine running a shared program image. The labels and program of the machine are those of the
+	 * image, and cannot be modified; only the registers and the program counter belong to the machine.
+	 *
+	 * @param image the program image
+	 * @param registers the registers of the machine
+	 */
+	public Machine(Program image, Registers registers) {
+		this.labels = image.getLabels();
+		this.program = image.getInstructions();
+		this.registers = registers;
+		this.image = image;
+	}
+
+	/**
+	 * Selects the engine used by {@link #execute()}.
+	 *
+	 * @param engine the engine, or {@code null} to use the interpreter
+	 */
+	public void setEngine(ExecutionEngine engine) {
+		this.engine = engine;
+	}
+
+	public ExecutionEngine getEngine() {
+		return this.engine;
+	}
+
+	/**
+	 * Selects the destination of the values printed by {@code out} instructions, which is the console by default.
+	 * The sink is flushed at the end of every run.
+	 *
+	 * @param output the destination of the values
+	 */
+	public void setOutput(OutputSink output) {
+		this.output = Objects.requireNonNull(output);
+	}
+
+	public OutputSink getOutput() {
+		return this.output;
+	}
+
+	/**
+	 * Links the program in place, replacing every instruction by its linked form so that jumps hold the address of
+	 * their target instead of its label.
+	 * Precondition: the program and its labels have been stored properly.
+	 *
+	 * The program of a machine created from a {@link Program} image is already linked and left as it is.
+	 *
+	 * @throws IllegalArgumentException if an instruction refers to a label that does not exist
+	 */
+	public void link() {
+		if (image == null)
+			program.replaceAll(ins -> ins.link(labels));
 	}
 
 	/**
-	 * Execute the program in program, beginning at instruction 0.
+	 * Execute the program in program, beginning at instruction 0 with all registers cleared.
 	 * Precondition: the program and its labels have been stored properly.
 	 */
 	public void execute() {
-		programCounter = 0;
 		registers.clear();
-		while (programCounter < program.size()) {
-			Instruction ins = program.get(programCounter);
-			int programCounterUpdate = ins.execute(this);
-			programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
-				? programCounter + 1
-				: programCounterUpdate;
+		run();
+	}
+
+	/**
+	 * Execute the program in program, beginning at instruction 0 with the registers as they are, so that a run can
+	 * start from chosen initial values.
+	 * Precondition: the program and its labels have been stored properly.
+	 */
+	public void run() {
+		programCounter = 0;
+		try {
+			if (engine != null) {
+				engine.execute(this);
+				programCounter = program.size();
+				return;
+			}
+			while (programCounter < program.size()) {
+				Instruction ins = program.get(programCounter);
+				int programCounterUpdate = ins.execute(this);
+				programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
+					? programCounter + 1
+					: programCounterUpdate;
+			}
+		} finally {
+			output.flush();
 		}
 	}
 
+	/**
+	 * Moves the program counter back to instruction 0, so that {@link #resume(long)} starts the program again with
+	 * the registers as they are.
+	 */
+	public void rewind() {
+		programCounter = 0;
+	}
+
+	/**
+	 * Interprets the program from the current program counter until it ends or, at a backward jump, at least
+	 * {@code quantum} instructions have been executed in this call. Preemption is only checked at backward jumps:
+	 * between two of them the program runs straight on, so a call executes at most the length of the program
+	 * beyond the quantum. The output is flushed when the program ends or fails.
+	 * <p>
+	 * The engine of the machine is not used: a program is only suspended between two instructions of the
+	 * interpreter.
+	 *
+	 * @param quantum the number of instructions after which the program is suspended at the next backward jump
+	 * @return the number of instructions executed in this call
+	 */
+	public long resume(long quantum) {
+		long steps = 0;
+		try {
+			while (programCounter < program.size()) {
+				Instruction ins = program.get(programCounter);
+				int programCounterUpdate = ins.execute(this);
+				steps++;
+				if (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE) {
+					programCounter++;
+				} else {
+					boolean backward = programCounterUpdate <= programCounter;
+					programCounter = programCounterUpdate;
+					if (backward && steps >= quantum)
+						return steps;
+				}
+			}
+		} catch (RuntimeException e) {
+			output.flush();
+			throw e;
+		}
+		output.flush();
+		return steps;
+	}
+
+	/**
+	 * Returns whether the program counter has left the program, so that there is nothing left to run.
+	 *
+	 * @return true if the program has ended
+	 */
+	public boolean isFinished() {
+		return programCounter >= program.size();
+	}
+
 	public Labels getLabels() {
 		return this.labels;
 	}
 
+	/**
+	 * Returns the program image this machine runs.
+	 *
+	 * @return the image, or {@code null} if the machine owns its labels and program
+	 */
+	public Program getImage() {
+		return this.image;
+	}
+
 	public List<Instruction> getProgram() {
 		return this.program;
 	}
@@ -1,35 +1,199 @@
 package sml;
 
+import sml.batch.BatchResult;
+import sml.batch.BatchRunner;
+import sml.batch.BatchSummary;
+import sml.compiler.PackedEngine;
+import sml.compiler.PackedProgram;
+import sml.compiler.ProgramCache;
+import sml.compiler.ProgramFile;
+import sml.ir.IrOptimizer;
+import sml.optimizer.LoopEvaluator;
+import sml.optimizer.PeepholeOptimizer;
+import sml.profile.Profiler;
+import sml.trace.TraceBuffer;
+import sml.trace.TraceDecoder;
+import sml.trace.Tracer;
+
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
+
+	/** The system property naming the directory of the {@link ProgramCache} used for program text, if any. */
+	public static final String CACHE_PROPERTY = "sml.cache";
+
+	/** The number of latest instructions shown by the {@code -t} option. */
+	public static final int TRACE_CAPACITY = 1 << 10;
+
 	/**
 	 * Initialises the system and executes the program.
+	 * <p>
+	 * The program is either SML source or a program compiled with the {@code -c} option, which is recognised by its
+	 * content and run without translating it again.
 	 *
-	 * @param args name of the file containing the program text.
+	 * @param args name of the file containing the program text or the compiled program; or {@code -c} followed by
+	 *             the name of the file containing the program text and the name of the compiled file to write; or
+	 *             {@code -b} followed by the names of program files or directories of program files to run as a
+	 *             batch; or {@code -p} followed by the name of a program file to run with the profiler; or {@code -t}
+	 *             followed by the name of a program file to run with the tracer, printing its latest instructions;
+	 *             or {@code -O} followed by the name of a program file to optimize before running it. If the system property
+	 *             {@value #CACHE_PROPERTY} names a directory, program text is loaded through a {@link ProgramCache}
+	 *             in that directory, and only translated if it changed since it was last loaded.
 	 */
 	public static void main(String... args) {
-		if (args.length != 1) {
-			System.err.println("Incorrect number of arguments - Machine <file> - required");
+		if (args.length == 3 && args[0].equals("-c")) {
+			compile(args[1], args[2]);
+			return;
+		}
+		if (args.length > 1 && args[0].equals("-b")) {
+			batch(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		Profiler profiler = (args.length == 2 && args[0].equals("-p")) ? new Profiler() : null;
+		Tracer tracer = (args.length == 2 && args[0].equals("-t")) ? new Tracer(new TraceBuffer(TRACE_CAPACITY)) : null;
+		boolean optimize = args.length == 2 && args[0].equals("-O");
+		if (args.length != 1 && profiler == null && tracer == null && !optimize) {
+			System.err.println("Incorrect number of arguments - Machine <file> | Machine -c <file> <compiled file>"
+					+ " | Machine -b <file or directory>... | Machine -p <file> | Machine -t <file> | Machine -O <file>"
+					+ " - required");
 			System.exit(-1);
 		}
+		String fileName = args[args.length - 1];
 
 		try {
-			Translator t = new Translator(args[0]);
 			Machine m = new Machine(new Registers());
-			t.readAndTranslate(m.getLabels(), m.getProgram());
+			Path file = Path.of(fileName);
+			if (ProgramFile.isCompiled(file)) {
+				PackedProgram packed = ProgramFile.read(file);
+				packed.unpack(m.getLabels(), m.getProgram());
+				m.setEngine(new PackedEngine(packed, m.getProgram()));
+			} else if (System.getProperty(CACHE_PROPERTY) != null) {
+				PackedProgram packed;
+				try {
+					packed = new ProgramCache(Path.of(System.getProperty(CACHE_PROPERTY))).load(file);
+				} catch (IllegalArgumentException e) {
+					// the cache translates and links in one step
+					System.out.println("Error translating or linking the program from " + fileName + ": " + e.getMessage());
+					return;
+				}
+				packed.unpack(m.getLabels(), m.getProgram());
+				m.setEngine(new PackedEngine(packed, m.getProgram()));
+			} else {
+				Translator t = new Translator(fileName);
+				t.readAndTranslate(m.getLabels(), m.getProgram());
+				if (!link(m, fileName))
+					return;
+			}
+
+			if (optimize)
+				optimize(m);
 
 			System.out.println("Here is the program; it has " + m.getProgram().size() + " instructions.");
 			System.out.println(m);
 
+			if (profiler != null)
+				m.setEngine(profiler);
+			if (tracer != null)
+				m.setEngine(tracer);
+
 			System.out.println("Beginning program execution.");
 			m.execute();
 			System.out.println("Ending program execution.");
 
 			System.out.println("Values of registers at program termination:" + m.getRegisters() + ".");
+
+			if (profiler != null)
+				System.out.println("Profile of the program:" + System.lineSeparator() + profiler.getProfile());
+			if (tracer != null) {
+				System.out.println("Trace of the program (" + tracer.getBuffer().count() + " instructions):");
+				TraceDecoder.print(tracer.getBuffer().records(), m.getProgram(), System.out);
+			}
 		}
 		catch (IOException e) {
-			System.out.println("Error reading the program from " + args[0]);
+			System.out.println("Error reading the program from " + fileName + ": " + e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println("Error translating the program from " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Optimizes the program of the machine in place, as the {@code -O} option does. The engine of the machine is
+	 * dropped, since it was made for the program before optimization.
+	 *
+	 * @param m the machine holding the linked program
+	 */
+	public static void optimize(Machine m) {
+		m.setEngine(null);
+		IrOptimizer.optimize(m);
+		LoopEvaluator.optimize(m);
+		PeepholeOptimizer.optimize(m);
+	}
+
+	/**
+	 * Links the program of the machine, reporting a jump to a label that does not exist.
+	 *
+	 * @param m the machine holding the translated program
+	 * @param fileName name of the file containing the program text
+	 * @return whether the program was linked
+	 */
+	private static boolean link(Machine m, String fileName) {
+		try {
+			m.link();
+			return true;
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println("Error linking the program from " + fileName + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Runs many programs concurrently, printing the result of every program and a summary of the batch.
+	 *
+	 * @param paths names of program files or directories of program files.
+	 */
+	private static void batch(String... paths) {
+		try {
+			List<Path> files = BatchRunner.programFiles(Arrays.stream(paths).map(Path::of).toList());
+			long start = System.nanoTime();
+			List<BatchResult> results = new BatchRunner().run(files);
+			long wallNanos = System.nanoTime() - start;
+
+			results.forEach(System.out::println);
+			System.out.println(BatchSummary.of(results, wallNanos));
+		}
+		catch (IOException e) {
+			System.out.println("Error reading the programs: " + e.getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Translates and links the program text and writes it as a compiled program.
+	 *
+	 * @param source name of the file containing the program text.
+	 * @param target name of the compiled file to write.
+	 */
+	private static void compile(String source, String target) {
+		try {
+			Machine m = new Machine(new Registers());
+			new Translator(source).readAndTranslate(m.getLabels(), m.getProgram());
+			if (!link(m, source))
+				return;
+			ProgramFile.write(PackedProgram.pack(m.getProgram(), m.getLabels()), Path.of(target));
+			System.out.println("Compiled " + m.getProgram().size() + " instructions from " + source + " to " + target + ".");
+		}
+		catch (IOException e) {
+			System.out.println("Error compiling the program from " + source + ": " + e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println("Error translating the program from " + source + ": " + e.getMessage());
 		}
 	}
 }
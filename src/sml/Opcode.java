@@ -0,0 +1,32 @@
+package sml;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an {@link Instruction} subclass as the implementation of an opcode.
+ * <p>
+ * The annotation processor {@code sml.processor.InstructionFactoryProcessor} reads these annotations at compile time
+ * and generates {@code sml.GeneratedInstructionFactory}, which creates the annotated instructions with a
+ * {@code switch} over their opcodes and direct constructor calls instead of reflection. The instruction is created
+ * with its first public constructor whose first parameter is the label, a {@code String}; the other parameters may be
+ * {@link RegisterName}, {@code int} or {@code String}.
+ * <p>
+ * The annotation is kept in the class files, so that the factory still covers every instruction when a build only
+ * recompiles some of them.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Opcode {
+
+    /**
+     * The opcode of the instruction. Defaults to the value of the {@code OP_CODE} constant of the class.
+     *
+     * @return the opcode, or an empty string to use the {@code OP_CODE} constant
+     */
+    String value() default "";
+}
@@ -0,0 +1,36 @@
+package sml;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The destination of the values printed by {@code out} instructions.
+ * <p>
+ * A machine prints to the console by default; a sink set with {@link Machine#setOutput(OutputSink)} replaces it. A
+ * sink may hold values back, so the machine flushes it when a run ends, whether or not the run completes normally.
+ */
+public interface OutputSink extends IntConsumer {
+
+    /**
+     * Prints a value.
+     *
+     * @param value the value
+     */
+    @Override
+    void accept(int value);
+
+    /**
+     * Writes any values held back by the sink to their destination. Does nothing by default.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Returns the default sink, which prints every value on its own line of {@link System#out} as soon as it is
+     * printed.
+     *
+     * @return the console sink
+     */
+    static OutputSink console() {
+        return value -> System.out.println(value);
+    }
+}
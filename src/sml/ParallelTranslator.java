@@ -0,0 +1,156 @@
+package sml;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A translator for very large SML sources that translates parts of the file in parallel.
+ * <p>
+ * The file is split into chunks at line boundaries, and every chunk is translated by a {@link StreamingTranslator}
+ * on a fork-join pool. The instruction lists of the chunks are then concatenated in order, and the labels are added
+ * with the address of their instruction in the whole program, so that a duplicate label is reported as by
+ * {@link Labels#addLabel(String, int)} in a sequential translation. If any chunk fails, the file is translated again
+ * sequentially so that the error is reported exactly as by {@link StreamingTranslator}.
+ * <p>
+ * The result is the same as that of {@link StreamingTranslator}. Files smaller than {@link #MIN_CHUNK_SIZE} are
+ * translated in a single chunk.
+ */
+public final class ParallelTranslator {
+
+    /** The smallest number of bytes translated by a chunk. */
+    public static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    // the number of chunks per thread of the pool, so that uneven chunks still balance
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final String fileName; // source file of SML code
+    private final ForkJoinPool pool;
+    private final long minChunkSize;
+
+    /**
+     * Constructs a new {@code ParallelTranslator} object that will read and translate the specified file on the
+     * common fork-join pool.
+     *
+     * @param fileName the name of the file containing the SML program
+     */
+    public ParallelTranslator(String fileName) {
+        this(fileName, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new {@code ParallelTranslator} object that will read and translate the specified file on the
+     * given pool.
+     *
+     * @param fileName the name of the file containing the SML program
+     * @param pool the pool translating the chunks of the file
+     */
+    public ParallelTranslator(String fileName, ForkJoinPool pool) {
+        this(fileName, pool, MIN_CHUNK_SIZE);
+    }
+
+    ParallelTranslator(String fileName, ForkJoinPool pool, long minChunkSize) {
+        this.fileName = fileName;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Translates the SML program in the file into a list of instructions.
+     *
+     * @param labels  the {@code Labels} object to store label information in
+     * @param program the list of {@code Instruction} objects to store the translated program in
+     * @throws IOException if an I/O error occurs while reading the input file
+     * @throws IllegalArgumentException if a label is duplicate, or a line refers to an unknown register or holds an
+     *                                  invalid integer
+     */
+    public void readAndTranslate(Labels labels, List<Instruction> program) throws IOException {
+        labels.reset();
+        program.clear();
+
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            long[] boundaries = boundaries(channel);
+            List<ForkJoinTask<List<Instruction>>> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                long start = boundaries[i], end = boundaries[i + 1];
+                chunks.add(pool.submit(() -> translate(channel, start, end)));
+            }
+
+            List<List<Instruction>> results = new ArrayList<>(chunks.size());
+            try {
+                for (ForkJoinTask<List<Instruction>> chunk : chunks)
+                    results.add(chunk.join());
+            } catch (RuntimeException e) {
+                chunks.forEach(chunk -> chunk.cancel(true));
+                new StreamingTranslator(fileName).readAndTranslate(labels, program);
+                throw e;
+            }
+
+            int size = results.stream().mapToInt(List::size).sum();
+            if (program instanceof ArrayList<Instruction> list)
+                list.ensureCapacity(size);
+            for (List<Instruction> result : results) {
+                for (Instruction instruction : result) {
+                    if (instruction.getLabel() != null)
+                        labels.addLabel(instruction.getLabel(), program.size());
+                    program.add(instruction);
+                }
+            }
+        }
+    }
+
+    private List<Instruction> translate(FileChannel channel, long start, long end) {
+        List<Instruction> chunk = new ArrayList<>();
+        try {
+            new StreamingTranslator(fileName).translate(channel, start, end, null, chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    /**
+     * Splits the file into chunks, moving every boundary forward to the start of the next line.
+     *
+     * @return the offsets of the chunks, starting with 0 and ending with the size of the file
+     */
+    private long[] boundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int count = (int) Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, size / minChunkSize));
+        long[] boundaries = new long[count + 1];
+        boundaries[count] = size;
+
+        ByteBuffer bytes = ByteBuffer.allocate(4096);
+        for (int i = 1; i < count; i++) {
+            long position = Math.max(size / count * i, boundaries[i - 1]);
+            boundaries[i] = size;
+            while (position < size) {
+                bytes.clear();
+                int read = channel.read(bytes, position);
+                if (read < 0)
+                    break;
+                int newline = indexOf(bytes.array(), (byte) '\n', read);
+                if (newline >= 0) {
+                    boundaries[i] = position + newline + 1;
+                    break;
+                }
+                position += read;
+            }
+        }
+        return boundaries;
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int length) {
+        for (int i = 0; i < length; i++)
+            if (bytes[i] == b)
+                return i;
+        return -1;
+    }
+}
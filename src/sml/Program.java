@@ -0,0 +1,110 @@
+package sml;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable, linked image of a translated program, which can be shared by any number of machines and threads.
+ * <p>
+ * The image holds the program and its labels only; the mutable state of a run (the registers and the program
+ * counter) belongs to a {@link Machine} created with {@link #newMachine(Registers)}, so that one translation can
+ * feed many concurrent runs, each starting from its own register values.
+ */
+public final class Program {
+
+	private final Labels labels;
+
+	private final List<Instruction> instructions;
+
+	private Program(Labels labels, List<Instruction> instructions) {
+		this.labels = labels;
+		this.instructions = instructions;
+	}
+
+	/**
+	 * Creates an image of the given program, linking its instructions. The labels and instructions are copied, so
+	 * later changes to them do not affect the image.
+	 *
+	 * @param labels the labels of the program
+	 * @param instructions the instructions of the program
+	 * @return the image
+	 * @throws IllegalArgumentException if an instruction refers to a label that does not exist
+	 */
+	public static Program of(Labels labels, List<Instruction> instructions) {
+		Labels copy = Labels.unmodifiableCopy(labels);
+		return new Program(copy, instructions.stream().map(ins -> ins.link(copy)).toList());
+	}
+
+	/**
+	 * Creates an image of the program of the given machine.
+	 *
+	 * @param machine the machine
+	 * @return the image
+	 * @throws IllegalArgumentException if an instruction refers to a label that does not exist
+	 */
+	public static Program of(Machine machine) {
+		return (machine.getImage() != null) ? machine.getImage() : of(machine.getLabels(), machine.getProgram());
+	}
+
+	/**
+	 * Returns a new machine running this program from the given register values.
+	 *
+	 * @param initial the initial register values, which are copied
+	 * @return the machine
+	 */
+	public Machine newMachine(Registers initial) {
+		return new Machine(this, new Registers(initial));
+	}
+
+	/**
+	 * Returns a new machine running this program from cleared registers.
+	 *
+	 * @return the machine
+	 */
+	public Machine newMachine() {
+		return new Machine(this, new Registers());
+	}
+
+	/**
+	 * Returns the labels of the program.
+	 *
+	 * @return the labels, which cannot be modified
+	 */
+	public Labels getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Returns the linked instructions of the program.
+	 *
+	 * @return the instructions, which cannot be modified
+	 */
+	public List<Instruction> getInstructions() {
+		return instructions;
+	}
+
+	/**
+	 * String representation of the program.
+	 *
+	 * @return pretty formatted version of the code.
+	 */
+	@Override
+	public String toString() {
+		return instructions.stream()
+				.map(Instruction::toString)
+				.collect(Collectors.joining("\n"));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof Program other)) return false;
+		return labels.equals(other.labels) && instructions.equals(other.instructions);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(labels, instructions);
+	}
+}
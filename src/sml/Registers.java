@@ -1,14 +1,25 @@
 package sml;
 
-import java.util.*;
+import java.util.Arrays;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A class representing the registers used in the program. The registers are identified by their names,
  * which are defined as elements of the Register enumeration. Each register holds an integer value.
+ * <p>
+ * The values are kept in a primitive register file indexed by {@link Register#ordinal()}, so that instructions can
+ * resolve their operands to an index once (see {@link #indexOf(RegisterName)}) and then access the register file
+ * without hashing or boxing.
  */
 public final class Registers {
-    private final Map<Register, Integer> registers = new HashMap<>();
+
+    /** The number of registers in the register file. */
+    public static final int COUNT = Register.values().length;
+
+    private static final Register[] REGISTERS = Register.values();
+
+    private final int[] registers = new int[COUNT];
 
     /**
      * Enumeration of the available registers.
@@ -24,12 +35,40 @@ public final class Registers {
         clear(); // the class is final
     }
 
+    /**
+     * Constructs a new instance holding the same values as the given registers.
+     *
+     * @param registers the registers to copy
+     */
+    public Registers(Registers registers) {
+        System.arraycopy(registers.registers, 0, this.registers, 0, COUNT);
+    }
+
+    /**
+     * Returns the index of the given register in the register file.
+     *
+     * @param register register name
+     * @return the index of the register, between {@code 0} and {@link #COUNT} (exclusive)
+     */
+    public static int indexOf(RegisterName register) {
+        return ((Register) register).ordinal();
+    }
+
+    /**
+     * Returns the register stored at the given index of the register file.
+     *
+     * @param index the index of the register
+     * @return register name
+     */
+    public static Register registerAt(int index) {
+        return REGISTERS[index];
+    }
+
     /**
      * Clears all registers, setting their values to zero.
      */
     public void clear() {
-        for (Register register : Register.values())
-            registers.put(register, 0);
+        Arrays.fill(registers, 0);
     }
 
     /**
@@ -39,7 +78,7 @@ public final class Registers {
      * @param value new value
      */
     public void set(RegisterName register, int value) {
-        registers.put((Register)register, value);
+        registers[indexOf(register)] = value;
     }
 
     /**
@@ -49,7 +88,27 @@ public final class Registers {
      * @return value
      */
     public int get(RegisterName register) {
-        return registers.get((Register)register);
+        return registers[indexOf(register)];
+    }
+
+    /**
+     * Sets the register at the given index to the value.
+     *
+     * @param index index of the register, as returned by {@link #indexOf(RegisterName)}
+     * @param value new value
+     */
+    public void set(int index, int value) {
+        registers[index] = value;
+    }
+
+    /**
+     * Returns the value stored in the register at the given index.
+     *
+     * @param index index of the register, as returned by {@link #indexOf(RegisterName)}
+     * @return value
+     */
+    public int get(int index) {
+        return registers[index];
     }
 
     /**
@@ -63,20 +122,19 @@ public final class Registers {
     @Override
     public boolean equals(Object o) {
         if (o instanceof Registers other) {
-            return registers.equals(other.registers);
+            return Arrays.equals(registers, other.registers);
         }
         return false;
     }
 
     /**
-     * Returns a hash code value for this {@code Registers} instance. The hash code is based on the hash code of the
-     * register map.
+     * Returns a hash code value for this {@code Registers} instance. The hash code is based on the register values.
      *
      * @return a hash code value for this {@code Registers} instance
      */
     @Override
     public int hashCode() {
-        return registers.hashCode();
+        return Arrays.hashCode(registers);
     }
 
     /**
@@ -87,9 +145,8 @@ public final class Registers {
      */
     @Override
     public String toString() {
-        return registers.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .map(e -> e.getKey() + " = " + e.getValue())
+        return IntStream.range(0, COUNT)
+                .mapToObj(i -> REGISTERS[i] + " = " + registers[i])
                 .collect(Collectors.joining(", ", "[", "]")) ;
     }
 }
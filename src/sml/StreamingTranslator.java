@@ -0,0 +1,262 @@
+package sml;
+
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A translator for large SML sources that tokenizes the file in place, as bytes, instead of building a
+ * {@code String} for every line and word as {@link Translator} does.
+ * <p>
+ * The file is read through a {@link FileChannel} into a reusable buffer. Opcodes and register names are matched
+ * against their bytes, so registers map straight to {@link Registers.Register} constants and integers are parsed
+ * without intermediate strings; only labels become strings, and they are interned. Words are separated by ASCII
+ * whitespace. Blank lines and lines holding only a label are skipped. Opcodes that are not built in are handed to
+ * the {@link AbstractInstructionFactory}, as {@link Translator} does.
+ * <p>
+ * {@link Translator} remains the reference implementation: both produce the same labels and program for valid
+ * sources.
+ */
+public final class StreamingTranslator {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[][] OP_CODES = {
+            bytes(AddInstruction.OP_CODE), bytes(SubInstruction.OP_CODE), bytes(MulInstruction.OP_CODE),
+            bytes(DivInstruction.OP_CODE), bytes(MovInstruction.OP_CODE), bytes(OutInstruction.OP_CODE),
+            bytes(JnzInstruction.OP_CODE)};
+    private static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, MOV = 4, OUT = 5, JNZ = 6, OTHER = -1;
+
+    private static final Registers.Register[] REGISTERS = Registers.Register.values();
+    private static final byte[][] REGISTER_NAMES = new byte[REGISTERS.length][];
+
+    static {
+        for (int i = 0; i < REGISTERS.length; i++)
+            REGISTER_NAMES[i] = bytes(REGISTERS[i].name());
+    }
+
+    private final String fileName; // source file of SML code
+
+    // the buffer holding the bytes read so far, and the bounds of the current word in it
+    private byte[] buffer;
+    private int position, lineEnd, wordStart, wordEnd;
+    private int lineNumber;
+
+    /**
+     * Constructs a new {@code StreamingTranslator} object that will read and translate the specified file.
+     *
+     * @param fileName the name of the file containing the SML program
+     */
+    public StreamingTranslator(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Translates the SML program in the file into a list of instructions.
+     *
+     * @param labels  the {@code Labels} object to store label information in
+     * @param program the list of {@code Instruction} objects to store the translated program in
+     * @throws IOException if an I/O error occurs while reading the input file
+     * @throws IllegalArgumentException if a line refers to an unknown register or holds an invalid integer
+     */
+    public void readAndTranslate(Labels labels, List<Instruction> program) throws IOException {
+        labels.reset();
+        program.clear();
+
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            translate(channel, 0, channel.size(), labels, program);
+        }
+    }
+
+    /**
+     * Translates the lines of the file held between the given byte offsets, appending the instructions to the
+     * program. Labels are added with their address in the program; pass {@code null} to leave them on the
+     * instructions only.
+     *
+     * @param channel the channel of the file, which is read with positional reads only
+     * @param start the offset of the first byte to translate, at the start of a line
+     * @param end the offset after the last byte to translate, at the start of a line or at the end of the file
+     * @param labels  the {@code Labels} object to store label information in, or {@code null}
+     * @param program the list of {@code Instruction} objects to append the translated instructions to
+     * @throws IOException if an I/O error occurs while reading the input file
+     */
+    void translate(FileChannel channel, long start, long end, Labels labels, List<Instruction> program) throws IOException {
+        lineNumber = 0;
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer = bytes.array();
+        try {
+            long filePosition = start;
+            int lineStart = 0;
+            boolean eof = false;
+            while (!eof) {
+                bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + (end - filePosition)));
+                int read = channel.read(bytes, filePosition);
+                if (read > 0)
+                    filePosition += read;
+                eof = read < 0 || filePosition >= end;
+                int limit = bytes.position();
+                int scanned = lineStart;
+                while (true) {
+                    int newline = indexOf((byte) '\n', scanned, limit);
+                    if (newline < 0) {
+                        if (eof && lineStart < limit)
+                            translateLine(lineStart, limit, labels, program);
+                        break;
+                    }
+                    translateLine(lineStart, newline, labels, program);
+                    lineStart = scanned = newline + 1;
+                }
+
+                // keep the incomplete last line at the start of the buffer, growing it for very long lines
+                int remaining = limit - lineStart;
+                if (remaining == buffer.length) {
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.length * 2);
+                    larger.put(buffer, 0, remaining);
+                    bytes = larger;
+                    buffer = bytes.array();
+                } else {
+                    System.arraycopy(buffer, lineStart, buffer, 0, remaining);
+                    bytes.clear().position(remaining);
+                }
+                lineStart = 0;
+            }
+        } finally {
+            buffer = null;
+        }
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++)
+            if (buffer[i] == b)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Translates the line held in the buffer between the given offsets.
+     */
+    private void translateLine(int start, int end, Labels labels, List<Instruction> program) {
+        lineNumber++;
+        position = start;
+        lineEnd = end;
+
+        if (!nextWord())
+            return;
+        String label = null;
+        if (buffer[wordEnd - 1] == ':') {
+            label = string(wordStart, wordEnd - 1);
+            if (!nextWord())
+                return;
+        }
+
+        Instruction instruction = instruction(label);
+        if (instruction != null) {
+            if (label != null && labels != null)
+                labels.addLabel(label, program.size());
+            program.add(instruction);
+        }
+    }
+
+    /**
+     * Translates the current word as an opcode, and the words that follow as its arguments.
+     */
+    private Instruction instruction(String label) {
+        return switch (opcode()) {
+            case ADD -> new AddInstruction(label, register(), register());
+            case SUB -> new SubInstruction(label, register(), register());
+            case MUL -> new MulInstruction(label, register(), register());
+            case DIV -> new DivInstruction(label, register(), register());
+            case MOV -> new MovInstruction(label, register(), integer());
+            case OUT -> new OutInstruction(label, register());
+            case JNZ -> new JnzInstruction(label, register(), nextWord() ? string(wordStart, wordEnd) : "");
+            default -> AbstractInstructionFactory.getInstance()
+                    .createInstruction(label, string(wordStart, wordEnd), () -> nextWord() ? string(wordStart, wordEnd) : "");
+        };
+    }
+
+    private int opcode() {
+        for (int i = 0; i < OP_CODES.length; i++)
+            if (wordEquals(OP_CODES[i]))
+                return i;
+        return OTHER;
+    }
+
+    private Registers.Register register() {
+        if (nextWord())
+            for (int i = 0; i < REGISTER_NAMES.length; i++)
+                if (wordEquals(REGISTER_NAMES[i]))
+                    return REGISTERS[i];
+        throw new IllegalArgumentException(
+                "Unknown register '" + string(wordStart, wordEnd) + "' in line " + lineNumber + " of " + fileName);
+    }
+
+    /**
+     * Parses the next word as a decimal integer, as {@link Integer#parseInt(String)} does.
+     */
+    private int integer() {
+        if (nextWord()) {
+            int i = wordStart;
+            boolean negative = buffer[i] == '-';
+            if (negative || buffer[i] == '+')
+                i++;
+            // accumulate negatively, so that Integer.MIN_VALUE can be parsed
+            int value = 0;
+            boolean valid = i < wordEnd;
+            for (; valid && i < wordEnd; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9 || value < (Integer.MIN_VALUE + digit) / 10) {
+                    valid = false;
+                    break;
+                }
+                value = value * 10 - digit;
+            }
+            if (valid && (negative || value != Integer.MIN_VALUE))
+                return negative ? value : -value;
+        }
+        throw new NumberFormatException(
+                "Invalid integer '" + string(wordStart, wordEnd) + "' in line " + lineNumber + " of " + fileName);
+    }
+
+    /**
+     * Moves to the next word of the line.
+     *
+     * @return {@code true} if there is a next word, {@code false} if the rest of the line is blank
+     */
+    private boolean nextWord() {
+        int i = position;
+        while (i < lineEnd && isWhitespace(buffer[i]))
+            i++;
+        wordStart = i;
+        while (i < lineEnd && !isWhitespace(buffer[i]))
+            i++;
+        wordEnd = position = i;
+        return wordStart < wordEnd;
+    }
+
+    private boolean wordEquals(byte[] word) {
+        if (wordEnd - wordStart != word.length)
+            return false;
+        for (int i = 0; i < word.length; i++)
+            if (buffer[wordStart + i] != word[i])
+                return false;
+        return true;
+    }
+
+    private String string(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8).intern();
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -35,24 +35,51 @@ public final class Translator {
      */
     public void readAndTranslate(Labels labels, List<Instruction> program) throws IOException {
         try (var sc = new Scanner(new File(fileName), StandardCharsets.UTF_8)) {
-            labels.reset();
-            program.clear();
-
-            // Each iteration processes line and reads the next input line into "line"
-            while (sc.hasNextLine()) {
-                line = sc.nextLine();
-                String label = getLabel();
-
-                Instruction instruction = getInstruction(label);
-                if (instruction != null) {
-                    if (label != null)
-                        labels.addLabel(label, program.size());
-                    program.add(instruction);
-                }
+            translate(sc, labels, program);
+        }
+    }
+
+    /**
+     * Translates SML program text into a list of instructions, as the text of a file is translated by
+     * `readAndTranslate`.
+     *
+     * @param text    the program text
+     * @param labels  the `Labels` object to store label information in
+     * @param program the list of `Instruction` objects to store the translated program in
+     */
+    public static void translate(String text, Labels labels, List<Instruction> program) {
+        try (var sc = new Scanner(text)) {
+            new Translator("<text>").translate(sc, labels, program);
+        }
+    }
+
+    private void translate(Scanner sc, Labels labels, List<Instruction> program) {
+        labels.reset();
+        program.clear();
+
+        // Each iteration processes line and reads the next input line into "line"
+        while (sc.hasNextLine()) {
+            Instruction instruction = translateLine(sc.nextLine());
+            if (instruction != null) {
+                if (instruction.getLabel() != null)
+                    labels.addLabel(instruction.getLabel(), program.size());
+                program.add(instruction);
             }
         }
     }
 
+    /**
+     * Translates one line of the program.
+     *
+     * @param text the line
+     * @return the instruction, with the label of the line if any, or `null` if the line holds no instruction
+     */
+    Instruction translateLine(String text) {
+        line = text;
+        String label = getLabel();
+        return getInstruction(label);
+    }
+
     /**
      * Translates the current line into an instruction with the given label.
      *
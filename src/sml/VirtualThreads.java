@@ -0,0 +1,28 @@
+package sml;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, which the JVM running the interpreter may not provide.
+ */
+public final class VirtualThreads {
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Returns an executor starting a virtual thread for every task, if the JVM provides virtual threads.
+	 *
+	 * @return the executor, or an empty optional if virtual threads are not available
+	 */
+	public static Optional<ExecutorService> newPerTaskExecutor() {
+		try {
+			return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			// virtual threads are not available on this JVM, or are a preview feature not enabled
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package sml.batch;
+
+import sml.Registers;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The result of running one program of a batch.
+ *
+ * @param file the file of the program
+ * @param registers the final values of the registers, or {@code null} if the program could not be loaded
+ * @param output the values printed by {@code out} instructions, in order
+ * @param error the exception that stopped the program, or {@code null} if it ran to completion
+ * @param nanos the time taken to load and run the program, in nanoseconds
+ */
+public record BatchResult(Path file, Registers registers, int[] output, Throwable error, long nanos) {
+
+	/**
+	 * Returns whether the program was loaded and ran to completion.
+	 *
+	 * @return {@code true} if the program succeeded, {@code false} otherwise
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * Returns a one-line description of the result.
+	 *
+	 * @return the file followed by its output and registers, or by the error that stopped it
+	 */
+	@Override
+	public String toString() {
+		return isSuccess()
+				? file + ": out " + Arrays.toString(output) + " registers " + registers
+				: file + ": failed: " + error;
+	}
+}
@@ -0,0 +1,207 @@
+package sml.batch;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.StreamingTranslator;
+import sml.VirtualThreads;
+import sml.cache.ResultCache;
+import sml.compiler.PackedProgram;
+import sml.compiler.ProgramFile;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs many SML programs concurrently and collects their results.
+ * <p>
+ * Every program is loaded (translated from source, or read from a compiled {@code .smlc} file), run from cleared
+ * registers, and its {@code out} values are collected instead of being printed. A program that fails, for example
+ * because of an unknown label, a division by zero or an error thrown by an instruction, only fails its own result.
+ * <p>
+ * Programs run by the interpreter have a step budget, checked with {@link Machine#resume(long)} at backward jumps: a
+ * program that does not end within it fails, so that it does not hold its thread forever. An engine runs a program
+ * to completion, so programs run by an engine have no budget.
+ * <p>
+ * Programs run on virtual threads when the JVM provides them, and otherwise on a fixed pool with one thread per
+ * processor; a runner can also be given a pool size explicitly. A runner given a {@link ResultCache} answers a
+ * program identical to one already run without running it again.
+ */
+public final class BatchRunner {
+
+	/** The default number of instructions a program run by the interpreter may execute. */
+	public static final long DEFAULT_MAX_STEPS = 1_000_000_000L;
+
+	private final int threads;
+	private final ExecutionEngine engine;
+	private final ResultCache cache;
+
+	/**
+	 * Creates a runner using virtual threads when available, and the interpreter with the default step budget.
+	 */
+	public BatchRunner() {
+		this(0, null);
+	}
+
+	/**
+	 * Creates a runner.
+	 *
+	 * @param threads the number of threads of the pool, or 0 to use virtual threads when available
+	 * @param engine the engine executing the programs, shared by all of them, or {@code null} for the interpreter
+	 *               with the default step budget
+	 */
+	public BatchRunner(int threads, ExecutionEngine engine) {
+		this(threads, engine, null);
+	}
+
+	/**
+	 * Creates a runner answering repeated programs from a result cache.
+	 *
+	 * @param threads the number of threads of the pool, or 0 to use virtual threads when available
+	 * @param engine the engine executing the programs, shared by all of them, or {@code null} for the interpreter
+	 *               with the default step budget
+	 * @param cache the cache of the results of the programs, or {@code null} to run every program
+	 */
+	public BatchRunner(int threads, ExecutionEngine engine, ResultCache cache) {
+		this(threads, engine, cache, DEFAULT_MAX_STEPS);
+	}
+
+	/**
+	 * Creates a runner interpreting every program with a step budget.
+	 *
+	 * @param threads the number of threads of the pool, or 0 to use virtual threads when available
+	 * @param cache the cache of the results of the programs, or {@code null} to run every program
+	 * @param maxSteps the number of instructions after which a program fails, at its next backward jump
+	 */
+	public BatchRunner(int threads, ResultCache cache, long maxSteps) {
+		this(threads, null, cache, maxSteps);
+	}
+
+	private BatchRunner(int threads, ExecutionEngine engine, ResultCache cache, long maxSteps) {
+		if (threads < 0)
+			throw new IllegalArgumentException("Negative number of threads: " + threads);
+		if (maxSteps <= 0)
+			throw new IllegalArgumentException("Step budget must be positive: " + maxSteps);
+		this.threads = threads;
+		this.engine = (engine != null) ? engine : budget(maxSteps);
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns an engine interpreting a program until it ends, failing it once it has executed the given number of
+	 * instructions.
+	 */
+	private static ExecutionEngine budget(long maxSteps) {
+		return machine -> {
+			machine.resume(maxSteps);
+			if (!machine.isFinished())
+				throw new IllegalStateException("Program exceeded its budget of " + maxSteps + " instructions");
+		};
+	}
+
+	/**
+	 * Returns the program files given by the paths: files are taken as they are, and directories are searched
+	 * recursively for regular files, in name order.
+	 *
+	 * @param paths files and directories
+	 * @return the program files
+	 * @throws IOException if a directory cannot be read
+	 */
+	public static List<Path> programFiles(List<Path> paths) throws IOException {
+		List<Path> files = new ArrayList<>();
+		for (Path path : paths) {
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> walk = Files.walk(path)) {
+					walk.filter(Files::isRegularFile).sorted().forEach(files::add);
+				}
+			} else {
+				files.add(path);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Runs the programs and returns their results, in the order of the files.
+	 *
+	 * @param files the program files
+	 * @return the results
+	 * @throws InterruptedException if the thread is interrupted while waiting for the results
+	 */
+	public List<BatchResult> run(List<Path> files) throws InterruptedException {
+		ExecutorService executor = newExecutor();
+		try {
+			List<Future<BatchResult>> futures = new ArrayList<>(files.size());
+			for (Path file : files)
+				futures.add(executor.submit(() -> run(file)));
+
+			List<BatchResult> results = new ArrayList<>(files.size());
+			for (Future<BatchResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Unexpected failure of the batch", e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads and runs one program, catching any failure.
+	 *
+	 * @param file the program file
+	 * @return the result
+	 */
+	public BatchResult run(Path file) {
+		long start = System.nanoTime();
+		CollectingSink output = new CollectingSink();
+		Registers registers = null;
+		try {
+			Machine machine = load(file).newMachine();
+			registers = machine.getRegisters();
+			machine.setEngine(engine);
+			machine.setOutput(output);
+			if (cache != null)
+				cache.run(machine);
+			else
+				machine.run();
+			return new BatchResult(file, registers, output.toArray(), null, System.nanoTime() - start);
+		} catch (Throwable e) {
+			return new BatchResult(file, registers, output.toArray(), e, System.nanoTime() - start);
+		}
+	}
+
+	private static Program load(Path file) throws IOException {
+		Labels labels = new Labels();
+		List<Instruction> program = new ArrayList<>();
+		if (ProgramFile.isCompiled(file)) {
+			PackedProgram packed = ProgramFile.read(file);
+			packed.unpack(labels, program);
+		} else {
+			new StreamingTranslator(file.toString()).readAndTranslate(labels, program);
+		}
+		return Program.of(labels, program);
+	}
+
+	private ExecutorService newExecutor() {
+		if (threads == 0)
+			return VirtualThreads.newPerTaskExecutor()
+					.orElseGet(() -> Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+		return Executors.newFixedThreadPool(threads);
+	}
+}
@@ -0,0 +1,61 @@
+package sml.batch;
+
+import java.util.List;
+
+/**
+ * Statistics over the results of a batch: counts, throughput and latency percentiles.
+ *
+ * @param programs the number of programs run
+ * @param failures the number of programs that failed
+ * @param wallNanos the time taken by the whole batch, in nanoseconds
+ * @param latencyNanos the time taken by every program, sorted, in nanoseconds
+ */
+public record BatchSummary(int programs, int failures, long wallNanos, long[] latencyNanos) {
+
+	/**
+	 * Computes the summary of the given results.
+	 *
+	 * @param results the results of the batch
+	 * @param wallNanos the time taken by the whole batch, in nanoseconds
+	 * @return the summary
+	 */
+	public static BatchSummary of(List<BatchResult> results, long wallNanos) {
+		long[] latencies = results.stream().mapToLong(BatchResult::nanos).sorted().toArray();
+		int failures = (int) results.stream().filter(result -> !result.isSuccess()).count();
+		return new BatchSummary(results.size(), failures, wallNanos, latencies);
+	}
+
+	/**
+	 * Returns the number of programs run per second.
+	 *
+	 * @return the throughput
+	 */
+	public double throughput() {
+		return (wallNanos == 0) ? 0 : programs * 1e9 / wallNanos;
+	}
+
+	/**
+	 * Returns the latency below which the given percentage of the programs ran, by the nearest-rank method.
+	 *
+	 * @param percentile the percentage, between 0 and 100
+	 * @return the latency in nanoseconds, or 0 for an empty batch
+	 */
+	public long percentile(double percentile) {
+		if (latencyNanos.length == 0)
+			return 0;
+		int rank = (int) Math.ceil(percentile / 100 * latencyNanos.length);
+		return latencyNanos[Math.min(Math.max(rank, 1), latencyNanos.length) - 1];
+	}
+
+	/**
+	 * Returns a description of the summary.
+	 *
+	 * @return the counts, throughput and latency percentiles
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d programs, %d failed, %.1f programs/s, latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+				programs, failures, throughput(), percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6,
+				percentile(100) / 1e6);
+	}
+}
@@ -0,0 +1,39 @@
+package sml.cache;
+
+/**
+ * The counters of a {@link ResultCache} at one point in time.
+ *
+ * @param memoryHits the number of lookups answered from memory
+ * @param diskHits the number of lookups answered from disk
+ * @param misses the number of lookups answered by neither
+ * @param bypasses the number of runs that ran without the cache: runs of programs that cannot be keyed, and runs
+ *                 printing more than the maximum output of the cache
+ * @param evictions the number of results dropped from memory to make room for others
+ * @param diskErrors the number of result files that could not be read or written
+ * @param size the number of results held in memory
+ */
+public record CacheStatistics(long memoryHits, long diskHits, long misses, long bypasses, long evictions,
+							  long diskErrors, int size) {
+
+	/**
+	 * Returns the share of lookups answered from memory or disk.
+	 *
+	 * @return the hit ratio, between 0 and 1, or 0 if there was no lookup
+	 */
+	public double hitRatio() {
+		long lookups = memoryHits + diskHits + misses;
+		return (lookups == 0) ? 0 : (double) (memoryHits + diskHits) / lookups;
+	}
+
+	/**
+	 * Returns a description of the statistics.
+	 *
+	 * @return the counters and hit ratio
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d memory hits, %d disk hits, %d misses (hit ratio %.1f%%), %d bypasses, %d evictions,"
+						+ " %d disk errors, %d in memory",
+				memoryHits, diskHits, misses, hitRatio() * 100, bypasses, evictions, diskErrors, size);
+	}
+}
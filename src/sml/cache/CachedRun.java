@@ -0,0 +1,99 @@
+package sml.cache;
+
+import sml.Machine;
+import sml.OutputSink;
+import sml.Registers;
+
+import java.util.Arrays;
+
+/**
+ * The result of a run that ran to completion: the final values of the registers and the values printed by
+ * {@code out} instructions. Instances are immutable.
+ */
+public final class CachedRun {
+
+	private final int[] registers;
+	private final int[] output;
+
+	// The arrays are owned by the instance and never modified.
+	CachedRun(int[] registers, int[] output) {
+		this.registers = registers;
+		this.output = output;
+	}
+
+	/**
+	 * Creates a result.
+	 *
+	 * @param registers the final register values
+	 * @param output the values printed, in order, which are copied
+	 * @return the result
+	 */
+	public static CachedRun of(Registers registers, int[] output) {
+		int[] values = new int[Registers.COUNT];
+		for (int i = 0; i < Registers.COUNT; i++)
+			values[i] = registers.get(i);
+		return new CachedRun(values, output.clone());
+	}
+
+	int[] registerArray() {
+		return registers;
+	}
+
+	int[] outputArray() {
+		return output;
+	}
+
+	/**
+	 * Returns the final register values.
+	 *
+	 * @return a new {@code Registers} holding the values
+	 */
+	public Registers registers() {
+		Registers copy = new Registers();
+		for (int i = 0; i < Registers.COUNT; i++)
+			copy.set(i, registers[i]);
+		return copy;
+	}
+
+	/**
+	 * Returns the values printed by {@code out} instructions.
+	 *
+	 * @return a copy of the values, in order
+	 */
+	public int[] output() {
+		return output.clone();
+	}
+
+	/**
+	 * Leaves a machine as if it had run the program: the registers of the machine are set to the final values, and
+	 * the values printed are sent to the output of the machine, which is then flushed.
+	 *
+	 * @param machine the machine
+	 */
+	public void replay(Machine machine) {
+		Registers target = machine.getRegisters();
+		for (int i = 0; i < Registers.COUNT; i++)
+			target.set(i, registers[i]);
+		OutputSink sink = machine.getOutput();
+		for (int value : output)
+			sink.accept(value);
+		sink.flush();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CachedRun that)) return false;
+		return Arrays.equals(registers, that.registers) && Arrays.equals(output, that.output);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(registers) + Arrays.hashCode(output);
+	}
+
+	@Override
+	public String toString() {
+		return "out " + Arrays.toString(output) + " registers " + registers();
+	}
+}
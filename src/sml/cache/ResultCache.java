@@ -0,0 +1,325 @@
+package sml.cache;
+
+import sml.ExecutionEngine;
+import sml.Machine;
+import sml.OutputSink;
+import sml.Program;
+import sml.Registers;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * A cache of the results of deterministic runs, addressed by the {@link ResultKey} of the program and of its initial
+ * registers.
+ * <p>
+ * A program has no input other than its initial registers, so a run that ran to completion always ends with the
+ * same registers and output and can be answered from the cache instead of being run again. Runs that fail are not
+ * cached, and neither are programs holding instructions that cannot be packed, such as the superinstructions of
+ * {@link sml.optimizer.PeepholeOptimizer}; these are run every time. Neither are runs printing more than a maximum
+ * number of values, whose output is streamed to the sink of the machine without being kept.
+ * <p>
+ * Results are held in memory up to a fixed number, the least recently used being evicted first, and optionally in a
+ * directory, one file per result, which survives the process and can be shared by several processes. A result file
+ * that cannot be read is treated as missing. The cache is safe for use by several threads; two threads missing the
+ * same key at the same time both run the program.
+ */
+public final class ResultCache {
+
+	/** The extension of the result files. */
+	public static final String EXTENSION = ".smlr";
+
+	/** The default maximum number of values printed by a cached run. */
+	public static final int DEFAULT_MAX_OUTPUT = 1 << 20;
+
+	private static final int MAGIC = 0x534D4C52; // "SMLR"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+
+	private final Map<ResultKey, CachedRun> memory;
+	private final Path directory;
+	private final int maxOutput;
+
+	private final LongAdder memoryHits = new LongAdder();
+	private final LongAdder diskHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder bypasses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder diskErrors = new LongAdder();
+
+	/**
+	 * Creates a cache held in memory only.
+	 *
+	 * @param capacity the maximum number of results held in memory
+	 */
+	public ResultCache(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * Creates a cache held in memory and in a directory.
+	 *
+	 * @param capacity the maximum number of results held in memory
+	 * @param directory the directory of the result files, created if needed, or {@code null} for no disk tier
+	 */
+	public ResultCache(int capacity, Path directory) {
+		this(capacity, directory, DEFAULT_MAX_OUTPUT);
+	}
+
+	/**
+	 * Creates a cache held in memory and in a directory, caching runs up to the given size of output.
+	 *
+	 * @param capacity the maximum number of results held in memory
+	 * @param directory the directory of the result files, created if needed, or {@code null} for no disk tier
+	 * @param maxOutput the maximum number of values printed by a cached run; a run printing more is not cached
+	 */
+	public ResultCache(int capacity, Path directory, int maxOutput) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		if (maxOutput < 0)
+			throw new IllegalArgumentException("Maximum output must not be negative: " + maxOutput);
+		this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ResultKey, CachedRun> eldest) {
+				if (size() <= capacity)
+					return false;
+				evictions.increment();
+				return true;
+			}
+		};
+		this.directory = directory;
+		this.maxOutput = maxOutput;
+	}
+
+	/**
+	 * Runs the program of the machine from its registers as they are, as {@link Machine#run()} does, or replays the
+	 * cached result of an identical run into the machine. A run printing more than the maximum output of the cache
+	 * is counted as a bypass and not cached.
+	 *
+	 * @param machine the machine
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	public void run(Machine machine) {
+		ResultKey key;
+		try {
+			key = ResultKey.of(Program.of(machine), machine.getRegisters());
+		} catch (IllegalArgumentException e) {
+			bypasses.increment();
+			machine.run();
+			return;
+		}
+		Optional<CachedRun> cached = get(key);
+		if (cached.isPresent()) {
+			cached.get().replay(machine);
+			return;
+		}
+
+		OutputSink output = machine.getOutput();
+		Recorder recorder = new Recorder(output, maxOutput);
+		machine.setOutput(recorder);
+		try {
+			machine.run();
+		} finally {
+			machine.setOutput(output);
+			output.flush();
+		}
+		if (recorder.collected == null) {
+			bypasses.increment();
+			return;
+		}
+		put(key, CachedRun.of(machine.getRegisters(), recorder.collected.toArray()));
+	}
+
+	/**
+	 * Passes the output of a run on to the sink of the machine, keeping it to be cached until it exceeds the maximum
+	 * output of the cache.
+	 */
+	private static final class Recorder implements OutputSink {
+
+		private final OutputSink output;
+		private final int maxOutput;
+		private CollectingSink collected = new CollectingSink();
+
+		Recorder(OutputSink output, int maxOutput) {
+			this.output = output;
+			this.maxOutput = maxOutput;
+		}
+
+		@Override
+		public void accept(int value) {
+			if (collected != null) {
+				if (collected.size() < maxOutput)
+					collected.accept(value);
+				else
+					collected = null; // the run will not be cached, so its output is no longer kept
+			}
+			output.accept(value);
+		}
+	}
+
+	/**
+	 * Returns the result of running the program from the given register values, running it if needed.
+	 *
+	 * @param program the program
+	 * @param initial the initial register values
+	 * @param engine the engine used on a miss, or {@code null} for the interpreter
+	 * @return the result
+	 */
+	public CachedRun run(Program program, Registers initial, ExecutionEngine engine) {
+		Machine machine = program.newMachine(initial);
+		machine.setEngine(engine);
+		machine.setOutput(new CollectingSink());
+		run(machine);
+		return CachedRun.of(machine.getRegisters(), ((CollectingSink) machine.getOutput()).toArray());
+	}
+
+	/**
+	 * Looks a result up, in memory first and then on disk. A result found on disk is kept in memory.
+	 *
+	 * @param key the key of the run
+	 * @return the result, or an empty optional on a miss
+	 */
+	public Optional<CachedRun> get(ResultKey key) {
+		CachedRun run;
+		synchronized (memory) {
+			run = memory.get(key);
+		}
+		if (run != null) {
+			memoryHits.increment();
+			return Optional.of(run);
+		}
+		run = read(key);
+		if (run != null) {
+			diskHits.increment();
+			synchronized (memory) {
+				memory.put(key, run);
+			}
+			return Optional.of(run);
+		}
+		misses.increment();
+		return Optional.empty();
+	}
+
+	/**
+	 * Stores a result in memory and, if the cache has a directory, on disk.
+	 *
+	 * @param key the key of the run
+	 * @param run the result
+	 */
+	public void put(ResultKey key, CachedRun run) {
+		synchronized (memory) {
+			memory.put(key, run);
+		}
+		write(key, run);
+	}
+
+	/**
+	 * Drops the results held in memory; the result files are left as they are.
+	 */
+	public void clear() {
+		synchronized (memory) {
+			memory.clear();
+		}
+	}
+
+	/**
+	 * Returns the current counters of the cache.
+	 *
+	 * @return the statistics
+	 */
+	public CacheStatistics statistics() {
+		int size;
+		synchronized (memory) {
+			size = memory.size();
+		}
+		return new CacheStatistics(memoryHits.sum(), diskHits.sum(), misses.sum(), bypasses.sum(), evictions.sum(),
+				diskErrors.sum(), size);
+	}
+
+	private Path file(ResultKey key) {
+		return directory.resolve(key.hash() + EXTENSION);
+	}
+
+	/**
+	 * Reads a result file: a header (magic, version, checksum of the rest), the register values, the number of
+	 * values printed, and the values.
+	 */
+	private CachedRun read(ResultKey key) {
+		if (directory == null)
+			return null;
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file(key)));
+			if (buffer.remaining() < HEADER_SIZE + 4 * (Registers.COUNT + 1) || buffer.getInt() != MAGIC
+					|| buffer.getInt() != VERSION || buffer.getInt() != checksum(buffer.duplicate()))
+				throw new IOException(file(key) + " is not a valid result file");
+			int[] registers = new int[Registers.COUNT];
+			buffer.asIntBuffer().get(registers);
+			buffer.position(buffer.position() + 4 * Registers.COUNT);
+			int count = buffer.getInt();
+			if (count < 0 || buffer.remaining() != 4 * count)
+				throw new IOException(file(key) + " is corrupt");
+			int[] output = new int[count];
+			buffer.asIntBuffer().get(output);
+			return new CachedRun(registers, output);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			diskErrors.increment();
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a result file next to its final location and moves it into place, so that readers never see a
+	 * partially written file.
+	 */
+	private void write(ResultKey key, CachedRun run) {
+		if (directory == null)
+			return;
+		int[] registers = run.registerArray();
+		int[] output = run.outputArray();
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * (registers.length + 1 + output.length));
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(0);
+		for (int value : registers)
+			buffer.putInt(value);
+		buffer.putInt(output.length);
+		for (int value : output)
+			buffer.putInt(value);
+		buffer.putInt(8, checksum(buffer.duplicate().position(HEADER_SIZE).limit(buffer.capacity())));
+		buffer.flip();
+
+		try {
+			Files.createDirectories(directory);
+			Path temporary = Files.createTempFile(directory, key.hash(), ".tmp");
+			try {
+				try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+					while (buffer.hasRemaining())
+						channel.write(buffer);
+				}
+				Files.move(temporary, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		} catch (IOException e) {
+			diskErrors.increment();
+		}
+	}
+
+	private static int checksum(ByteBuffer bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,68 @@
+package sml.cache;
+
+import sml.Program;
+import sml.Registers;
+import sml.compiler.PackedProgram;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The content address of a deterministic run: a SHA-256 hash of the canonical form of a program and of the initial
+ * values of the registers.
+ * <p>
+ * The canonical form of a program is its packed code ({@link PackedProgram#code()}), in which registers are
+ * numbered and jump targets are addresses, so that two programs differing only in the names of their labels have
+ * the same key.
+ *
+ * @param hash the hash, as 64 lowercase hexadecimal digits
+ */
+public record ResultKey(String hash) {
+
+	private static final byte[] DOMAIN = {'S', 'M', 'L', 'R', 0, 0, 0, 1};
+
+	/**
+	 * Returns the key of a run of the program from cleared registers, as by {@link sml.Machine#execute()}.
+	 *
+	 * @param program the program
+	 * @return the key
+	 * @throws IllegalArgumentException if the program contains an instruction that cannot be packed
+	 */
+	public static ResultKey of(Program program) {
+		return of(program, new Registers());
+	}
+
+	/**
+	 * Returns the key of a run of the program from the given register values.
+	 *
+	 * @param program the program
+	 * @param initial the initial register values
+	 * @return the key
+	 * @throws IllegalArgumentException if the program contains an instruction that cannot be packed
+	 */
+	public static ResultKey of(Program program, Registers initial) {
+		int[] code = PackedProgram.pack(program.getInstructions(), program.getLabels()).code();
+		ByteBuffer bytes = ByteBuffer.allocate(DOMAIN.length + 4 * (1 + code.length + Registers.COUNT));
+		bytes.put(DOMAIN).putInt(code.length);
+		for (int word : code)
+			bytes.putInt(word);
+		for (int i = 0; i < Registers.COUNT; i++)
+			bytes.putInt(initial.get(i));
+		return new ResultKey(HexFormat.of().formatHex(sha256().digest(bytes.array())));
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return hash;
+	}
+}
@@ -0,0 +1,212 @@
+package sml.compiler;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.AddInstruction;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * An execution engine that splits the program of a machine into basic blocks and runs each block as a straight-line
+ * unit: the instructions of a block are executed one after the other without checking the program counter, and the
+ * block to run next is chosen once, at the end of the block, from exits computed in advance.
+ * <p>
+ * A block begins at address 0, at every labelled instruction, at the target of every {@code jnz}, and after every
+ * instruction that may jump. Instructions other than those of the machine language, such as the superinstructions
+ * of {@link sml.optimizer.PeepholeOptimizer}, end their block, and the address they return selects the next block.
+ * <p>
+ * The engine counts the executions of every block; the counts accumulate over all the executions of the same
+ * program and are returned by {@link #blockCounts()}. The blocks are built on the first execution and built again
+ * only if the program of the machine changes. The engine can be shared by machines running the same
+ * {@link sml.Program} image on different threads.
+ */
+public final class BlockEngine implements ExecutionEngine {
+
+	private static final int EXIT = -1;
+
+	/**
+	 * The executions of a block.
+	 *
+	 * @param start the address of the first instruction of the block
+	 * @param end the address following the last instruction of the block
+	 * @param count the number of executions of the block
+	 */
+	public record BlockCount(int start, int end, long count) {
+	}
+
+	/**
+	 * A basic block.
+	 *
+	 * @param start the address of the first instruction
+	 * @param end the address following the last instruction
+	 * @param body the instructions executed straight through
+	 * @param terminator the final instruction if it may jump and is not a {@code jnz}, or null
+	 * @param tested the register index tested by the final {@code jnz}, or -1
+	 * @param taken the block a final {@code jnz} jumps to
+	 * @param next the block following this one
+	 */
+	private record Block(int start, int end, Instruction[] body, Instruction terminator, int tested, int taken,
+						 int next) {
+	}
+
+	/** A program and its blocks, replaced as a whole so that the engine can be shared between threads. */
+	private record Compiled(List<Instruction> program, Instruction[] code, Block[] blocks, int[] blockAt,
+							long[] counts) {
+	}
+
+	private volatile Compiled compiled;
+
+	/**
+	 * Executes the program of the machine, building its blocks first if needed.
+	 *
+	 * @param machine the machine whose program is executed
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	@Override
+	public void execute(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		Compiled compiled = this.compiled;
+		if (compiled == null || !ProgramSnapshot.matches(program, compiled.program())) {
+			compiled = compile(machine);
+			this.compiled = compiled;
+		}
+
+		Block[] blocks = compiled.blocks();
+		long[] counts = new long[blocks.length];
+		Registers registers = machine.getRegisters();
+		int block = (blocks.length == 0) ? EXIT : 0;
+		try {
+			while (block != EXIT) {
+				Block b = blocks[block];
+				counts[block]++;
+				for (Instruction ins : b.body())
+					ins.execute(machine);
+				if (b.tested() >= 0) {
+					block = (registers.get(b.tested()) != 0) ? b.taken() : b.next();
+				} else if (b.terminator() != null) {
+					int programCounterUpdate = b.terminator().execute(machine);
+					block = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
+							? b.next()
+							: enter(compiled, programCounterUpdate, machine);
+				} else {
+					block = b.next();
+				}
+			}
+		} finally {
+			synchronized (compiled.counts()) {
+				for (int i = 0; i < counts.length; i++)
+					compiled.counts()[i] += counts[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the block beginning at an address. An address within a block is reached by interpreting the
+	 * instructions up to the start of the next block.
+	 */
+	private static int enter(Compiled compiled, int address, Machine machine) {
+		Instruction[] code = compiled.code();
+		int programCounter = address;
+		while (programCounter < code.length && compiled.blockAt()[programCounter] < 0) {
+			int programCounterUpdate = code[programCounter].execute(machine);
+			programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
+					? programCounter + 1
+					: programCounterUpdate;
+		}
+		return (programCounter < code.length) ? compiled.blockAt()[programCounter] : EXIT;
+	}
+
+	private static Compiled compile(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		Labels labels = machine.getLabels();
+		Instruction[] code = program.toArray(new Instruction[0]);
+		int size = code.length;
+		boolean[] leaders = new boolean[size + 1];
+		if (size > 0)
+			leaders[0] = true;
+		for (int address = 0; address < size; address++) {
+			Instruction ins = code[address];
+			if (ins.getLabel() != null)
+				leaders[address] = true;
+			if (ins instanceof JnzInstruction jnz) {
+				if (!labels.contains(jnz.getOtherLabel()))
+					throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' does not exist");
+				int target = labels.getAddress(jnz.getOtherLabel());
+				if (target >= 0 && target < size)
+					leaders[target] = true;
+			}
+			if (!isStraight(ins))
+				leaders[address + 1] = true;
+		}
+
+		int[] blockAt = new int[size];
+		Arrays.fill(blockAt, -1);
+		List<Integer> starts = new ArrayList<>();
+		for (int address = 0; address < size; address++) {
+			if (leaders[address]) {
+				blockAt[address] = starts.size();
+				starts.add(address);
+			}
+		}
+
+		Block[] blocks = new Block[starts.size()];
+		for (int i = 0; i < blocks.length; i++) {
+			int start = starts.get(i);
+			int end = (i + 1 < blocks.length) ? starts.get(i + 1) : size;
+			int next = (i + 1 < blocks.length) ? i + 1 : EXIT;
+			Instruction last = code[end - 1];
+			if (isStraight(last)) {
+				blocks[i] = new Block(start, end, Arrays.copyOfRange(code, start, end), null, -1, EXIT, next);
+			} else if (last instanceof JnzInstruction jnz) {
+				int target = labels.getAddress(jnz.getOtherLabel());
+				int taken = (target >= 0 && target < size) ? blockAt[target] : EXIT;
+				blocks[i] = new Block(start, end, Arrays.copyOfRange(code, start, end - 1), null,
+						Registers.indexOf(jnz.getRegister()), taken, next);
+			} else {
+				blocks[i] = new Block(start, end, Arrays.copyOfRange(code, start, end - 1), last, -1, EXIT, next);
+			}
+		}
+		return new Compiled(ProgramSnapshot.of(machine), code, blocks, blockAt, new long[blocks.length]);
+	}
+
+	/**
+	 * Returns whether an instruction always continues with the next one.
+	 */
+	private static boolean isStraight(Instruction ins) {
+		return ins instanceof AddInstruction || ins instanceof SubInstruction || ins instanceof MulInstruction
+				|| ins instanceof DivInstruction || ins instanceof MovInstruction || ins instanceof OutInstruction;
+	}
+
+	/**
+	 * Returns the executions of every block of the program last executed, in program order, accumulated over all
+	 * the executions of that program.
+	 *
+	 * @return the block counts, or an empty list if the engine has not executed a program
+	 */
+	public List<BlockCount> blockCounts() {
+		Compiled compiled = this.compiled;
+		if (compiled == null)
+			return List.of();
+		List<BlockCount> counts = new ArrayList<>(compiled.blocks().length);
+		synchronized (compiled.counts()) {
+			for (int i = 0; i < compiled.blocks().length; i++) {
+				Block block = compiled.blocks()[i];
+				counts.add(new BlockCount(block.start(), block.end(), compiled.counts()[i]));
+			}
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,211 @@
+package sml.compiler;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Compiles a translated SML program into a JVM class, loaded as a hidden class.
+ * <p>
+ * Every register becomes a local {@code int} variable of the generated {@link CompiledProgram#run} method: the
+ * registers are loaded once on entry and stored back on exit, arithmetic instructions become the matching JVM
+ * instructions, and {@code jnz} becomes a conditional branch. The whole program is a single method, so the JIT
+ * compiler can optimise across instructions, but the program must fit into the 64KB limit of a method.
+ */
+public final class BytecodeCompiler {
+
+	private static final String CLASS_NAME = "sml/compiler/CompiledSmlProgram";
+	private static final String OBJECT = "java/lang/Object";
+	private static final String REGISTERS = "sml/Registers";
+	private static final String INT_CONSUMER = "java/util/function/IntConsumer";
+	private static final String RUN_DESCRIPTOR = "(Lsml/Registers;Ljava/util/function/IntConsumer;)V";
+
+	// Locals of the run method: this, the registers, the out consumer, the eight registers
+	// and, in the exception handler, the exception being rethrown.
+	private static final int REGISTERS_LOCAL = 1;
+	private static final int OUT_LOCAL = 2;
+	private static final int FIRST_REGISTER_LOCAL = 3;
+	private static final int EXCEPTION_LOCAL = FIRST_REGISTER_LOCAL + Registers.COUNT;
+
+	private BytecodeCompiler() {
+	}
+
+	/**
+	 * Compiles the program and loads it as a hidden class.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @return the compiled program
+	 * @throws IllegalArgumentException if the program contains an instruction that cannot be compiled, refers to a
+	 *                                  label that does not exist, or is too large for a single method
+	 */
+	public static CompiledProgram compile(List<Instruction> program, Labels labels) {
+		byte[] classFile = generate(program, labels);
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+			return (CompiledProgram) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+					.invoke();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot load the compiled program", e);
+		}
+	}
+
+	/**
+	 * Generates the class file of the compiled program.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @return the bytes of the class file
+	 */
+	static byte[] generate(List<Instruction> program, Labels labels) {
+		ClassFileWriter cw = new ClassFileWriter(CLASS_NAME, OBJECT, "sml/compiler/CompiledProgram");
+
+		ClassFileWriter.Code init = new ClassFileWriter.Code(1, 1);
+		init.u1(0x2a); // aload_0
+		init.u1(0xb7); // invokespecial
+		init.u2(cw.methodRef(OBJECT, "<init>", "()V"));
+		init.u1(0xb1); // return
+		cw.method(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", init);
+
+		cw.method(ClassFileWriter.ACC_PUBLIC, "run", RUN_DESCRIPTOR, run(cw, program, labels));
+		return cw.toByteArray(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL | ClassFileWriter.ACC_SUPER);
+	}
+
+	private static ClassFileWriter.Code run(ClassFileWriter cw, List<Instruction> program, Labels labels) {
+		ClassFileWriter.Code code = new ClassFileWriter.Code(3, EXCEPTION_LOCAL + 1);
+		int get = cw.methodRef(REGISTERS, "get", "(I)I");
+		int set = cw.methodRef(REGISTERS, "set", "(II)V");
+		int accept = cw.interfaceMethodRef(INT_CONSUMER, "accept", "(I)V");
+
+		byte[][] locals = new byte[EXCEPTION_LOCAL][];
+		locals[0] = ClassFileWriter.Code.objectType(cw.thisClass());
+		locals[REGISTERS_LOCAL] = ClassFileWriter.Code.objectType(cw.classRef(REGISTERS));
+		locals[OUT_LOCAL] = ClassFileWriter.Code.objectType(cw.classRef(INT_CONSUMER));
+		for (int i = FIRST_REGISTER_LOCAL; i < EXCEPTION_LOCAL; i++)
+			locals[i] = ClassFileWriter.Code.intType();
+		byte[][] noStack = new byte[0][];
+
+		for (int i = 0; i < Registers.COUNT; i++) {
+			code.u1(0x2b); // aload_1
+			pushInt(cw, code, i);
+			code.u1(0xb6); // invokevirtual
+			code.u2(get);
+			store(code, i);
+		}
+
+		int[] addresses = new int[program.size()];
+		int[][] jumps = new int[program.size()][];
+		int start = code.offset();
+		for (int address = 0; address < program.size(); address++) {
+			addresses[address] = code.offset();
+			Instruction ins = program.get(address);
+			if (ins instanceof AddInstruction add) {
+				binary(code, add.getResult(), add.getSource(), 0x60); // iadd
+			} else if (ins instanceof SubInstruction sub) {
+				binary(code, sub.getResult(), sub.getSource(), 0x64); // isub
+			} else if (ins instanceof MulInstruction mul) {
+				binary(code, mul.getResult(), mul.getSource(), 0x68); // imul
+			} else if (ins instanceof DivInstruction div) {
+				binary(code, div.getResult(), div.getSource(), 0x6c); // idiv
+			} else if (ins instanceof MovInstruction mov) {
+				pushInt(cw, code, mov.getValue());
+				store(code, Registers.indexOf(mov.getRegister()));
+			} else if (ins instanceof OutInstruction out) {
+				code.u1(0x2c); // aload_2
+				load(code, Registers.indexOf(out.getRegister()));
+				code.u1(0xb9); // invokeinterface
+				code.u2(accept);
+				code.u1(2);
+				code.u1(0);
+			} else if (ins instanceof JnzInstruction jnz) {
+				if (!labels.contains(jnz.getOtherLabel()))
+					throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' does not exist");
+				load(code, Registers.indexOf(jnz.getRegister()));
+				code.u1(0x99); // ifeq over the goto_w
+				code.u2(8);
+				int gotoOffset = code.offset();
+				code.u1(0xc8); // goto_w, patched below
+				code.u4(0);
+				jumps[address] = new int[]{gotoOffset, labels.getAddress(jnz.getOtherLabel())};
+				code.frame(code.offset(), locals, noStack);
+			} else {
+				throw new IllegalArgumentException("Cannot compile instruction '" + ins + "'");
+			}
+		}
+		int end = code.offset();
+
+		for (int[] jump : jumps) {
+			if (jump == null)
+				continue;
+			int target = addresses[jump[1]];
+			code.patch4(jump[0] + 1, target - jump[0]);
+			code.frame(target, locals, noStack);
+		}
+
+		storeRegisters(code, set);
+		code.u1(0xb1); // return
+
+		if (end > start) {
+			int handler = code.offset();
+			code.handler(start, end, handler, 0);
+			code.frame(handler, locals,
+					new byte[][]{ClassFileWriter.Code.objectType(cw.classRef("java/lang/Throwable"))});
+			code.u1(0x3a); // astore
+			code.u1(EXCEPTION_LOCAL);
+			storeRegisters(code, set);
+			code.u1(0x19); // aload
+			code.u1(EXCEPTION_LOCAL);
+			code.u1(0xbf); // athrow
+		}
+		return code;
+	}
+
+	private static void binary(ClassFileWriter.Code code, RegisterName result, RegisterName source, int opcode) {
+		load(code, Registers.indexOf(result));
+		load(code, Registers.indexOf(source));
+		code.u1(opcode);
+		store(code, Registers.indexOf(result));
+	}
+
+	private static void storeRegisters(ClassFileWriter.Code code, int set) {
+		for (int i = 0; i < Registers.COUNT; i++) {
+			code.u1(0x2b); // aload_1
+			code.u1(0x10); // bipush
+			code.u1(i);
+			load(code, i);
+			code.u1(0xb6); // invokevirtual
+			code.u2(set);
+		}
+	}
+
+	private static void load(ClassFileWriter.Code code, int register) {
+		code.u1(0x15); // iload
+		code.u1(FIRST_REGISTER_LOCAL + register);
+	}
+
+	private static void store(ClassFileWriter.Code code, int register) {
+		code.u1(0x36); // istore
+		code.u1(FIRST_REGISTER_LOCAL + register);
+	}
+
+	private static void pushInt(ClassFileWriter cw, ClassFileWriter.Code code, int value) {
+		if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			code.u1(0x10); // bipush
+			code.u1(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			code.u1(0x11); // sipush
+			code.u2(value);
+		} else {
+			code.u1(0x13); // ldc_w
+			code.u2(cw.integer(value));
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package sml.compiler;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Machine;
+
+import java.util.List;
+
+/**
+ * An execution engine that runs the program of a machine as JVM bytecode generated by {@link BytecodeCompiler}.
+ * <p>
+ * The program is compiled on the first execution and compiled again only if the program of the machine changes.
+ * The engine can be shared by machines running the same {@link sml.Program} image on different threads.
+ */
+public final class BytecodeEngine implements ExecutionEngine {
+
+	/** A program and its compiled form, replaced as a whole so that the engine can be shared between threads. */
+	private record Compiled(List<Instruction> program, CompiledProgram code) {
+	}
+
+	private volatile Compiled compiled;
+
+	/**
+	 * Executes the program of the machine, compiling it first if needed.
+	 *
+	 * @param machine the machine whose program is executed
+	 * @throws IllegalArgumentException if the program cannot be compiled
+	 */
+	@Override
+	public void execute(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		Compiled compiled = this.compiled;
+		if (compiled == null || !ProgramSnapshot.matches(program, compiled.program())) {
+			compiled = new Compiled(ProgramSnapshot.of(machine), BytecodeCompiler.compile(program, machine.getLabels()));
+			this.compiled = compiled;
+		}
+		compiled.code().run(machine.getRegisters(), machine.getOutput());
+	}
+}
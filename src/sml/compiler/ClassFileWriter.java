@@ -0,0 +1,321 @@
+package sml.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A minimal writer for JVM class files, covering only what {@link BytecodeCompiler} needs: a constant pool of
+ * classes, integers and method references, and methods with a code attribute, an exception table and a stack map
+ * table.
+ */
+final class ClassFileWriter {
+
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	/** The class file version of Java 17. */
+	private static final int MAJOR_VERSION = 61;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> constants = new HashMap<>();
+	private int poolCount = 1;
+
+	private final List<byte[]> methods = new ArrayList<>();
+
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+
+	/**
+	 * Starts a class file for a class with the given internal names.
+	 *
+	 * @param name the internal name of the class, such as {@code sml/compiler/Program}
+	 * @param superName the internal name of the super class
+	 * @param interfaceNames the internal names of the implemented interfaces
+	 */
+	ClassFileWriter(String name, String superName, String... interfaceNames) {
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+		interfaces = new int[interfaceNames.length];
+		for (int i = 0; i < interfaceNames.length; i++)
+			interfaces[i] = classRef(interfaceNames[i]);
+	}
+
+	int thisClass() {
+		return thisClass;
+	}
+
+	int utf8(String value) {
+		return constant("U" + value, out -> {
+			out.writeByte(CONSTANT_UTF8);
+			out.writeUTF(value);
+		});
+	}
+
+	int integer(int value) {
+		return constant("I" + value, out -> {
+			out.writeByte(CONSTANT_INTEGER);
+			out.writeInt(value);
+		});
+	}
+
+	int classRef(String internalName) {
+		int name = utf8(internalName);
+		return constant("C" + internalName, out -> {
+			out.writeByte(CONSTANT_CLASS);
+			out.writeShort(name);
+		});
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	int interfaceMethodRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		int ownerClass = classRef(owner);
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		int nameAndType = constant("N" + name + ":" + descriptor, out -> {
+			out.writeByte(CONSTANT_NAME_AND_TYPE);
+			out.writeShort(nameIndex);
+			out.writeShort(descriptorIndex);
+		});
+		return constant(tag + owner + "." + name + ":" + descriptor, out -> {
+			out.writeByte(tag);
+			out.writeShort(ownerClass);
+			out.writeShort(nameAndType);
+		});
+	}
+
+	private int constant(String key, PoolEntry entry) {
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+		try {
+			entry.write(pool);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		constants.put(key, poolCount);
+		return poolCount++;
+	}
+
+	/**
+	 * Adds a method to the class.
+	 *
+	 * @param access the access flags of the method
+	 * @param name the name of the method
+	 * @param descriptor the descriptor of the method
+	 * @param code the code of the method
+	 */
+	void method(int access, String name, String descriptor, Code code) {
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		int codeIndex = utf8("Code");
+		int stackMapIndex = code.frames.isEmpty() ? 0 : utf8("StackMapTable");
+		byte[] body = code.body();
+		if (body.length > 65535)
+			throw new IllegalArgumentException("Method " + name + " is too large: " + body.length + " bytes");
+
+		byte[] stackMap = code.stackMapTable();
+		write(out -> {
+			out.writeShort(access);
+			out.writeShort(nameIndex);
+			out.writeShort(descriptorIndex);
+			out.writeShort(1);
+			out.writeShort(codeIndex);
+			int attributeLength = 2 + 2 + 4 + body.length + 2 + 8 * code.handlers.size() + 2
+					+ (stackMap.length == 0 ? 0 : 6 + stackMap.length);
+			out.writeInt(attributeLength);
+			out.writeShort(code.maxStack);
+			out.writeShort(code.maxLocals);
+			out.writeInt(body.length);
+			out.write(body);
+			out.writeShort(code.handlers.size());
+			for (int[] handler : code.handlers)
+				for (int value : handler)
+					out.writeShort(value);
+			if (stackMap.length == 0) {
+				out.writeShort(0);
+			} else {
+				out.writeShort(1);
+				out.writeShort(stackMapIndex);
+				out.writeInt(stackMap.length);
+				out.write(stackMap);
+			}
+		}, methods);
+	}
+
+	/**
+	 * Returns the complete class file.
+	 *
+	 * @param access the access flags of the class
+	 * @return the bytes of the class file
+	 */
+	byte[] toByteArray(int access) {
+		List<byte[]> file = new ArrayList<>();
+		write(out -> {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+			out.writeShort(poolCount);
+			out.write(poolBytes.toByteArray());
+			out.writeShort(access);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.length);
+			for (int i : interfaces)
+				out.writeShort(i);
+			out.writeShort(0);
+			out.writeShort(methods.size());
+			for (byte[] method : methods)
+				out.write(method);
+			out.writeShort(0);
+		}, file);
+		return file.get(0);
+	}
+
+	private static void write(PoolEntry writer, List<byte[]> target) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			writer.write(new DataOutputStream(bytes));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		target.add(bytes.toByteArray());
+	}
+
+	@FunctionalInterface
+	private interface PoolEntry {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * The code of a method under construction.
+	 * <p>
+	 * Stack map frames are recorded as full frames, given as arrays of verification types already encoded with
+	 * {@link #intType()} and {@link #objectType(int)}.
+	 */
+	static final class Code {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final List<int[]> handlers = new ArrayList<>();
+		private final List<int[]> patches = new ArrayList<>();
+		private final Map<Integer, byte[]> frames = new TreeMap<>();
+		private final int maxStack;
+		private final int maxLocals;
+
+		Code(int maxStack, int maxLocals) {
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+
+		static byte[] intType() {
+			return new byte[]{1};
+		}
+
+		static byte[] objectType(int classIndex) {
+			return new byte[]{7, (byte) (classIndex >> 8), (byte) classIndex};
+		}
+
+		/** Returns the offset of the next byte written. */
+		int offset() {
+			return bytes.size();
+		}
+
+		void u1(int value) {
+			bytes.write(value);
+		}
+
+		void u2(int value) {
+			bytes.write(value >> 8);
+			bytes.write(value);
+		}
+
+		void u4(int value) {
+			u2(value >>> 16);
+			u2(value & 0xFFFF);
+		}
+
+		/**
+		 * Overwrites four bytes at the given offset once the code is complete, to patch a branch emitted before its
+		 * target was known.
+		 */
+		void patch4(int offset, int value) {
+			patches.add(new int[]{offset, value});
+		}
+
+		private byte[] body() {
+			byte[] body = bytes.toByteArray();
+			for (int[] patch : patches) {
+				int offset = patch[0], value = patch[1];
+				body[offset] = (byte) (value >> 24);
+				body[offset + 1] = (byte) (value >> 16);
+				body[offset + 2] = (byte) (value >> 8);
+				body[offset + 3] = (byte) value;
+			}
+			return body;
+		}
+
+		void handler(int start, int end, int handler, int catchType) {
+			handlers.add(new int[]{start, end, handler, catchType});
+		}
+
+		/**
+		 * Records a full stack map frame at the given offset.
+		 *
+		 * @param offset the offset of the branch target or exception handler
+		 * @param locals the verification types of the locals
+		 * @param stack the verification types of the operand stack
+		 */
+		void frame(int offset, byte[][] locals, byte[][] stack) {
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			frame.write(locals.length >> 8);
+			frame.write(locals.length);
+			for (byte[] type : locals)
+				frame.write(type, 0, type.length);
+			frame.write(stack.length >> 8);
+			frame.write(stack.length);
+			for (byte[] type : stack)
+				frame.write(type, 0, type.length);
+			frames.put(offset, frame.toByteArray());
+		}
+
+		private byte[] stackMapTable() {
+			if (frames.isEmpty())
+				return new byte[0];
+			ByteArrayOutputStream table = new ByteArrayOutputStream();
+			table.write(frames.size() >> 8);
+			table.write(frames.size());
+			int previous = -1;
+			for (Map.Entry<Integer, byte[]> frame : frames.entrySet()) {
+				int delta = frame.getKey() - previous - 1;
+				table.write(255); // full_frame
+				table.write(delta >> 8);
+				table.write(delta);
+				table.write(frame.getValue(), 0, frame.getValue().length);
+				previous = frame.getKey();
+			}
+			return table.toByteArray();
+		}
+	}
+}
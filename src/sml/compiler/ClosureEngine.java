@@ -0,0 +1,160 @@
+package sml.compiler;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.List;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * An execution engine that turns every instruction into a specialised closure before the run starts.
+ * <p>
+ * Each closure captures the register file indices of its operands and returns the address of the next instruction,
+ * so jumps are resolved in advance and the run loop is a plain walk over an array of closures, without label
+ * lookups or program counter sentinels. Instructions this engine does not know about are wrapped as they are and
+ * executed through {@link Instruction#execute(Machine)}.
+ * <p>
+ * Unlike {@link BytecodeEngine}, no class is generated, so there is no start-up cost beyond one allocation per
+ * instruction. The closures are built on the first execution and built again only if the program of the machine
+ * changes. The engine can be shared by machines running the same {@link sml.Program} image on different threads.
+ */
+public final class ClosureEngine implements ExecutionEngine {
+
+	/**
+	 * An instruction bound to its operands.
+	 * <p>
+	 * This is an abstract class rather than a functional interface so that the call in the run loop is dispatched
+	 * through the virtual method table, which is notably cheaper than interface dispatch at a megamorphic call site.
+	 */
+	private abstract static class Step {
+		/**
+		 * Executes the instruction.
+		 *
+		 * @param registers the registers of the machine on which to execute the instruction
+		 * @param machine the machine on which to execute the instruction
+		 * @return the address of the next instruction to execute
+		 */
+		abstract int execute(Registers registers, Machine machine);
+	}
+
+	/** A program and its closures, replaced as a whole so that the engine can be shared between threads. */
+	private record Compiled(List<Instruction> program, Step[] steps) {
+	}
+
+	private volatile Compiled compiled;
+
+	/**
+	 * Executes the program of the machine, building its closures first if needed.
+	 *
+	 * @param machine the machine whose program is executed
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	@Override
+	public void execute(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		Compiled compiled = this.compiled;
+		if (compiled == null || !ProgramSnapshot.matches(program, compiled.program())) {
+			compiled = new Compiled(ProgramSnapshot.of(machine), compile(program, machine.getLabels()));
+			this.compiled = compiled;
+		}
+
+		Step[] steps = compiled.steps();
+		Registers registers = machine.getRegisters();
+		int programCounter = 0;
+		while (programCounter < steps.length)
+			programCounter = steps[programCounter].execute(registers, machine);
+	}
+
+	private static Step[] compile(List<Instruction> program, Labels labels) {
+		Step[] steps = new Step[program.size()];
+		for (int address = 0; address < steps.length; address++)
+			steps[address] = compile(program.get(address), address + 1, labels);
+		return steps;
+	}
+
+	private static Step compile(Instruction ins, int next, Labels labels) {
+		if (ins instanceof AddInstruction add) {
+			int result = Registers.indexOf(add.getResult()), source = Registers.indexOf(add.getSource());
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					r.set(result, r.get(result) + r.get(source));
+					return next;
+				}
+			};
+		}
+		if (ins instanceof SubInstruction sub) {
+			int result = Registers.indexOf(sub.getResult()), source = Registers.indexOf(sub.getSource());
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					r.set(result, r.get(result) - r.get(source));
+					return next;
+				}
+			};
+		}
+		if (ins instanceof MulInstruction mul) {
+			int result = Registers.indexOf(mul.getResult()), source = Registers.indexOf(mul.getSource());
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					r.set(result, r.get(result) * r.get(source));
+					return next;
+				}
+			};
+		}
+		if (ins instanceof DivInstruction div) {
+			int result = Registers.indexOf(div.getResult()), source = Registers.indexOf(div.getSource());
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					r.set(result, r.get(result) / r.get(source));
+					return next;
+				}
+			};
+		}
+		if (ins instanceof MovInstruction mov) {
+			int register = Registers.indexOf(mov.getRegister()), value = mov.getValue();
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					r.set(register, value);
+					return next;
+				}
+			};
+		}
+		if (ins instanceof OutInstruction out) {
+			int register = Registers.indexOf(out.getRegister());
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					m.getOutput().accept(r.get(register));
+					return next;
+				}
+			};
+		}
+		if (ins instanceof JnzInstruction jnz) {
+			if (!labels.contains(jnz.getOtherLabel()))
+				throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' does not exist");
+			int register = Registers.indexOf(jnz.getRegister()), target = labels.getAddress(jnz.getOtherLabel());
+			return new Step() {
+				@Override
+				int execute(Registers r, Machine m) {
+					return (r.get(register) != 0) ? target : next;
+				}
+			};
+		}
+		return new Step() {
+			@Override
+			int execute(Registers r, Machine m) {
+				int programCounterUpdate = ins.execute(m);
+				return (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE) ? next : programCounterUpdate;
+			}
+		};
+	}
+}
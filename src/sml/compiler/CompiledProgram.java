@@ -0,0 +1,21 @@
+package sml.compiler;
+
+import sml.Registers;
+
+import java.util.function.IntConsumer;
+
+/**
+ * An SML program compiled to a JVM class by {@link BytecodeCompiler}.
+ */
+public interface CompiledProgram {
+
+	/**
+	 * Runs the program from its first instruction, starting from the given register values and leaving the final
+	 * values in the same registers. The registers are also updated if the program throws an exception, for example
+	 * on a division by zero.
+	 *
+	 * @param registers the registers of the machine
+	 * @param out the consumer of the values printed by {@code out} instructions
+	 */
+	void run(Registers registers, IntConsumer out);
+}
@@ -0,0 +1,55 @@
+package sml.compiler;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Machine;
+
+import java.util.List;
+
+/**
+ * An execution engine that runs the program of a machine in its {@link PackedProgram} form.
+ * <p>
+ * The program is packed on the first execution and packed again only if the program of the machine changes.
+ * The engine can be shared by machines running the same {@link sml.Program} image on different threads.
+ */
+public final class PackedEngine implements ExecutionEngine {
+
+	/** A program and its packed form, replaced as a whole so that the engine can be shared between threads. */
+	private record Packed(List<Instruction> program, PackedProgram code) {
+	}
+
+	private volatile Packed packed;
+
+	/**
+	 * Creates an engine that packs the program of the machine on the first execution.
+	 */
+	public PackedEngine() {
+	}
+
+	/**
+	 * Creates an engine for a program that has already been packed, for example one loaded by {@link ProgramFile}.
+	 *
+	 * @param packed the packed program
+	 * @param program the instructions of the program, as unpacked from {@code packed}
+	 */
+	public PackedEngine(PackedProgram packed, List<Instruction> program) {
+		this.packed = new Packed(List.copyOf(program), packed);
+	}
+
+	/**
+	 * Executes the program of the machine, packing it first if needed.
+	 *
+	 * @param machine the machine whose program is executed
+	 * @throws IllegalArgumentException if the program cannot be packed
+	 */
+	@Override
+	public void execute(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		Packed packed = this.packed;
+		if (packed == null || !ProgramSnapshot.matches(program, packed.program())) {
+			packed = new Packed(ProgramSnapshot.of(machine), PackedProgram.pack(program, machine.getLabels()));
+			this.packed = packed;
+		}
+		packed.code().run(machine.getRegisters(), machine.getOutput());
+	}
+}
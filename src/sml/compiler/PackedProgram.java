@@ -0,0 +1,285 @@
+package sml.compiler;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * A translated SML program packed into a single {@code int[]}, with a {@code switch}-based interpreter that runs it
+ * directly.
+ * <p>
+ * Every instruction takes {@link #WORDS} consecutive ints: the opcode id, the register file indices of the first and
+ * second register operands, and an operand holding either the integer of a {@code mov} or the resolved target of a
+ * {@code jnz}. Targets are stored as offsets into the code array (the address of the target times {@link #WORDS}),
+ * so a taken jump is a single assignment. Labels are taken from the instructions and kept apart, in a sparse table
+ * sorted by address; they are only needed to convert the program back to instructions.
+ * <p>
+ * Instances are immutable.
+ */
+public final class PackedProgram {
+
+	/** The opcode ids of the packed instructions. */
+	public static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, MOV = 4, OUT = 5, JNZ = 6;
+
+	/** The number of ints taken by every instruction. */
+	public static final int WORDS = 4;
+
+	private static final String[] OP_CODES = {
+			AddInstruction.OP_CODE, SubInstruction.OP_CODE, MulInstruction.OP_CODE, DivInstruction.OP_CODE,
+			MovInstruction.OP_CODE, OutInstruction.OP_CODE, JnzInstruction.OP_CODE};
+
+	private final int[] code;
+	private final int[] labelAddresses;
+	private final String[] labelNames;
+
+	PackedProgram(int[] code, int[] labelAddresses, String[] labelNames) {
+		verify(code, labelAddresses);
+		this.code = code;
+		this.labelAddresses = labelAddresses;
+		this.labelNames = labelNames;
+	}
+
+	/**
+	 * Packs a translated program.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @return the packed program
+	 * @throws IllegalArgumentException if the program contains an instruction that cannot be packed or refers to a
+	 *                                  label that does not exist
+	 */
+	public static PackedProgram pack(List<Instruction> program, Labels labels) {
+		int[] code = new int[program.size() * WORDS];
+		int labelCount = (int) program.stream().filter(ins -> ins.getLabel() != null).count();
+		int[] labelAddresses = new int[labelCount];
+		String[] labelNames = new String[labelCount];
+
+		int label = 0;
+		for (int address = 0, pc = 0; address < program.size(); address++, pc += WORDS) {
+			Instruction ins = program.get(address);
+			if (ins.getLabel() != null) {
+				labelAddresses[label] = address;
+				labelNames[label++] = ins.getLabel();
+			}
+			if (ins instanceof AddInstruction add) {
+				encode(code, pc, ADD, Registers.indexOf(add.getResult()), Registers.indexOf(add.getSource()), 0);
+			} else if (ins instanceof SubInstruction sub) {
+				encode(code, pc, SUB, Registers.indexOf(sub.getResult()), Registers.indexOf(sub.getSource()), 0);
+			} else if (ins instanceof MulInstruction mul) {
+				encode(code, pc, MUL, Registers.indexOf(mul.getResult()), Registers.indexOf(mul.getSource()), 0);
+			} else if (ins instanceof DivInstruction div) {
+				encode(code, pc, DIV, Registers.indexOf(div.getResult()), Registers.indexOf(div.getSource()), 0);
+			} else if (ins instanceof MovInstruction mov) {
+				encode(code, pc, MOV, Registers.indexOf(mov.getRegister()), 0, mov.getValue());
+			} else if (ins instanceof OutInstruction out) {
+				encode(code, pc, OUT, Registers.indexOf(out.getRegister()), 0, 0);
+			} else if (ins instanceof JnzInstruction jnz) {
+				if (!labels.contains(jnz.getOtherLabel()))
+					throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' does not exist");
+				int target = labels.getAddress(jnz.getOtherLabel());
+				if (!jnz.getOtherLabel().equals(program.get(target).getLabel()))
+					throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz
+							+ "' does not label the instruction at address " + target);
+				encode(code, pc, JNZ, Registers.indexOf(jnz.getRegister()), 0, target * WORDS);
+			} else {
+				throw new IllegalArgumentException("Cannot pack instruction '" + ins + "'");
+			}
+		}
+		return new PackedProgram(code, labelAddresses, labelNames);
+	}
+
+	/**
+	 * Checks that the code only holds known opcode ids, register indices within the register file and jump targets
+	 * at the start of an instruction, and that the labels are sorted by address.
+	 *
+	 * @throws IllegalArgumentException if the code or the labels are malformed
+	 */
+	private static void verify(int[] code, int[] labelAddresses) {
+		if (code.length % WORDS != 0)
+			throw new IllegalArgumentException("Code length " + code.length + " is not a multiple of " + WORDS);
+		for (int pc = 0; pc < code.length; pc += WORDS) {
+			if (code[pc] < ADD || code[pc] > JNZ)
+				throw new IllegalArgumentException("Unknown opcode id " + code[pc] + " at address " + pc / WORDS);
+			if (code[pc + 1] < 0 || code[pc + 1] >= Registers.COUNT || code[pc + 2] < 0 || code[pc + 2] >= Registers.COUNT)
+				throw new IllegalArgumentException("Unknown register at address " + pc / WORDS);
+			if (code[pc] == JNZ && (code[pc + 3] < 0 || code[pc + 3] >= code.length || code[pc + 3] % WORDS != 0))
+				throw new IllegalArgumentException("Jump target out of range at address " + pc / WORDS);
+		}
+		for (int i = 1; i < labelAddresses.length; i++)
+			if (labelAddresses[i] <= labelAddresses[i - 1])
+				throw new IllegalArgumentException("Labels are not sorted by address");
+	}
+
+	private static void encode(int[] code, int pc, int opcode, int first, int second, int operand) {
+		code[pc] = opcode;
+		code[pc + 1] = first;
+		code[pc + 2] = second;
+		code[pc + 3] = operand;
+	}
+
+	/**
+	 * Converts the program back to instructions, replacing the content of the given labels and program. The
+	 * instructions are linked.
+	 *
+	 * @param labels the {@code Labels} object to store label information in
+	 * @param program the list of {@code Instruction} objects to store the program in
+	 */
+	public void unpack(Labels labels, List<Instruction> program) {
+		labels.reset();
+		program.clear();
+		for (int i = 0; i < labelAddresses.length; i++)
+			labels.addLabel(labelNames[i], labelAddresses[i]);
+
+		for (int address = 0; address < size(); address++)
+			program.add(instruction(address).link(labels));
+	}
+
+	/**
+	 * Returns the instruction at the given address, not linked.
+	 *
+	 * @param address the address of the instruction
+	 * @return the instruction
+	 */
+	public Instruction instruction(int address) {
+		int pc = address * WORDS;
+		String label = labelAt(address);
+		Registers.Register first = Registers.registerAt(code[pc + 1]);
+		Registers.Register second = Registers.registerAt(code[pc + 2]);
+		return switch (code[pc]) {
+			case ADD -> new AddInstruction(label, first, second);
+			case SUB -> new SubInstruction(label, first, second);
+			case MUL -> new MulInstruction(label, first, second);
+			case DIV -> new DivInstruction(label, first, second);
+			case MOV -> new MovInstruction(label, first, code[pc + 3]);
+			case OUT -> new OutInstruction(label, first);
+			case JNZ -> new JnzInstruction(label, first, labelAt(code[pc + 3] / WORDS));
+			default -> throw new IllegalStateException("Unknown opcode id " + code[pc] + " at address " + address);
+		};
+	}
+
+	/**
+	 * Returns the label of the instruction at the given address.
+	 *
+	 * @param address the address of the instruction
+	 * @return the label, or {@code null} if the instruction has none
+	 */
+	public String labelAt(int address) {
+		int i = Arrays.binarySearch(labelAddresses, address);
+		return (i >= 0) ? labelNames[i] : null;
+	}
+
+	/**
+	 * Returns the opcode of the given opcode id, such as {@code "add"} for {@link #ADD}.
+	 *
+	 * @param opcodeId the opcode id
+	 * @return the opcode
+	 */
+	public static String opcode(int opcodeId) {
+		return OP_CODES[opcodeId];
+	}
+
+	/**
+	 * Returns the number of instructions in the program.
+	 *
+	 * @return the number of instructions
+	 */
+	public int size() {
+		return code.length / WORDS;
+	}
+
+	int[] labelAddresses() {
+		return labelAddresses;
+	}
+
+	String[] labelNames() {
+		return labelNames;
+	}
+
+	int[] codeArray() {
+		return code;
+	}
+
+	/**
+	 * Returns a copy of the packed code.
+	 *
+	 * @return the code, {@link #WORDS} ints per instruction
+	 */
+	public int[] code() {
+		return code.clone();
+	}
+
+	/**
+	 * Runs the program from its first instruction, starting from the given register values and leaving the final
+	 * values in the same registers. The registers are also updated if the program throws an exception, for example
+	 * on a division by zero.
+	 *
+	 * @param registers the registers of the machine
+	 * @param out the consumer of the values printed by {@code out} instructions
+	 */
+	public void run(Registers registers, IntConsumer out) {
+		int[] code = this.code;
+		int[] r = new int[Registers.COUNT];
+		for (int i = 0; i < r.length; i++)
+			r[i] = registers.get(i);
+
+		int pc = 0;
+		try {
+			while (pc < code.length) {
+				switch (code[pc]) {
+					case ADD -> r[code[pc + 1]] += r[code[pc + 2]];
+					case SUB -> r[code[pc + 1]] -= r[code[pc + 2]];
+					case MUL -> r[code[pc + 1]] *= r[code[pc + 2]];
+					case DIV -> r[code[pc + 1]] /= r[code[pc + 2]];
+					case MOV -> r[code[pc + 1]] = code[pc + 3];
+					case OUT -> out.accept(r[code[pc + 1]]);
+					case JNZ -> {
+						if (r[code[pc + 1]] != 0) {
+							pc = code[pc + 3];
+							continue;
+						}
+					}
+					default -> throw new IllegalStateException("Unknown opcode id " + code[pc] + " at address " + pc / WORDS);
+				}
+				pc += WORDS;
+			}
+		} finally {
+			for (int i = 0; i < r.length; i++)
+				registers.set(i, r[i]);
+		}
+	}
+
+	/**
+	 * String representation of the program, one instruction per line, as {@link sml.Machine#toString()}.
+	 *
+	 * @return pretty formatted version of the code.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int address = 0; address < size(); address++) {
+			if (address > 0)
+				sb.append('\n');
+			sb.append(instruction(address));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof PackedProgram that)) return false;
+		return Arrays.equals(code, that.code) && Arrays.equals(labelAddresses, that.labelAddresses)
+				&& Arrays.equals(labelNames, that.labelNames);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(Arrays.hashCode(code), Arrays.hashCode(labelAddresses), Arrays.hashCode(labelNames));
+	}
+}
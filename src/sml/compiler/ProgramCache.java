@@ -0,0 +1,207 @@
+package sml.compiler;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Translator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A directory of compiled programs ({@code .smlc} files) addressed by a hash of their source, so that a source file
+ * that has not changed is loaded without being translated again.
+ * <p>
+ * The key of a source file is a SHA-256 hash of its bytes and of {@link #OPCODE_SET}, the opcodes of the packed
+ * instructions and the version of the file format: a change to either leads to new keys, and the old entries are
+ * no longer used and eventually evicted. Entries are written with {@link ProgramFile#write(PackedProgram, Path)},
+ * which moves a complete file into place, so the directory can be shared by several processes. An entry that cannot
+ * be read is deleted and translated again.
+ * <p>
+ * The total size of the entries is kept below a bound by deleting the least recently used entries after every
+ * write; an entry is marked as used by setting its modification time when it is loaded.
+ */
+public final class ProgramCache {
+
+	/** The default bound on the total size of the entries, in bytes. */
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+	/** The opcodes of the packed instructions, in the order of their ids, and the version of the file format. */
+	public static final String OPCODE_SET = String.join(",", PackedProgram.opcode(PackedProgram.ADD),
+			PackedProgram.opcode(PackedProgram.SUB), PackedProgram.opcode(PackedProgram.MUL),
+			PackedProgram.opcode(PackedProgram.DIV), PackedProgram.opcode(PackedProgram.MOV),
+			PackedProgram.opcode(PackedProgram.OUT), PackedProgram.opcode(PackedProgram.JNZ))
+			+ ";" + ProgramFile.VERSION;
+
+	private final Path directory;
+	private final long maxBytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a cache with the default size bound.
+	 *
+	 * @param directory the directory of the entries, created if needed
+	 */
+	public ProgramCache(Path directory) {
+		this(directory, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param directory the directory of the entries, created if needed
+	 * @param maxBytes the bound on the total size of the entries, in bytes
+	 */
+	public ProgramCache(Path directory, long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Size bound must be positive: " + maxBytes);
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the key of a source.
+	 *
+	 * @param source the bytes of the source
+	 * @return the key, as 64 lowercase hexadecimal digits
+	 */
+	public static String key(byte[] source) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(OPCODE_SET.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			return HexFormat.of().formatHex(digest.digest(source));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Returns the compiled form of a source file, from the cache if it holds an entry for the current content of the
+	 * file, and otherwise by translating, linking and packing the file and storing the result.
+	 *
+	 * @param source the source file
+	 * @return the packed program
+	 * @throws IOException if an I/O error occurs while reading the source file or writing the entry
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	public PackedProgram load(Path source) throws IOException {
+		String key = key(Files.readAllBytes(source));
+		Path entry = directory.resolve(key + ProgramFile.EXTENSION);
+		try {
+			PackedProgram program = ProgramFile.read(entry);
+			touch(entry);
+			hits.increment();
+			return program;
+		} catch (NoSuchFileException e) {
+			// not cached yet
+		} catch (IOException e) {
+			Files.deleteIfExists(entry);
+		}
+		misses.increment();
+
+		Labels labels = new Labels();
+		List<Instruction> program = new ArrayList<>();
+		new Translator(source.toString()).readAndTranslate(labels, program);
+		program.replaceAll(ins -> ins.link(labels));
+		PackedProgram packed = PackedProgram.pack(program, labels);
+
+		// the entry is only stored if the file did not change while it was translated
+		if (key.equals(key(Files.readAllBytes(source)))) {
+			Files.createDirectories(directory);
+			ProgramFile.write(packed, entry);
+			evict();
+		}
+		return packed;
+	}
+
+	private static void touch(Path entry) {
+		try {
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// the entry was evicted by another process, or the directory is read-only: it is only used less fairly
+		}
+	}
+
+	/**
+	 * Deletes the least recently used entries until the total size of the entries is within the bound. Entries
+	 * deleted at the same time by another process are skipped.
+	 */
+	private void evict() throws IOException {
+		record Entry(Path path, long size, FileTime used) {
+		}
+
+		List<Entry> entries = new ArrayList<>();
+		long total = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ProgramFile.EXTENSION)) {
+			for (Path path : stream) {
+				try {
+					Entry entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path));
+					entries.add(entry);
+					total += entry.size();
+				} catch (NoSuchFileException e) {
+					// deleted by another process
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		if (total <= maxBytes)
+			return;
+
+		entries.sort(Comparator.comparing(Entry::used));
+		for (Entry entry : entries) {
+			if (total <= maxBytes)
+				break;
+			if (Files.deleteIfExists(entry.path()))
+				evictions.increment();
+			total -= entry.size();
+		}
+	}
+
+	/**
+	 * Returns the number of loads answered by an entry of the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of loads that translated their source file.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of entries deleted to keep the cache within its size bound.
+	 *
+	 * @return the number of evictions
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+}
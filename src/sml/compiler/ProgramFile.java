@@ -0,0 +1,159 @@
+package sml.compiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes compiled SML programs ({@code .smlc} files): translated and linked programs in their
+ * {@link PackedProgram} form, which can be run without parsing the source again.
+ * <p>
+ * A file is laid out as follows, with all integers big-endian:
+ * <pre>
+ *     magic     "SMLC"
+ *     version   int, {@link #VERSION}
+ *     checksum  int, CRC-32 of everything that follows
+ *     count     int, number of instructions
+ *     labels    int, number of labels
+ *     code      count * {@link PackedProgram#WORDS} ints
+ *     labels    for every label: its address as an int, then its name as a short length and UTF-8 bytes
+ * </pre>
+ * Files with another magic number or version, or whose checksum does not match, are rejected.
+ */
+public final class ProgramFile {
+
+	/** The extension of compiled SML programs. */
+	public static final String EXTENSION = ".smlc";
+
+	/** The version of the format, to be increased whenever the format or the opcode ids change. */
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x534D4C43; // "SMLC"
+	private static final int HEADER_SIZE = 12;
+
+	private ProgramFile() {
+	}
+
+	/**
+	 * Returns whether the file starts with the magic number of compiled programs.
+	 *
+	 * @param file the file
+	 * @return {@code true} if the file looks like a compiled program, {@code false} otherwise
+	 * @throws IOException if an I/O error occurs while reading the file
+	 */
+	public static boolean isCompiled(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) ;
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Writes the program to the file. The file is written next to its final location and then moved into place, so
+	 * that readers never see a partially written file.
+	 *
+	 * @param program the program
+	 * @param file the file
+	 * @throws IOException if an I/O error occurs while writing the file
+	 */
+	public static void write(PackedProgram program, Path file) throws IOException {
+		int[] code = program.codeArray();
+		int[] labelAddresses = program.labelAddresses();
+		String[] labelNames = program.labelNames();
+
+		byte[][] names = new byte[labelNames.length][];
+		int size = HEADER_SIZE + 8 + 4 * code.length;
+		for (int i = 0; i < names.length; i++) {
+			names[i] = labelNames[i].getBytes(StandardCharsets.UTF_8);
+			if (names[i].length > Short.MAX_VALUE)
+				throw new IllegalArgumentException("Label '" + labelNames[i] + "' is too long");
+			size += 4 + 2 + names[i].length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(0);
+		buffer.putInt(program.size()).putInt(names.length);
+		buffer.asIntBuffer().put(code);
+		buffer.position(buffer.position() + 4 * code.length);
+		for (int i = 0; i < names.length; i++)
+			buffer.putInt(labelAddresses[i]).putShort((short) names[i].length).put(names[i]);
+		buffer.putInt(8, checksum(buffer.duplicate().position(HEADER_SIZE).limit(size)));
+		buffer.flip();
+
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Reads a program from the file, which is mapped into memory rather than read through a stream.
+	 *
+	 * @param file the file
+	 * @return the program
+	 * @throws IOException if an I/O error occurs while reading the file, or if the file is not a compiled program of
+	 *                     the current version or is corrupt
+	 */
+	public static PackedProgram read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer, file);
+		}
+	}
+
+	private static PackedProgram read(ByteBuffer buffer, Path file) throws IOException {
+		if (buffer.remaining() < HEADER_SIZE + 8 || buffer.getInt() != MAGIC)
+			throw new IOException(file + " is not a compiled SML program");
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException(file + " has version " + version + ", expected version " + VERSION);
+		int checksum = buffer.getInt();
+		if (checksum != checksum(buffer.duplicate()))
+			throw new IOException(file + " is corrupt: checksum mismatch");
+
+		try {
+			int count = buffer.getInt();
+			int labelCount = buffer.getInt();
+			int[] code = new int[Math.multiplyExact(count, PackedProgram.WORDS)];
+			IntBuffer codeBuffer = buffer.asIntBuffer();
+			codeBuffer.get(code);
+			buffer.position(buffer.position() + 4 * code.length);
+
+			int[] labelAddresses = new int[labelCount];
+			String[] labelNames = new String[labelCount];
+			for (int i = 0; i < labelCount; i++) {
+				labelAddresses[i] = buffer.getInt();
+				byte[] name = new byte[buffer.getShort()];
+				buffer.get(name);
+				labelNames[i] = new String(name, StandardCharsets.UTF_8).intern();
+			}
+			if (buffer.hasRemaining())
+				throw new IOException(file + " is corrupt: trailing bytes");
+			return new PackedProgram(code, labelAddresses, labelNames);
+		} catch (RuntimeException e) {
+			throw new IOException(file + " is corrupt", e);
+		}
+	}
+
+	private static int checksum(ByteBuffer bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+}
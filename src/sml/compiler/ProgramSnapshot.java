@@ -0,0 +1,40 @@
+package sml.compiler;
+
+import sml.Instruction;
+import sml.Machine;
+
+import java.util.List;
+
+/**
+ * The program a compiled form was built from, kept by the engines to tell whether the program of a machine changed.
+ * <p>
+ * A machine running a {@link sml.Program} image gets the instructions of the image, which cannot change, as they
+ * are: every later run of the image then matches by identity, without comparing the program instruction by
+ * instruction. The program of any other machine is copied, and compared with {@link List#equals(Object)}.
+ */
+final class ProgramSnapshot {
+
+	private ProgramSnapshot() {
+	}
+
+	/**
+	 * Returns the program of the machine, as kept by a compiled form.
+	 *
+	 * @param machine the machine
+	 * @return the instructions of its image, or a copy of its program
+	 */
+	static List<Instruction> of(Machine machine) {
+		return (machine.getImage() != null) ? machine.getProgram() : List.copyOf(machine.getProgram());
+	}
+
+	/**
+	 * Returns whether the given program is the one a compiled form was built from.
+	 *
+	 * @param program the program of a machine
+	 * @param snapshot the program kept by the compiled form, as returned by {@link #of(Machine)}
+	 * @return whether they have the same instructions
+	 */
+	static boolean matches(List<Instruction> program, List<Instruction> snapshot) {
+		return program == snapshot || program.equals(snapshot);
+	}
+}
@@ -0,0 +1,656 @@
+package sml.daemon;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Main;
+import sml.Registers;
+import sml.Translator;
+import sml.VirtualThreads;
+import sml.batch.BatchResult;
+import sml.batch.BatchRunner;
+import sml.batch.BatchSummary;
+import sml.compiler.PackedEngine;
+import sml.compiler.PackedProgram;
+import sml.compiler.ProgramFile;
+import sml.output.DiscardingSink;
+import sml.profile.Profiler;
+import sml.scheduler.Scheduler;
+import sml.scheduler.Task;
+import sml.trace.TraceBuffer;
+import sml.trace.TraceDecoder;
+import sml.trace.Tracer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A long-lived server running SML programs on behalf of {@link DaemonClient}, so that a job does not pay for
+ * starting a JVM, creating the instruction factory, loading the instruction classes and compiling the interpreter.
+ * <p>
+ * The daemon listens on a Unix-domain socket or on a loopback TCP port, and serves every connection on its own
+ * thread: a virtual thread when the JVM provides them, and otherwise a thread of a cached pool. A connection carries
+ * any number of requests, one after the other. The protocol is line-based UTF-8 text:
+ * <pre>
+ *     request   "file" path                   run the program text or compiled program in the file
+ *               "source" n, then n lines      run the program text
+ *               "profile" path                run the program in the file, and report its profile
+ *               "trace" path                  run the program in the file, and report its latest instructions
+ *               "optimize" path               optimize the program in the file, and run it
+ *               "compile" source, then target translate the program text and write it as a compiled program
+ *               "batch" n, then the working directory and n paths
+ *                                             run the program files given by the paths, relative to the directory
+ *     response  "program" n, then n lines     the instructions of the program, as printed by {@link Machine}
+ *               "out" value                   a value printed by an out instruction, as soon as it is printed
+ *               "registers" v0 ... v7         the final register values
+ *               "compiled" n                  the number of instructions written
+ *               "text" n, then n lines        a report, printed as it is
+ *               "done"                        ending a successful response
+ *               "error" kind message          ending a failed response; kind is "read", "translate", "link", "run"
+ *                                             or "request"
+ * </pre>
+ * Programs run from cleared registers, as by {@code Main}. Jobs share the carrier threads of a {@link Scheduler},
+ * with a budget of steps and of running time: a program that does not end within its budget fails with a "run"
+ * error, so that it does not hold the daemon. Profiled and traced programs are run a second time, once they are known
+ * to end within the budget, since the profiler and the tracer run a program to completion. The programs of a batch
+ * have the step budget of {@link BatchRunner}. The output of a program is written to the client by the thread serving
+ * the connection, not by the carrier thread: a program whose client stops reading its output fails with a "run"
+ * error instead of holding a carrier thread.
+ */
+public final class Daemon implements AutoCloseable {
+
+	/** The default Unix-domain socket of the daemon. */
+	public static final Path DEFAULT_SOCKET = Path.of(System.getProperty("java.io.tmpdir"), "sml-daemon.sock");
+
+	/** The default number of instructions a job may execute. */
+	public static final long DEFAULT_MAX_STEPS = 1_000_000_000L;
+
+	/** The default time a job may spend running, in nanoseconds. */
+	public static final long DEFAULT_MAX_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	/** The largest number of lines of the program text of a "source" request or of the paths of a "batch" request. */
+	public static final int MAX_LINES = 1 << 20;
+
+	static final String FILE = "file", SOURCE = "source", PROFILE = "profile", TRACE = "trace", OPTIMIZE = "optimize",
+			COMPILE = "compile", BATCH = "batch";
+
+	static final String PROGRAM = "program", OUT = "out", REGISTERS = "registers", COMPILED = "compiled", TEXT = "text",
+			DONE = "done", ERROR = "error";
+
+	static final String READ = "read", TRANSLATE = "translate", LINK = "link", RUN = "run", REQUEST = "request";
+
+	private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+	private static final String WARM_UP_PROGRAM = """
+			mov EAX 6
+			mov EBX 1
+			mov ECX 1
+			f0: mul EBX EAX
+			sub EAX ECX
+			jnz EAX f0
+			out EBX
+			""";
+
+	private final ServerSocketChannel server;
+	private final SocketAddress address;
+	private final ExecutorService executor;
+	private final Scheduler scheduler;
+	private final long maxSteps;
+	private final long maxNanos;
+	private final Thread acceptor;
+	private final LongAdder jobs = new LongAdder();
+
+	private Daemon(ServerSocketChannel server, long maxSteps, long maxNanos) throws IOException {
+		this.server = server;
+		this.address = server.getLocalAddress();
+		this.executor = VirtualThreads.newPerTaskExecutor().orElseGet(() -> Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "sml-daemon-job");
+			thread.setDaemon(true);
+			return thread;
+		}));
+		this.scheduler = new Scheduler(Runtime.getRuntime().availableProcessors());
+		this.maxSteps = maxSteps;
+		this.maxNanos = maxNanos;
+		this.acceptor = new Thread(this::accept, "sml-daemon-acceptor");
+		acceptor.setDaemon(true);
+	}
+
+	/**
+	 * Starts a daemon listening on the given address, with the default budgets. A Unix-domain socket file left by a
+	 * daemon that is no longer running is replaced.
+	 *
+	 * @param address a {@link UnixDomainSocketAddress}, or an {@link InetSocketAddress}, port 0 choosing a free port
+	 * @return the running daemon
+	 * @throws IOException if the daemon cannot listen on the address, for example because another daemon does
+	 */
+	public static Daemon start(SocketAddress address) throws IOException {
+		return start(address, DEFAULT_MAX_STEPS, DEFAULT_MAX_NANOS);
+	}
+
+	/**
+	 * Starts a daemon listening on the given address. A Unix-domain socket file left by a daemon that is no longer
+	 * running is replaced.
+	 *
+	 * @param address a {@link UnixDomainSocketAddress}, or an {@link InetSocketAddress}, port 0 choosing a free port
+	 * @param maxSteps the maximum number of instructions a job may execute
+	 * @param maxNanos the maximum time a job may spend running, in nanoseconds
+	 * @return the running daemon
+	 * @throws IOException if the daemon cannot listen on the address, for example because another daemon does
+	 */
+	public static Daemon start(SocketAddress address, long maxSteps, long maxNanos) throws IOException {
+		if (maxSteps <= 0 || maxNanos <= 0)
+			throw new IllegalArgumentException("Budgets must be positive: " + maxSteps + " steps, " + maxNanos + " ns");
+		ServerSocketChannel server;
+		if (address instanceof UnixDomainSocketAddress unix) {
+			if (Files.exists(unix.getPath()) && !isListening(unix))
+				Files.delete(unix.getPath());
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		} else {
+			server = ServerSocketChannel.open();
+		}
+		try {
+			server.bind(address);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		Daemon daemon = new Daemon(server, maxSteps, maxNanos);
+		daemon.acceptor.start();
+		return daemon;
+	}
+
+	private static boolean isListening(UnixDomainSocketAddress address) {
+		SocketChannel channel;
+		try {
+			channel = SocketChannel.open(address);
+		} catch (IOException e) {
+			return false;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the connection was only a probe
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the address the daemon listens on, with the actual port if it was started on port 0.
+	 *
+	 * @return the address
+	 */
+	public SocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Returns the number of requests served so far.
+	 *
+	 * @return the number of jobs
+	 */
+	public long jobs() {
+		return jobs.sum();
+	}
+
+	/**
+	 * Translates and runs a small program repeatedly, so that the instruction factory is created and the translator
+	 * and interpreter are compiled before the first job.
+	 *
+	 * @param runs the number of runs
+	 */
+	public static void warmUp(int runs) {
+		for (int i = 0; i < runs; i++) {
+			Machine machine = new Machine(new Registers());
+			Translator.translate(WARM_UP_PROGRAM, machine.getLabels(), machine.getProgram());
+			machine.link();
+			machine.setOutput(DiscardingSink.INSTANCE);
+			machine.resume(Long.MAX_VALUE);
+		}
+	}
+
+	private void accept() {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			} catch (ClosedChannelException e) {
+				// the daemon was closed
+				return;
+			} catch (IOException e) {
+				// for example too many open files: accepting goes on once connections have been closed
+				System.err.println("Error accepting a connection to the daemon: " + e.getMessage());
+				try {
+					Thread.sleep(ACCEPT_BACKOFF_MILLIS);
+				} catch (InterruptedException interrupted) {
+					return;
+				}
+				continue;
+			}
+			try {
+				executor.execute(() -> serve(channel));
+			} catch (RejectedExecutionException e) {
+				// the daemon is being closed
+				closeQuietly(channel);
+			}
+		}
+	}
+
+	private static void closeQuietly(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the connection is dropped anyway
+		}
+	}
+
+	private void serve(SocketChannel channel) {
+		try {
+			// a response is written in several parts, which must not wait for the acknowledgement of the previous one
+			if (!(address instanceof UnixDomainSocketAddress))
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		} catch (IOException e) {
+			closeQuietly(channel);
+			return;
+		}
+		try (channel;
+			 BufferedReader in = new BufferedReader(
+					 new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+			 Writer out = new BufferedWriter(
+					 new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+			String request;
+			while ((request = in.readLine()) != null) {
+				handle(request, in, out);
+				out.flush();
+				jobs.increment();
+			}
+		} catch (IOException | UncheckedIOException e) {
+			// the client went away, or the daemon was closed
+		}
+	}
+
+	/**
+	 * Serves one request, writing the whole response.
+	 */
+	private void handle(String request, BufferedReader in, Writer out) throws IOException {
+		try {
+			handle(request, request.split(" ", 2), in, out);
+		} catch (InvalidPathException e) {
+			// the lines of the request have been read before its paths are parsed, and nothing has been written yet
+			error(out, REQUEST, "Invalid path in '" + request.replace('\0', ' ') + "': " + e.getReason());
+		}
+	}
+
+	private void handle(String request, String[] words, BufferedReader in, Writer out) throws IOException {
+		String argument = (words.length == 2) ? words[1] : null;
+		switch (words[0]) {
+			case FILE, PROFILE, TRACE, OPTIMIZE -> {
+				if (argument == null) {
+					error(out, REQUEST, "Missing file in '" + request + "'");
+					return;
+				}
+				Machine machine = load(Path.of(argument), out);
+				if (machine != null)
+					run(machine, words[0], out);
+			}
+			case SOURCE -> {
+				List<String> lines = readLines(argument, in);
+				if (lines == null) {
+					error(out, REQUEST, "Invalid number of lines in '" + request + "'");
+					return;
+				}
+				Machine machine = new Machine(new Registers());
+				try {
+					Translator.translate(String.join("\n", lines), machine.getLabels(), machine.getProgram());
+				} catch (IllegalArgumentException e) {
+					error(out, TRANSLATE, e.getMessage());
+					return;
+				}
+				if (link(machine, out))
+					run(machine, FILE, out);
+			}
+			case COMPILE -> {
+				String target = in.readLine();
+				if (target == null)
+					throw new IOException("Connection closed in the middle of the request");
+				if (argument == null) {
+					error(out, REQUEST, "Missing file in '" + request + "'");
+					return;
+				}
+				compile(Path.of(argument), Path.of(target), out);
+			}
+			case BATCH -> {
+				String directory = in.readLine();
+				if (directory == null)
+					throw new IOException("Connection closed in the middle of the request");
+				List<String> paths = readLines(argument, in);
+				if (paths == null) {
+					error(out, REQUEST, "Invalid number of paths in '" + request + "'");
+					return;
+				}
+				batch(Path.of(directory), paths.stream().map(Path::of).toList(), out);
+			}
+			default -> error(out, REQUEST, "Unknown request '" + request + "'");
+		}
+	}
+
+	/**
+	 * Reads the lines following a request.
+	 *
+	 * @return the lines, or {@code null} if their number is not an integer between 0 and {@value #MAX_LINES}
+	 */
+	private static List<String> readLines(String count, BufferedReader in) throws IOException {
+		int lines;
+		try {
+			lines = Integer.parseInt(String.valueOf(count));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (lines < 0 || lines > MAX_LINES)
+			return null;
+		List<String> result = new ArrayList<>(lines);
+		for (int i = 0; i < lines; i++) {
+			String line = in.readLine();
+			if (line == null)
+				throw new IOException("Connection closed in the middle of the request");
+			result.add(line);
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the program text or compiled program of a file into a new machine.
+	 *
+	 * @return the machine, or {@code null} if the program cannot be loaded, once the error has been written
+	 */
+	private static Machine load(Path file, Writer out) throws IOException {
+		Machine machine = new Machine(new Registers());
+		try {
+			if (ProgramFile.isCompiled(file)) {
+				PackedProgram packed = ProgramFile.read(file);
+				packed.unpack(machine.getLabels(), machine.getProgram());
+				machine.setEngine(new PackedEngine(packed, machine.getProgram()));
+				return machine;
+			}
+			new Translator(file.toString()).readAndTranslate(machine.getLabels(), machine.getProgram());
+		} catch (IOException e) {
+			error(out, READ, e.getMessage());
+			return null;
+		} catch (IllegalArgumentException e) {
+			error(out, TRANSLATE, e.getMessage());
+			return null;
+		}
+		return link(machine, out) ? machine : null;
+	}
+
+	private static boolean link(Machine machine, Writer out) throws IOException {
+		try {
+			machine.link();
+			return true;
+		} catch (IllegalArgumentException e) {
+			error(out, LINK, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Runs a loaded program within the budgets, as requested by a "file", "profile", "trace" or "optimize" request.
+	 */
+	private void run(Machine machine, String request, Writer out) throws IOException {
+		if (request.equals(OPTIMIZE))
+			Main.optimize(machine);
+
+		out.write(PROGRAM + " " + machine.getProgram().size() + "\n");
+		for (Instruction instruction : machine.getProgram())
+			out.write(instruction + "\n");
+
+		String failure = runWithinBudgets(machine, out);
+		if (failure != null) {
+			error(out, RUN, failure);
+			return;
+		}
+
+		StringBuilder registers = new StringBuilder(REGISTERS);
+		for (int i = 0; i < Registers.COUNT; i++)
+			registers.append(' ').append(machine.getRegisters().get(i));
+		out.write(registers.append('\n').toString());
+
+		// the program is known to end, so it can be run to completion by the profiler or the tracer
+		machine.setOutput(DiscardingSink.INSTANCE);
+		if (request.equals(PROFILE)) {
+			Profiler profiler = new Profiler();
+			machine.setEngine(profiler);
+			machine.execute();
+			text(out, "Profile of the program:" + System.lineSeparator() + profiler.getProfile());
+		} else if (request.equals(TRACE)) {
+			Tracer tracer = new Tracer(new TraceBuffer(Main.TRACE_CAPACITY));
+			machine.setEngine(tracer);
+			machine.execute();
+			ByteArrayOutputStream trace = new ByteArrayOutputStream();
+			try (PrintStream printer = new PrintStream(trace, true, StandardCharsets.UTF_8)) {
+				printer.println("Trace of the program (" + tracer.getBuffer().count() + " instructions):");
+				TraceDecoder.print(tracer.getBuffer().records(), machine.getProgram(), printer);
+			}
+			String text = trace.toString(StandardCharsets.UTF_8);
+			text(out, text.substring(0, text.length() - System.lineSeparator().length()));
+		}
+		out.write(DONE + "\n");
+	}
+
+	/**
+	 * Runs the program of the machine on the scheduler, writing its output to the client until it ends. The output is
+	 * written by this thread rather than the carrier thread, which a client that does not read would block.
+	 *
+	 * @return {@code null} if the program ended, and otherwise the reason it did not
+	 * @throws IOException if the output of the program cannot be written to the client
+	 */
+	private String runWithinBudgets(Machine machine, Writer out) throws IOException {
+		JobOutput output = new JobOutput();
+		machine.setOutput(output);
+		Task task;
+		try {
+			task = scheduler.submit(machine, maxSteps, maxNanos);
+		} catch (RejectedExecutionException e) {
+			return "The daemon is closing";
+		}
+		task.completion().whenComplete((completed, e) -> output.end());
+		try {
+			// the client learns that the program started before it prints anything
+			out.flush();
+			int[] values;
+			while ((values = output.take()) != null) {
+				for (int value : values)
+					out.write(OUT + " " + value + "\n");
+				out.flush();
+			}
+		} catch (InterruptedException e) {
+			task.cancel();
+			output.abandon();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The daemon is closing");
+		} catch (IOException e) {
+			task.cancel();
+			output.abandon();
+			throw e;
+		}
+		return switch (task.getState()) {
+			case FINISHED -> null;
+			case FAILED -> output.isAbandoned() ? JobOutput.STALLED : task.getError().toString();
+			case STEP_LIMIT -> "Program exceeded its budget of " + maxSteps + " instructions";
+			case TIME_LIMIT -> "Program exceeded its budget of " + TimeUnit.NANOSECONDS.toMillis(maxNanos) + " ms";
+			default -> "The daemon is closing";
+		};
+	}
+
+	/**
+	 * Translates and links program text and writes it as a compiled program, as requested by a "compile" request.
+	 */
+	private static void compile(Path source, Path target, Writer out) throws IOException {
+		Machine machine = new Machine(new Registers());
+		try {
+			new Translator(source.toString()).readAndTranslate(machine.getLabels(), machine.getProgram());
+		} catch (IOException e) {
+			error(out, READ, e.getMessage());
+			return;
+		} catch (IllegalArgumentException e) {
+			error(out, TRANSLATE, e.getMessage());
+			return;
+		}
+		if (!link(machine, out))
+			return;
+		try {
+			ProgramFile.write(PackedProgram.pack(machine.getProgram(), machine.getLabels()), target);
+		} catch (IOException e) {
+			error(out, READ, e.getMessage());
+			return;
+		} catch (IllegalArgumentException e) {
+			error(out, TRANSLATE, e.getMessage());
+			return;
+		}
+		out.write(COMPILED + " " + machine.getProgram().size() + "\n");
+		out.write(DONE + "\n");
+	}
+
+	/**
+	 * Runs a batch of program files, as requested by a "batch" request. The results name the files as the client
+	 * gave them, relative to its working directory.
+	 */
+	private static void batch(Path directory, List<Path> paths, Writer out) throws IOException {
+		List<Path> files = new ArrayList<>();
+		List<Path> names = new ArrayList<>();
+		try {
+			for (Path path : paths) {
+				Path resolved = directory.resolve(path);
+				for (Path file : BatchRunner.programFiles(List.of(resolved))) {
+					files.add(file);
+					names.add(path.resolve(resolved.relativize(file)));
+				}
+			}
+		} catch (IOException e) {
+			error(out, READ, e.getMessage());
+			return;
+		}
+
+		long start = System.nanoTime();
+		List<BatchResult> results;
+		try {
+			results = new BatchRunner().run(files);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The daemon is closing");
+		}
+		long wallNanos = System.nanoTime() - start;
+
+		StringBuilder report = new StringBuilder();
+		for (int i = 0; i < results.size(); i++) {
+			BatchResult result = results.get(i);
+			report.append(new BatchResult(names.get(i), result.registers(), result.output(), result.error(),
+					result.nanos())).append('\n');
+		}
+		text(out, report.append(BatchSummary.of(results, wallNanos)).toString());
+		out.write(DONE + "\n");
+	}
+
+	/**
+	 * Writes text that {@code Main} prints with {@code println}.
+	 */
+	private static void text(Writer out, String text) throws IOException {
+		String[] lines = text.split("\\R", -1);
+		out.write(TEXT + " " + lines.length + "\n");
+		for (String line : lines)
+			out.write(line + "\n");
+	}
+
+	private static void error(Writer out, String kind, String message) throws IOException {
+		out.write(ERROR + " " + kind + " " + String.valueOf(message).replace('\n', ' ') + "\n");
+	}
+
+	/**
+	 * Stops listening and closes the connections. The running jobs are stopped at the end of their current time
+	 * slice, and a Unix-domain socket file is deleted. A batch that is running goes on until its programs end or use
+	 * up their budget.
+	 *
+	 * @throws IOException if an I/O error occurs while closing the socket
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+		executor.shutdownNow();
+		scheduler.close();
+		if (address instanceof UnixDomainSocketAddress unix)
+			Files.deleteIfExists(unix.getPath());
+	}
+
+	/**
+	 * Returns whether the command line starts with an address: {@code -u} followed by the file of a Unix-domain
+	 * socket, or {@code -l} followed by a loopback TCP port.
+	 *
+	 * @param args the command line arguments
+	 * @return true if the first two arguments give the address
+	 */
+	static boolean hasAddress(String[] args) {
+		return args.length > 1 && (args[0].equals("-u") || args[0].equals("-l"));
+	}
+
+	/**
+	 * Returns the address given at the start of the command line, or the {@link #DEFAULT_SOCKET} if none is given.
+	 *
+	 * @param args the command line arguments
+	 * @return the address
+	 * @see #hasAddress(String[])
+	 */
+	static SocketAddress address(String[] args) {
+		if (!hasAddress(args))
+			return UnixDomainSocketAddress.of(DEFAULT_SOCKET);
+		if (args[0].equals("-u"))
+			return UnixDomainSocketAddress.of(args[1]);
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]));
+	}
+
+	/**
+	 * Starts a daemon, warms it up and serves requests until the JVM is stopped.
+	 *
+	 * @param args {@code -u} followed by the file of a Unix-domain socket, or {@code -l} followed by a loopback TCP
+	 *             port; the {@link #DEFAULT_SOCKET} by default
+	 */
+	public static void main(String... args) throws IOException, InterruptedException {
+		Daemon daemon = start(address(args));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				daemon.close();
+			} catch (IOException e) {
+				// the socket file is left behind, and replaced by the next daemon
+			}
+		}));
+		warmUp(20_000);
+		System.out.println("Listening on " + daemon.getAddress() + ".");
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,250 @@
+package sml.daemon;
+
+import sml.Registers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A client of a {@link Daemon}, printing the result of a program as {@code Main} does, so that it can be used
+ * in its place with the same options.
+ * <p>
+ * A client holds one connection, over which it can send any number of requests, one after the other.
+ */
+public final class DaemonClient implements AutoCloseable {
+
+	private final SocketChannel channel;
+	private final BufferedReader in;
+	private final Writer out;
+
+	/**
+	 * Connects to a daemon.
+	 *
+	 * @param address the address of the daemon
+	 * @throws IOException if the daemon cannot be reached
+	 */
+	public DaemonClient(SocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		this.in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+		this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Runs the program text or compiled program in a file, printing the program, the values it prints and its
+	 * final registers. The file is read by the daemon.
+	 *
+	 * @param file the file
+	 * @param printer the destination of the result
+	 * @return true if the program ran to completion
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean runFile(Path file, PrintStream printer) throws IOException {
+		return request(Daemon.FILE, file, printer);
+	}
+
+	/**
+	 * Runs the program in a file as {@link #runFile(Path, PrintStream)} does, then prints its profile.
+	 *
+	 * @param file the file
+	 * @param printer the destination of the result
+	 * @return true if the program ran to completion
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean profileFile(Path file, PrintStream printer) throws IOException {
+		return request(Daemon.PROFILE, file, printer);
+	}
+
+	/**
+	 * Runs the program in a file as {@link #runFile(Path, PrintStream)} does, then prints its latest instructions.
+	 *
+	 * @param file the file
+	 * @param printer the destination of the result
+	 * @return true if the program ran to completion
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean traceFile(Path file, PrintStream printer) throws IOException {
+		return request(Daemon.TRACE, file, printer);
+	}
+
+	/**
+	 * Optimizes the program in a file and runs it as {@link #runFile(Path, PrintStream)} does.
+	 *
+	 * @param file the file
+	 * @param printer the destination of the result
+	 * @return true if the program ran to completion
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean optimizeFile(Path file, PrintStream printer) throws IOException {
+		return request(Daemon.OPTIMIZE, file, printer);
+	}
+
+	private boolean request(String request, Path file, PrintStream printer) throws IOException {
+		out.write(request + " " + file.toAbsolutePath() + "\n");
+		out.flush();
+		return read(printer, file.toString(), "Error reading the program from " + file, null);
+	}
+
+	/**
+	 * Runs program text, printing the program, the values it prints and its final registers.
+	 *
+	 * @param source the program text
+	 * @param printer the destination of the result
+	 * @return true if the program ran to completion
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean runSource(String source, PrintStream printer) throws IOException {
+		String[] lines = source.split("\\R", -1);
+		int count = (lines.length > 0 && lines[lines.length - 1].isEmpty()) ? lines.length - 1 : lines.length;
+		out.write(Daemon.SOURCE + " " + count + "\n");
+		for (int i = 0; i < count; i++)
+			out.write(lines[i] + "\n");
+		out.flush();
+		return read(printer, "the source", "Error reading the program from the source", null);
+	}
+
+	/**
+	 * Translates and links the program text in a file and writes it as a compiled program. The files are read and
+	 * written by the daemon.
+	 *
+	 * @param source the file containing the program text
+	 * @param target the compiled file to write
+	 * @param printer the destination of the result
+	 * @return true if the program was compiled
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean compile(Path source, Path target, PrintStream printer) throws IOException {
+		out.write(Daemon.COMPILE + " " + source.toAbsolutePath() + "\n" + target.toAbsolutePath() + "\n");
+		out.flush();
+		return read(printer, source.toString(), "Error compiling the program from " + source, target.toString());
+	}
+
+	/**
+	 * Runs many programs on the daemon, printing the result of every program and a summary of the batch. The
+	 * programs are named as they are given, relative to the working directory of the client.
+	 *
+	 * @param paths program files or directories of program files
+	 * @param printer the destination of the result
+	 * @return true if the programs were run, whether they succeeded or not
+	 * @throws IOException if the connection to the daemon fails
+	 */
+	public boolean batch(List<Path> paths, PrintStream printer) throws IOException {
+		out.write(Daemon.BATCH + " " + paths.size() + "\n" + Path.of("").toAbsolutePath() + "\n");
+		for (Path path : paths)
+			out.write(path + "\n");
+		out.flush();
+		return read(printer, "the programs", "Error reading the programs", null);
+	}
+
+	/**
+	 * Reads a response, printing it as it arrives.
+	 *
+	 * @param name the name of the program in error messages
+	 * @param readError the message of an error reading the program
+	 * @param target the name of the compiled file of a "compile" request
+	 */
+	private boolean read(PrintStream printer, String name, String readError, String target) throws IOException {
+		while (true) {
+			String line = in.readLine();
+			if (line == null)
+				throw new IOException("The daemon closed the connection");
+			String[] words = line.split(" ", 2);
+			switch (words[0]) {
+				case Daemon.PROGRAM -> {
+					int count = Integer.parseInt(words[1]);
+					printer.println("Here is the program; it has " + count + " instructions.");
+					StringBuilder program = new StringBuilder();
+					for (int i = 0; i < count; i++)
+						program.append((i == 0) ? "" : "\n").append(in.readLine());
+					printer.println(program);
+					printer.println("Beginning program execution.");
+				}
+				case Daemon.OUT -> printer.println(Integer.parseInt(words[1]));
+				case Daemon.REGISTERS -> {
+					String[] values = words[1].split(" ");
+					Registers registers = new Registers();
+					for (int i = 0; i < Registers.COUNT; i++)
+						registers.set(i, Integer.parseInt(values[i]));
+					printer.println("Ending program execution.");
+					printer.println("Values of registers at program termination:" + registers + ".");
+				}
+				case Daemon.COMPILED ->
+						printer.println("Compiled " + words[1] + " instructions from " + name + " to " + target + ".");
+				case Daemon.TEXT -> {
+					int count = Integer.parseInt(words[1]);
+					for (int i = 0; i < count; i++)
+						printer.println(in.readLine());
+				}
+				case Daemon.DONE -> {
+					return true;
+				}
+				case Daemon.ERROR -> {
+					String[] error = words[1].split(" ", 2);
+					String message = (error.length > 1) ? error[1] : "";
+					switch (error[0]) {
+						case Daemon.READ -> printer.println(readError + ": " + message);
+						case Daemon.TRANSLATE -> printer.println("Error translating the program from " + name + ": " + message);
+						case Daemon.LINK -> printer.println("Error linking the program from " + name + ": " + message);
+						case Daemon.RUN -> printer.println("Error running the program from " + name + ": " + message);
+						default -> printer.println("Error: " + message);
+					}
+					return false;
+				}
+				default -> throw new IOException("Unexpected response from the daemon: " + line);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Runs a program on a daemon, printing the same result as {@code Main}.
+	 *
+	 * @param args optionally {@code -u} followed by the file of the Unix-domain socket of the daemon, or {@code -l}
+	 *             followed by its loopback TCP port; then the arguments of {@code Main}: the name of the file
+	 *             containing the program text or the compiled program; or {@code -c} followed by the name of the file
+	 *             containing the program text and the name of the compiled file to write; or {@code -b} followed by
+	 *             the names of program files or directories of program files to run as a batch; or {@code -p},
+	 *             {@code -t} or {@code -O} followed by the name of a program file to run with the profiler, with the
+	 *             tracer or optimized
+	 */
+	public static void main(String... args) {
+		String[] command = Arrays.copyOfRange(args, Daemon.hasAddress(args) ? 2 : 0, args.length);
+		boolean valid = command.length == 1
+				|| (command.length == 3 && command[0].equals("-c"))
+				|| (command.length > 1 && command[0].equals("-b"))
+				|| (command.length == 2 && List.of("-p", "-t", "-O").contains(command[0]));
+		if (!valid) {
+			System.err.println("Incorrect number of arguments - DaemonClient [-u <socket file> | -l <port>] followed by"
+					+ " <file> | -c <file> <compiled file> | -b <file or directory>... | -p <file> | -t <file>"
+					+ " | -O <file> - required");
+			System.exit(-1);
+		}
+		try (DaemonClient client = new DaemonClient(Daemon.address(args))) {
+			switch (command.length == 1 ? "" : command[0]) {
+				case "-c" -> client.compile(Path.of(command[1]), Path.of(command[2]), System.out);
+				case "-b" -> client.batch(Arrays.stream(command, 1, command.length).map(Path::of).toList(), System.out);
+				case "-p" -> client.profileFile(Path.of(command[1]), System.out);
+				case "-t" -> client.traceFile(Path.of(command[1]), System.out);
+				case "-O" -> client.optimizeFile(Path.of(command[1]), System.out);
+				default -> client.runFile(Path.of(command[0]), System.out);
+			}
+		} catch (IOException e) {
+			System.out.println("Error reaching the daemon: " + e.getMessage());
+		}
+	}
+}
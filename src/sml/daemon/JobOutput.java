@@ -0,0 +1,124 @@
+package sml.daemon;
+
+import sml.OutputSink;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The output of a daemon job, collected on the carrier thread running the program and taken by the thread serving
+ * the connection, which writes it to the client.
+ * <p>
+ * The values wait in a ring buffer of at most {@value #MAX_PENDING} values. When it is full the program waits for
+ * the client to catch up, up to {@link #STALL_NANOS}; a client that reads nothing for that long has stopped
+ * reading, and the program fails with {@link #STALLED}. A client thus holds a carrier thread for a bounded time
+ * only, which counts towards the time budget of the job.
+ */
+final class JobOutput implements OutputSink {
+
+	/** The largest number of values waiting to be written to the client. */
+	static final int MAX_PENDING = 1 << 16;
+
+	/**
+	 * The largest number of values taken at once. The room they leave is given back to the program as soon as they
+	 * are taken, so that a client reading slowly makes room steadily rather than once per buffer.
+	 */
+	static final int MAX_TAKEN = 1 << 10;
+
+	/** The longest time the program waits for the client to read some of its output, in nanoseconds. */
+	static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/** The message of the failure of a program whose client does not read its output. */
+	static final String STALLED = "The client did not read the output of the program";
+
+	private int[] values = new int[64];
+	private int head;
+	private int size;
+	private boolean ended;
+	private boolean abandoned;
+
+	/**
+	 * Adds a value printed by the program, waiting for room if the client is behind.
+	 *
+	 * @throws IllegalStateException if the client has not read any output for too long, or is gone
+	 */
+	@Override
+	public synchronized void accept(int value) {
+		if (size == values.length && values.length < MAX_PENDING)
+			grow();
+		long deadline = System.nanoTime() + STALL_NANOS;
+		try {
+			while (size == values.length && !abandoned) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					abandoned = true;
+				else
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abandoned = true;
+		}
+		if (abandoned)
+			throw new IllegalStateException(STALLED);
+		values[(head + size) & (values.length - 1)] = value;
+		if (size++ == 0)
+			notifyAll();
+	}
+
+	private void grow() {
+		int[] grown = new int[values.length * 2];
+		int first = Math.min(size, values.length - head);
+		System.arraycopy(values, head, grown, 0, first);
+		System.arraycopy(values, 0, grown, first, size - first);
+		values = grown;
+		head = 0;
+	}
+
+	/**
+	 * Takes the oldest values printed so far, up to {@value #MAX_TAKEN}, waiting for some if there are none and the
+	 * program has not ended.
+	 *
+	 * @return the values, oldest first, or {@code null} once the program has ended and every value has been taken
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	synchronized int[] take() throws InterruptedException {
+		while (size == 0 && !ended)
+			wait();
+		if (size == 0)
+			return null;
+		int[] taken = new int[Math.min(size, MAX_TAKEN)];
+		int first = Math.min(taken.length, values.length - head);
+		System.arraycopy(values, head, taken, 0, first);
+		System.arraycopy(values, 0, taken, first, taken.length - first);
+		head = (head + taken.length) & (values.length - 1);
+		size -= taken.length;
+		notifyAll();
+		return taken;
+	}
+
+	/**
+	 * Records that the program has ended, so that {@link #take()} returns {@code null} once it has taken the rest of
+	 * the output.
+	 */
+	synchronized void end() {
+		ended = true;
+		notifyAll();
+	}
+
+	/**
+	 * Records that the client is gone, so that the program fails at its next output instead of waiting for room.
+	 */
+	synchronized void abandon() {
+		abandoned = true;
+		notifyAll();
+	}
+
+	/**
+	 * Returns whether the output was abandoned, because the client did not read it or is gone.
+	 *
+	 * @return true if the program failed, or will fail, at its next output
+	 */
+	synchronized boolean isAbandoned() {
+		return abandoned;
+	}
+}
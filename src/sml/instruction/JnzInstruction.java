@@ -3,7 +3,9 @@ package sml.instruction;
 import sml.Instruction;
 import sml.Labels;
 import sml.Machine;
+import sml.Opcode;
 import sml.RegisterName;
+import sml.Registers;
 
 import java.util.List;
 import java.util.Objects;
@@ -13,14 +15,24 @@ import java.util.Optional;
  * The JnzInstruction class represents an instruction in a machine language program that reads the content of a register and
  * if it's different than zero it will change the program counter to execute instruction with label next
  */
+@Opcode
 public class JnzInstruction extends Instruction {
 
 	/** The name of the result register. */
 	private final RegisterName register;
 
+	/** The register file index of the register, resolved at construction. */
+	private final int index;
+
 	/** The name of the source register. */
 	private final String other_label;
 
+	/** The address of the instruction with the other label, or {@code UNLINKED} before the program is linked. */
+	private final int target;
+
+	/** The target of a jump whose label has not been resolved yet. */
+	private static final int UNLINKED = -1;
+
 	/** The opcode for the jnz instruction. */
 	public static final String OP_CODE = "jnz";
 
@@ -32,30 +44,79 @@ public class JnzInstruction extends Instruction {
 	 * @param other_label the label of the other instruction
 	 */
 	public JnzInstruction(String label, RegisterName register, String other_label) {
+		this(label, register, other_label, UNLINKED);
+	}
+
+	/**
+	 * Constructs a JnzInstruction object whose other label has been resolved to the given address.
+	 *
+	 * @param label the label for the instruction, or null if none
+	 * @param register the name of the result register
+	 * @param other_label the label of the other instruction
+	 * @param target the address of the other instruction
+	 */
+	private JnzInstruction(String label, RegisterName register, String other_label, int target) {
 		super(label, OP_CODE);
 		this.register = register;
+		this.index = Registers.indexOf(register);
 		this.other_label = other_label;
+		this.target = target;
 	}
 
 	/**
 	 * Executes the jnz instruction on the specified Machine object.
 	 *
 	 * This method retrieves the values of the register specified and if it's different
-	 * than zero it will return the value of the program counter to process  the instruction with the other label next
+	 * than zero it will return the value of the program counter to process  the instruction with the other label next.
+	 * Once the instruction has been linked the address is known in advance, otherwise it is looked up in the labels of
+	 * the machine.
 	 *
 	 * @param m the Machine object on which to execute the instruction
 	 * @return the new program counter or the normal program counter update if condition does not hold
 	 */
 	@Override
 	public int execute(Machine m) {
-		int value = m.getRegisters().get(register);
+		int value = m.getRegisters().get(index);
 		if (value == 0) return NORMAL_PROGRAM_COUNTER_UPDATE;
+		else if (target != UNLINKED) return target;
 		else{
 			Labels labels = m.getLabels();
 			return labels.getAddress(this.other_label);
 		}
 	}
 
+	/**
+	 * Returns a copy of this instruction holding the address of the other label.
+	 *
+	 * @param labels the labels of the program the instruction belongs to
+	 * @return the linked instruction
+	 * @throws IllegalArgumentException if the other label does not exist
+	 */
+	@Override
+	public Instruction link(Labels labels) {
+		if (!labels.contains(other_label))
+			throw new IllegalArgumentException("Label '" + other_label + "' in '" + this + "' does not exist");
+		return new JnzInstruction(label, register, other_label, labels.getAddress(other_label));
+	}
+
+	/**
+	 * Returns the name of the register.
+	 *
+	 * @return the name of the register
+	 */
+	public RegisterName getRegister() {
+		return register;
+	}
+
+	/**
+	 * Returns the label of the instruction to jump to.
+	 *
+	 * @return the other label
+	 */
+	public String getOtherLabel() {
+		return other_label;
+	}
+
 	/**
 	 * Returns a string representation of the instruction in the format "label: opcode register other_label".
 	 *
@@ -2,7 +2,9 @@ package sml.instruction;
 
 import sml.Instruction;
 import sml.Machine;
+import sml.Opcode;
 import sml.RegisterName;
+import sml.Registers;
 
 import java.util.Objects;
 
@@ -10,11 +12,15 @@ import java.util.Objects;
  * The MovInstruction class represents an instruction in a machine language program that replaces the value of one register
  * with one integer. This instruction extends the Instruction class.
  */
+@Opcode
 public class MovInstruction extends Instruction {
 
 	/** The name of the register. */
 	private final RegisterName register;
 
+	/** The register file index of the register, resolved at construction. */
+	private final int index;
+
 	/** The integer. */
 	private final int value;
 
@@ -31,6 +37,7 @@ public class MovInstruction extends Instruction {
 	public MovInstruction(String label, RegisterName register, int value) {
 		super(label, OP_CODE);
 		this.register = register;
+		this.index = Registers.indexOf(register);
 		this.value = value;
 	}
 
@@ -46,10 +53,28 @@ public class MovInstruction extends Instruction {
 	 */
 	@Override
 	public int execute(Machine m) {
-		m.getRegisters().set(register, value);
+		m.getRegisters().set(index, value);
 		return NORMAL_PROGRAM_COUNTER_UPDATE;
 	}
 
+	/**
+	 * Returns the name of the register.
+	 *
+	 * @return the name of the register
+	 */
+	public RegisterName getRegister() {
+		return register;
+	}
+
+	/**
+	 * Returns the integer stored by the instruction.
+	 *
+	 * @return the integer
+	 */
+	public int getValue() {
+		return value;
+	}
+
 	/**
 	 * Returns a string representation of the instruction in the format "label: opcode register value".
 	 *
@@ -2,7 +2,9 @@ package sml.instruction;
 
 import sml.Instruction;
 import sml.Machine;
+import sml.Opcode;
 import sml.RegisterName;
+import sml.Registers;
 
 import java.util.Objects;
 
@@ -10,6 +12,7 @@ import java.util.Objects;
  * The MulInstruction class represents an instruction in a machine language program that multiplies the value of one register
  * with that of another register and stores the result in the first register. This instruction extends the Instruction class.
  */
+@Opcode
 public class MulInstruction extends Instruction {
 
 	/** The name of the result register. */
@@ -18,6 +21,9 @@ public class MulInstruction extends Instruction {
 	/** The name of the source register. */
 	private final RegisterName source;
 
+	/** The register file indices of the result and source registers, resolved at construction. */
+	private final int resultIndex, sourceIndex;
+
 	/** The opcode for the mul instruction. */
 	public static final String OP_CODE = "mul";
 
@@ -32,6 +38,8 @@ public class MulInstruction extends Instruction {
 		super(label, OP_CODE);
 		this.result = result;
 		this.source = source;
+		this.resultIndex = Registers.indexOf(result);
+		this.sourceIndex = Registers.indexOf(source);
 	}
 
 	/**
@@ -47,12 +55,31 @@ public class MulInstruction extends Instruction {
 	 */
 	@Override
 	public int execute(Machine m) {
-		int value1 = m.getRegisters().get(result);
-		int value2 = m.getRegisters().get(source);
-		m.getRegisters().set(result, value1 * value2);
+		Registers registers = m.getRegisters();
+		int value1 = registers.get(resultIndex);
+		int value2 = registers.get(sourceIndex);
+		registers.set(resultIndex, value1 * value2);
 		return NORMAL_PROGRAM_COUNTER_UPDATE;
 	}
 
+	/**
+	 * Returns the name of the result register.
+	 *
+	 * @return the name of the result register
+	 */
+	public RegisterName getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the name of the source register.
+	 *
+	 * @return the name of the source register
+	 */
+	public RegisterName getSource() {
+		return source;
+	}
+
 	/**
 	 * Returns a string representation of the instruction in the format "label: opcode result source".
 	 *
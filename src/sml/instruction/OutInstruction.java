@@ -2,7 +2,9 @@ package sml.instruction;
 
 import sml.Instruction;
 import sml.Machine;
+import sml.Opcode;
 import sml.RegisterName;
+import sml.Registers;
 
 import java.util.Objects;
 
@@ -10,11 +12,15 @@ import java.util.Objects;
  * The OutInstruction class represents an instruction in a machine language program that prints the value of one register
  * on console. This instruction extends the Instruction class.
  */
+@Opcode
 public class OutInstruction extends Instruction {
 
 	/** The name of the register. */
 	private final RegisterName register;
 
+	/** The register file index of the register, resolved at construction. */
+	private final int index;
+
 	/** The opcode for the add instruction. */
 	public static final String OP_CODE = "out";
 
@@ -27,12 +33,14 @@ public class OutInstruction extends Instruction {
 	public OutInstruction(String label, RegisterName register) {
 		super(label, OP_CODE);
 		this.register = register;
+		this.index = Registers.indexOf(register);
 	}
 
 	/**
 	 * Executes the out instruction on the specified Machine object.
 	 *
-	 * This method retrieves the values of one register and prints it on console
+	 * This method retrieves the values of one register and prints it to the output of the machine, the console by
+	 * default.
 	 * The method returns a constant value indicating that the program counter should be
 	 * updated normally.
 	 *
@@ -41,11 +49,20 @@ public class OutInstruction extends Instruction {
 	 */
 	@Override
 	public int execute(Machine m) {
-		int value1 = m.getRegisters().get(register);
-		System.out.println(value1);
+		int value1 = m.getRegisters().get(index);
+		m.getOutput().accept(value1);
 		return NORMAL_PROGRAM_COUNTER_UPDATE;
 	}
 
+	/**
+	 * Returns the name of the register.
+	 *
+	 * @return the name of the register
+	 */
+	public RegisterName getRegister() {
+		return register;
+	}
+
 	/**
 	 * Returns a string representation of the instruction in the format "label: opcode register".
 	 *
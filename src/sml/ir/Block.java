@@ -0,0 +1,150 @@
+package sml.ir;
+
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block: a run of instructions entered only at its first instruction and left only after its last.
+ */
+public final class Block {
+
+	private final int id;
+
+	private final int start;
+
+	private final List<String> labels = new ArrayList<>();
+
+	private final List<Node> nodes = new ArrayList<>();
+
+	/** The predecessors of the block; {@code null} stands for the start of the program. */
+	private final List<Block> predecessors = new ArrayList<>();
+
+	private Block branch;
+
+	private Block next;
+
+	private boolean branches;
+
+	private final Value[] entry = new Value[Registers.COUNT];
+
+	private final Value[] exit = new Value[Registers.COUNT];
+
+	Block(int id, int start) {
+		this.id = id;
+		this.start = start;
+	}
+
+	/**
+	 * Returns the number of the block, which is its index in the program order of the graph.
+	 *
+	 * @return the number of the block
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the address of the first instruction of the block in the original program.
+	 *
+	 * @return the address
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the labels of the first instruction of the block.
+	 *
+	 * @return the labels
+	 */
+	public List<String> getLabels() {
+		return labels;
+	}
+
+	public List<Node> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the predecessors of the block, in the order of the operands of its phis.
+	 *
+	 * @return the predecessors; {@code null} stands for the start of the program
+	 */
+	public List<Block> getPredecessors() {
+		return predecessors;
+	}
+
+	/**
+	 * Returns whether the block ends with a {@code jnz}.
+	 *
+	 * @return {@code true} if the block ends with a {@code jnz}
+	 */
+	public boolean branches() {
+		return branches;
+	}
+
+	/**
+	 * Returns the block the final {@code jnz} jumps to.
+	 *
+	 * @return the block, or {@code null} if the block does not branch or the jump ends the program
+	 */
+	public Block getBranch() {
+		return branch;
+	}
+
+	/**
+	 * Returns the block following this one in the program.
+	 *
+	 * @return the block, or {@code null} if falling through ends the program
+	 */
+	public Block getNext() {
+		return next;
+	}
+
+	/**
+	 * Returns the values of the registers on entry to the block, indexed like the registers.
+	 *
+	 * @return the values on entry
+	 */
+	public Value[] getEntry() {
+		return entry;
+	}
+
+	/**
+	 * Returns the values of the registers on exit from the block, indexed like the registers.
+	 *
+	 * @return the values on exit
+	 */
+	public Value[] getExit() {
+		return exit;
+	}
+
+	void setBranch(Block branch) {
+		this.branches = true;
+		this.branch = branch;
+	}
+
+	void setNext(Block next) {
+		this.next = next;
+	}
+
+	/**
+	 * Returns a string representation of the block, its phis and its nodes.
+	 *
+	 * @return a string representation of the block
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("B" + id + " " + labels + " from "
+				+ predecessors.stream().map(block -> (block == null) ? "start" : "B" + block.id).toList() + "\n");
+		for (Value value : entry) {
+			if (value != null && value.getKind() == Value.Kind.PHI && value.getBlock() == this)
+				text.append("  ").append(value).append(" = phi ").append(value.getOperands()).append('\n');
+		}
+		for (Node node : nodes)
+			text.append("  ").append(node).append('\n');
+		return text.toString();
+	}
+}
@@ -0,0 +1,226 @@
+package sml.ir;
+
+import sml.Instruction;
+import sml.instruction.AddInstruction;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.List;
+
+/**
+ * Conditional constant propagation over a graph in SSA form.
+ * <p>
+ * Every value starts as undefined and may become a constant and then varying; a block is executable once an
+ * executable edge reaches it. Phis only merge the values along executable edges, and a {@code jnz} testing a
+ * constant makes only one of its edges executable, so constants are found through branches that are never taken
+ * and the blocks found unreachable can be removed.
+ */
+public final class ConstantPropagation {
+
+	private static final byte UNDEFINED = 0;
+	private static final byte CONSTANT = 1;
+	private static final byte VARYING = 2;
+
+	private final ControlFlowGraph graph;
+
+	private final byte[] states;
+
+	private final int[] constants;
+
+	private final boolean[] executable;
+
+	/** For every block, which of its incoming edges, in the order of its predecessors, are executable. */
+	private final boolean[][] edges;
+
+	/**
+	 * Runs the analysis.
+	 *
+	 * @param graph the graph
+	 * @param zeroedRegisters whether every register holds zero when the program starts, as it does when the program
+	 *                        is run by {@link sml.Machine#execute()}
+	 */
+	public ConstantPropagation(ControlFlowGraph graph, boolean zeroedRegisters) {
+		this.graph = graph;
+		this.states = new byte[graph.valueCount()];
+		this.constants = new int[graph.valueCount()];
+		List<Block> blocks = graph.getBlocks();
+		int blockCount = blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).getId() + 1;
+		this.executable = new boolean[blockCount];
+		this.edges = new boolean[blockCount][];
+		for (Block block : blocks)
+			edges[block.getId()] = new boolean[block.getPredecessors().size()];
+
+		for (Value parameter : graph.getParameters()) {
+			states[parameter.getId()] = zeroedRegisters ? CONSTANT : VARYING;
+			constants[parameter.getId()] = 0;
+		}
+		if (!blocks.isEmpty()) {
+			edges[blocks.get(0).getId()][0] = true;
+			executable[blocks.get(0).getId()] = true;
+		}
+		run();
+	}
+
+	private void run() {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Block block : graph.getReversePostorder()) {
+				if (!executable[block.getId()])
+					continue;
+				changed |= evaluatePhis(block);
+				for (Node node : block.getNodes()) {
+					if (node.getResult() != null)
+						changed |= lower(node.getResult(), evaluate(node));
+				}
+				changed |= markSuccessors(block);
+			}
+		}
+	}
+
+	private boolean evaluatePhis(Block block) {
+		boolean changed = false;
+		boolean[] incoming = edges[block.getId()];
+		for (Value phi : block.getEntry()) {
+			if (phi.getKind() != Value.Kind.PHI || phi.getBlock() != block)
+				continue;
+			long merged = undefined();
+			for (int i = 0; i < incoming.length; i++) {
+				if (incoming[i])
+					merged = meet(merged, lattice(phi.getOperands().get(i)));
+			}
+			changed |= lower(phi, merged);
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the lattice element of the result of a node, packed as by {@link #element}.
+	 */
+	private long evaluate(Node node) {
+		Instruction ins = node.getInstruction();
+		if (ins instanceof MovInstruction mov)
+			return element(CONSTANT, mov.getValue());
+		long first = lattice(node.getPrevious()), second = lattice(node.getSource());
+		if (ins instanceof MulInstruction && (isZero(first) || isZero(second)))
+			return element(CONSTANT, 0);
+		if (state(first) == VARYING || state(second) == VARYING)
+			return varying();
+		if (state(first) == UNDEFINED || state(second) == UNDEFINED)
+			return undefined();
+		int value1 = value(first), value2 = value(second);
+		if (ins instanceof AddInstruction) return element(CONSTANT, value1 + value2);
+		if (ins instanceof SubInstruction) return element(CONSTANT, value1 - value2);
+		if (ins instanceof MulInstruction) return element(CONSTANT, value1 * value2);
+		if (ins instanceof DivInstruction) return (value2 == 0) ? varying() : element(CONSTANT, value1 / value2);
+		return varying();
+	}
+
+	private boolean markSuccessors(Block block) {
+		List<Node> nodes = block.getNodes();
+		Node last = nodes.get(nodes.size() - 1);
+		boolean taken = true, fallsThrough = true;
+		if (last.getInstruction() instanceof JnzInstruction) {
+			long tested = lattice(last.getPrevious());
+			taken = state(tested) == VARYING || (state(tested) == CONSTANT && value(tested) != 0);
+			fallsThrough = state(tested) == VARYING || (state(tested) == CONSTANT && value(tested) == 0);
+		}
+		boolean changed = false;
+		if (taken && block.branches() && block.getBranch() != null)
+			changed |= markEdge(block, block.getBranch());
+		if (fallsThrough && block.getNext() != null)
+			changed |= markEdge(block, block.getNext());
+		return changed;
+	}
+
+	private boolean markEdge(Block from, Block to) {
+		boolean changed = false;
+		List<Block> predecessors = to.getPredecessors();
+		for (int i = 0; i < predecessors.size(); i++) {
+			if (predecessors.get(i) == from && !edges[to.getId()][i]) {
+				edges[to.getId()][i] = true;
+				executable[to.getId()] = true;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private boolean lower(Value value, long element) {
+		long old = element(states[value.getId()], constants[value.getId()]);
+		long merged = meet(old, element);
+		if (merged == old)
+			return false;
+		states[value.getId()] = state(merged);
+		constants[value.getId()] = value(merged);
+		return true;
+	}
+
+	private long lattice(Value value) {
+		return element(states[value.getId()], constants[value.getId()]);
+	}
+
+	private static long meet(long a, long b) {
+		if (state(a) == UNDEFINED) return b;
+		if (state(b) == UNDEFINED) return a;
+		if (state(a) == VARYING || state(b) == VARYING) return varying();
+		return (value(a) == value(b)) ? a : varying();
+	}
+
+	private static long element(byte state, int value) {
+		return ((long) state << 32) | (value & 0xFFFF_FFFFL);
+	}
+
+	private static long undefined() {
+		return element(UNDEFINED, 0);
+	}
+
+	private static long varying() {
+		return element(VARYING, 0);
+	}
+
+	private static byte state(long element) {
+		return (byte) (element >>> 32);
+	}
+
+	private static int value(long element) {
+		return (int) element;
+	}
+
+	private static boolean isZero(long element) {
+		return state(element) == CONSTANT && value(element) == 0;
+	}
+
+	/**
+	 * Returns whether a block can be reached when the program runs.
+	 *
+	 * @param block the block
+	 * @return {@code true} if an executable edge reaches the block
+	 */
+	public boolean isExecutable(Block block) {
+		return executable[block.getId()];
+	}
+
+	/**
+	 * Returns whether a value is the same constant whenever the program runs.
+	 *
+	 * @param value the value
+	 * @return {@code true} if the value is constant
+	 */
+	public boolean isConstant(Value value) {
+		return states[value.getId()] == CONSTANT;
+	}
+
+	/**
+	 * Returns the constant of a value.
+	 *
+	 * @param value the value, which must be constant
+	 * @return the constant
+	 */
+	public int constant(Value value) {
+		return constants[value.getId()];
+	}
+}
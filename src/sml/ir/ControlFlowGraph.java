@@ -0,0 +1,285 @@
+package sml.ir;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.AddInstruction;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The control-flow graph of a program, in SSA form.
+ * <p>
+ * The blocks begin at address 0, at every labelled instruction and after every {@code jnz}. Blocks that cannot be
+ * reached from the start of the program are left out. Every block that is entered from anywhere but the end of a
+ * single earlier block begins with a phi for each register.
+ */
+public final class ControlFlowGraph {
+
+	private final List<Block> blocks;
+
+	private final List<Block> reversePostorder;
+
+	private final Value[] parameters = new Value[Registers.COUNT];
+
+	/** The labels of the end of the program, reached by a jump to the address following the last instruction. */
+	private final List<String> exitLabels = new ArrayList<>();
+
+	private int values;
+
+	/**
+	 * Builds the graph of a program.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist, or contains an
+	 * instruction other than those of the machine language
+	 */
+	public ControlFlowGraph(List<Instruction> program, Labels labels) {
+		int size = program.size();
+		Map<Integer, List<String>> labelsAt = new TreeMap<>();
+		boolean[] leaders = new boolean[size + 1];
+		leaders[0] = true;
+		for (int address = 0; address < size; address++) {
+			Instruction ins = program.get(address);
+			if (!isStandard(ins))
+				throw new IllegalArgumentException("Cannot represent instruction '" + ins + "'");
+			if (ins.getLabel() != null) {
+				leaders[address] = true;
+				addLabel(labelsAt, ins.getLabel(), address);
+			}
+			if (ins instanceof JnzInstruction jnz) {
+				if (!labels.contains(jnz.getOtherLabel()))
+					throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' does not exist");
+				int target = labels.getAddress(jnz.getOtherLabel());
+				if (target < 0 || target > size)
+					throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' is out of range");
+				leaders[target] = true;
+				leaders[address + 1] = true;
+				addLabel(labelsAt, jnz.getOtherLabel(), target);
+			}
+		}
+
+		List<Block> all = new ArrayList<>();
+		Block[] blockAt = new Block[size + 1];
+		for (int address = 0; address < size; address++) {
+			if (leaders[address])
+				all.add(new Block(all.size(), address));
+			blockAt[address] = all.get(all.size() - 1);
+		}
+		for (Map.Entry<Integer, List<String>> entry : labelsAt.entrySet()) {
+			List<String> names = (entry.getKey() == size) ? exitLabels : blockAt[entry.getKey()].getLabels();
+			for (String name : entry.getValue())
+				if (!names.contains(name)) names.add(name);
+		}
+		for (int i = 0; i < all.size(); i++) {
+			Block block = all.get(i);
+			int end = (i + 1 < all.size()) ? all.get(i + 1).getStart() : size;
+			block.setNext((i + 1 < all.size()) ? all.get(i + 1) : null);
+			if (program.get(end - 1) instanceof JnzInstruction jnz)
+				block.setBranch(blockAt[labels.getAddress(jnz.getOtherLabel())]);
+		}
+
+		this.reversePostorder = reversePostorder(all);
+		boolean[] visited = new boolean[all.size()];
+		for (Block block : reversePostorder)
+			visited[block.getId()] = true;
+		List<Block> reachable = new ArrayList<>(all.size());
+		for (Block block : all) {
+			if (visited[block.getId()])
+				reachable.add(block);
+		}
+		this.blocks = Collections.unmodifiableList(reachable);
+		if (!blocks.isEmpty())
+			blocks.get(0).getPredecessors().add(null);
+		for (Block block : blocks) {
+			if (block.branches() && block.getBranch() != null)
+				block.getBranch().getPredecessors().add(block);
+			if (block.getNext() != null)
+				block.getNext().getPredecessors().add(block);
+		}
+
+		for (int index = 0; index < Registers.COUNT; index++)
+			parameters[index] = new Value(values++, Registers.registerAt(index), Value.Kind.ENTRY, null);
+		buildSsa(program);
+	}
+
+	private static void addLabel(Map<Integer, List<String>> labelsAt, String label, int address) {
+		labelsAt.computeIfAbsent(address, a -> new ArrayList<>()).add(label);
+	}
+
+	private static boolean isStandard(Instruction ins) {
+		return ins instanceof AddInstruction || ins instanceof SubInstruction || ins instanceof MulInstruction
+				|| ins instanceof DivInstruction || ins instanceof MovInstruction || ins instanceof OutInstruction
+				|| ins instanceof JnzInstruction;
+	}
+
+	private static List<Block> reversePostorder(List<Block> all) {
+		List<Block> postorder = new ArrayList<>();
+		if (all.isEmpty())
+			return postorder;
+		boolean[] visited = new boolean[all.size()];
+		Deque<Block> stack = new ArrayDeque<>();
+		Deque<Integer> state = new ArrayDeque<>();
+		stack.push(all.get(0));
+		state.push(0);
+		visited[0] = true;
+		while (!stack.isEmpty()) {
+			Block block = stack.peek();
+			int successor = state.pop();
+			state.push(successor + 1);
+			Block next = (successor == 0) ? (block.branches() ? block.getBranch() : null)
+					: (successor == 1) ? block.getNext() : null;
+			if (successor >= 2) {
+				stack.pop();
+				state.pop();
+				postorder.add(block);
+			} else if (next != null && !visited[next.getId()]) {
+				visited[next.getId()] = true;
+				stack.push(next);
+				state.push(0);
+			}
+		}
+		Collections.reverse(postorder);
+		return postorder;
+	}
+
+	private void buildSsa(List<Instruction> program) {
+		boolean[] built = new boolean[blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).getId() + 1];
+		List<Block> merges = new ArrayList<>();
+		for (Block block : reversePostorder) {
+			List<Block> predecessors = block.getPredecessors();
+			Value[] entry = block.getEntry();
+			if (predecessors.size() == 1 && predecessors.get(0) != null && built[predecessors.get(0).getId()]) {
+				System.arraycopy(predecessors.get(0).getExit(), 0, entry, 0, Registers.COUNT);
+			} else {
+				for (int index = 0; index < Registers.COUNT; index++)
+					entry[index] = new Value(values++, Registers.registerAt(index), Value.Kind.PHI, block);
+				merges.add(block);
+			}
+
+			Value[] current = entry.clone();
+			int end = (block.getNext() != null) ? block.getNext().getStart() : program.size();
+			for (int address = block.getStart(); address < end; address++) {
+				Instruction ins = program.get(address);
+				RegisterName register = register(ins);
+				int index = Registers.indexOf(register);
+				RegisterName source = source(ins);
+				Value result = null;
+				if (!(ins instanceof OutInstruction) && !(ins instanceof JnzInstruction)) {
+					result = new Value(values++, register, Value.Kind.INSTRUCTION, block);
+				}
+				block.getNodes().add(new Node(ins, current[index],
+						(source == null) ? null : current[Registers.indexOf(source)], result));
+				if (result != null)
+					current[index] = result;
+			}
+			System.arraycopy(current, 0, block.getExit(), 0, Registers.COUNT);
+			built[block.getId()] = true;
+		}
+
+		for (Block block : merges) {
+			for (Block predecessor : block.getPredecessors()) {
+				Value[] incoming = (predecessor == null) ? parameters : predecessor.getExit();
+				for (int index = 0; index < Registers.COUNT; index++)
+					block.getEntry()[index].getOperands().add(incoming[index]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the register written, printed or tested by an instruction.
+	 */
+	static RegisterName register(Instruction ins) {
+		if (ins instanceof AddInstruction add) return add.getResult();
+		if (ins instanceof SubInstruction sub) return sub.getResult();
+		if (ins instanceof MulInstruction mul) return mul.getResult();
+		if (ins instanceof DivInstruction div) return div.getResult();
+		if (ins instanceof MovInstruction mov) return mov.getRegister();
+		if (ins instanceof OutInstruction out) return out.getRegister();
+		return ((JnzInstruction) ins).getRegister();
+	}
+
+	/**
+	 * Returns the source register of an arithmetic instruction, or {@code null}.
+	 */
+	static RegisterName source(Instruction ins) {
+		if (ins instanceof AddInstruction add) return add.getSource();
+		if (ins instanceof SubInstruction sub) return sub.getSource();
+		if (ins instanceof MulInstruction mul) return mul.getSource();
+		if (ins instanceof DivInstruction div) return div.getSource();
+		return null;
+	}
+
+	/**
+	 * Returns the blocks reachable from the start of the program, in program order.
+	 *
+	 * @return the blocks
+	 */
+	public List<Block> getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 * Returns the blocks reachable from the start of the program, each after all its predecessors except along
+	 * back edges.
+	 *
+	 * @return the blocks in reverse postorder
+	 */
+	public List<Block> getReversePostorder() {
+		return Collections.unmodifiableList(reversePostorder);
+	}
+
+	/**
+	 * Returns the values of the registers when the program starts, indexed like the registers.
+	 *
+	 * @return the entry values
+	 */
+	public Value[] getParameters() {
+		return parameters.clone();
+	}
+
+	/**
+	 * Returns the labels of the address following the last instruction, which end the program when jumped to.
+	 *
+	 * @return the labels
+	 */
+	public List<String> getExitLabels() {
+		return exitLabels;
+	}
+
+	/**
+	 * Returns the number of values of the graph; the numbers of the values are below it.
+	 *
+	 * @return the number of values
+	 */
+	public int valueCount() {
+		return values;
+	}
+
+	/**
+	 * Returns a string representation of the graph, block by block in program order.
+	 *
+	 * @return a string representation of the graph
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (Block block : blocks)
+			text.append(block);
+		return text.toString();
+	}
+}
@@ -0,0 +1,289 @@
+package sml.ir;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.AddInstruction;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimizes a program through its {@link ControlFlowGraph}, then lowers the result back to the instructions of the
+ * machine language.
+ * <p>
+ * The passes are, in order:
+ * <ul>
+ *     <li>constant propagation, by {@link ConstantPropagation}: an instruction computing a constant becomes a
+ *     {@code mov}, or disappears if the register already holds the constant, and a {@code jnz} testing a constant
+ *     becomes unconditional or disappears;</li>
+ *     <li>unreachable-block removal, of the blocks constant propagation never reaches;</li>
+ *     <li>copy propagation: an instruction leaving a register unchanged, such as adding zero, disappears, and a
+ *     register read where another register holds the same value, such as after adding a register to a zero, is
+ *     replaced by that register;</li>
+ *     <li>dead-store elimination, of the instructions writing registers that are overwritten before they are
+ *     read. All registers are read at the end of the program, and a division is never removed since it may fail.</li>
+ * </ul>
+ * The optimized program prints the same values and ends with the same registers as the original, and fails in the
+ * same way.
+ */
+public final class IrOptimizer {
+
+	private static final int NONE = -2;
+
+	private static final int EXIT = -1;
+
+	/** Every register is read at the end of the program, where the registers are observed. */
+	private static final int ALL_REGISTERS = (1 << Registers.COUNT) - 1;
+
+	private IrOptimizer() {
+	}
+
+	/**
+	 * Optimizes the program of a machine in place, for runs by {@link Machine#execute()}, which start from zeroed
+	 * registers.
+	 *
+	 * @param machine the machine, which must own its program
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist, or contains an
+	 * instruction other than those of the machine language
+	 */
+	public static void optimize(Machine machine) {
+		optimize(machine.getProgram(), machine.getLabels(), true);
+	}
+
+	/**
+	 * Optimizes a program in place, replacing its instructions and its labels.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @param zeroedRegisters whether every register holds zero when the program starts; if not, nothing is assumed
+	 *                        about the registers
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist, or contains an
+	 * instruction other than those of the machine language
+	 */
+	public static void optimize(List<Instruction> program, Labels labels, boolean zeroedRegisters) {
+		if (program.isEmpty())
+			return;
+		ControlFlowGraph graph = new ControlFlowGraph(program, labels);
+		ConstantPropagation constants = new ConstantPropagation(graph, zeroedRegisters);
+		Copies copies = new Copies(graph, constants);
+
+		List<Block> blocks = new ArrayList<>();
+		List<List<Instruction>> code = new ArrayList<>();
+		for (Block block : graph.getBlocks()) {
+			if (constants.isExecutable(block)) {
+				blocks.add(block);
+				code.add(lower(block, constants, copies));
+			}
+		}
+		eliminateDeadStores(blocks, code, labels);
+
+		labels.reset();
+		List<Instruction> lowered = new ArrayList<>();
+		for (int i = 0; i < blocks.size(); i++) {
+			List<String> names = blocks.get(i).getLabels();
+			for (String name : names)
+				labels.addLabel(name, lowered.size());
+			List<Instruction> instructions = code.get(i);
+			for (int j = 0; j < instructions.size(); j++)
+				lowered.add(withLabel(instructions.get(j), (j == 0 && !names.isEmpty()) ? names.get(0) : null));
+		}
+		for (String name : graph.getExitLabels()) {
+			if (!labels.contains(name))
+				labels.addLabel(name, lowered.size());
+		}
+
+		program.clear();
+		for (Instruction ins : lowered)
+			program.add(ins.link(labels));
+	}
+
+	/**
+	 * The copies among the values of a graph: a value is a copy of another if it always holds the same content.
+	 */
+	private static final class Copies {
+		private final Value[] copyOf;
+
+		Copies(ControlFlowGraph graph, ConstantPropagation constants) {
+			copyOf = new Value[graph.valueCount()];
+			for (Block block : graph.getReversePostorder()) {
+				for (Node node : block.getNodes()) {
+					Value result = node.getResult();
+					if (result == null || node.getSource() == null || constants.isConstant(result))
+						continue;
+					Instruction ins = node.getInstruction();
+					Value previous = node.getPrevious(), source = node.getSource();
+					boolean multiplicative = ins instanceof MulInstruction || ins instanceof DivInstruction;
+					// adding or subtracting zero, or multiplying or dividing by one, leaves the register unchanged
+					if (isConstant(constants, source, multiplicative ? 1 : 0))
+						copyOf[result.getId()] = root(previous);
+					// adding to zero, or multiplying one, copies the source
+					else if ((ins instanceof AddInstruction && isConstant(constants, previous, 0))
+							|| (ins instanceof MulInstruction && isConstant(constants, previous, 1)))
+						copyOf[result.getId()] = root(source);
+				}
+			}
+		}
+
+		private static boolean isConstant(ConstantPropagation constants, Value value, int constant) {
+			return constants.isConstant(value) && constants.constant(value) == constant;
+		}
+
+		/**
+		 * Returns the value a value is a copy of, following chains of copies, or the value itself.
+		 */
+		Value root(Value value) {
+			while (copyOf[value.getId()] != null)
+				value = copyOf[value.getId()];
+			return value;
+		}
+	}
+
+	/**
+	 * Lowers the nodes of an executable block to instructions.
+	 */
+	private static List<Instruction> lower(Block block, ConstantPropagation constants, Copies copies) {
+		List<Instruction> code = new ArrayList<>(block.getNodes().size());
+		Value[] current = block.getEntry().clone();
+		for (Node node : block.getNodes()) {
+			Instruction ins = node.getInstruction();
+			Value result = node.getResult(), previous = node.getPrevious();
+			if (ins instanceof OutInstruction) {
+				code.add(new OutInstruction(null, register(previous, current, copies)));
+			} else if (ins instanceof JnzInstruction jnz) {
+				if (!constants.isConstant(previous) || constants.constant(previous) != 0)
+					code.add(new JnzInstruction(null, register(previous, current, copies), jnz.getOtherLabel()));
+			} else if (constants.isConstant(result)) {
+				int value = constants.constant(result);
+				if (!constants.isConstant(previous) || constants.constant(previous) != value)
+					code.add(new MovInstruction(null, result.getRegister(), value));
+			} else if (copies.root(result) != copies.root(previous)) {
+				code.add(arithmetic(ins, result.getRegister(), register(node.getSource(), current, copies)));
+			}
+			if (result != null)
+				current[Registers.indexOf(result.getRegister())] = result;
+		}
+		return code;
+	}
+
+	/**
+	 * Returns a register holding a value: the register the value was first copied from if it still holds it, so
+	 * that the copy may become dead, or else the register of the value.
+	 */
+	private static RegisterName register(Value value, Value[] current, Copies copies) {
+		Value root = copies.root(value);
+		Value held = current[Registers.indexOf(root.getRegister())];
+		return (copies.root(held) == root) ? root.getRegister() : value.getRegister();
+	}
+
+	private static Instruction arithmetic(Instruction ins, RegisterName result, RegisterName source) {
+		if (ins instanceof AddInstruction) return new AddInstruction(null, result, source);
+		if (ins instanceof SubInstruction) return new SubInstruction(null, result, source);
+		if (ins instanceof MulInstruction) return new MulInstruction(null, result, source);
+		return new DivInstruction(null, result, source);
+	}
+
+	private static Instruction withLabel(Instruction ins, String label) {
+		if (label == null) return ins;
+		if (ins instanceof AddInstruction add) return new AddInstruction(label, add.getResult(), add.getSource());
+		if (ins instanceof SubInstruction sub) return new SubInstruction(label, sub.getResult(), sub.getSource());
+		if (ins instanceof MulInstruction mul) return new MulInstruction(label, mul.getResult(), mul.getSource());
+		if (ins instanceof DivInstruction div) return new DivInstruction(label, div.getResult(), div.getSource());
+		if (ins instanceof MovInstruction mov) return new MovInstruction(label, mov.getRegister(), mov.getValue());
+		if (ins instanceof OutInstruction out) return new OutInstruction(label, out.getRegister());
+		JnzInstruction jnz = (JnzInstruction) ins;
+		return new JnzInstruction(label, jnz.getRegister(), jnz.getOtherLabel());
+	}
+
+	/**
+	 * Removes the instructions writing a register that is not read before it is written again or the program ends.
+	 * The liveness of the registers is a bit set per block, computed over the lowered blocks until it is stable;
+	 * removing instructions may make others dead, so the two steps are repeated until nothing is removed.
+	 */
+	private static void eliminateDeadStores(List<Block> blocks, List<List<Instruction>> code, Labels labels) {
+		int count = blocks.size();
+		Map<Integer, Integer> indexOfStart = new HashMap<>();
+		for (int i = 0; i < count; i++)
+			indexOfStart.put(blocks.get(i).getStart(), i);
+		// the block each block jumps to, EXIT for the end of the program, or NONE if it does not jump
+		int[] branch = new int[count];
+		for (int i = 0; i < count; i++) {
+			List<Instruction> instructions = code.get(i);
+			branch[i] = NONE;
+			if (!instructions.isEmpty() && instructions.get(instructions.size() - 1) instanceof JnzInstruction jnz)
+				branch[i] = indexOfStart.getOrDefault(labels.getAddress(jnz.getOtherLabel()), EXIT);
+		}
+
+		int[] liveIn = new int[count];
+		boolean removed = true;
+		while (removed) {
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (int i = count - 1; i >= 0; i--) {
+					int live = liveOut(i, branch, liveIn);
+					List<Instruction> instructions = code.get(i);
+					for (int j = instructions.size() - 1; j >= 0; j--)
+						live = (live & ~defined(instructions.get(j))) | used(instructions.get(j));
+					if (live != liveIn[i]) {
+						liveIn[i] = live;
+						changed = true;
+					}
+				}
+			}
+
+			removed = false;
+			for (int i = 0; i < count; i++) {
+				int live = liveOut(i, branch, liveIn);
+				List<Instruction> instructions = code.get(i);
+				for (int j = instructions.size() - 1; j >= 0; j--) {
+					Instruction ins = instructions.get(j);
+					int defined = defined(ins);
+					if (defined != 0 && (live & defined) == 0 && !(ins instanceof DivInstruction)) {
+						instructions.remove(j);
+						removed = true;
+						continue;
+					}
+					live = (live & ~defined) | used(ins);
+				}
+			}
+		}
+	}
+
+	private static int liveOut(int block, int[] branch, int[] liveIn) {
+		int live = (block + 1 < liveIn.length) ? liveIn[block + 1] : ALL_REGISTERS;
+		if (branch[block] != NONE)
+			live |= (branch[block] == EXIT) ? ALL_REGISTERS : liveIn[branch[block]];
+		return live;
+	}
+
+	private static int defined(Instruction ins) {
+		if (ins instanceof OutInstruction || ins instanceof JnzInstruction)
+			return 0;
+		return bit(ControlFlowGraph.register(ins));
+	}
+
+	private static int used(Instruction ins) {
+		if (ins instanceof MovInstruction)
+			return 0;
+		// a division may fail, and the registers are observed when the program fails
+		if (ins instanceof DivInstruction)
+			return ALL_REGISTERS;
+		RegisterName source = ControlFlowGraph.source(ins);
+		return bit(ControlFlowGraph.register(ins)) | ((source == null) ? 0 : bit(source));
+	}
+
+	private static int bit(RegisterName register) {
+		return 1 << Registers.indexOf(register);
+	}
+}
@@ -0,0 +1,72 @@
+package sml.ir;
+
+import sml.Instruction;
+
+/**
+ * An instruction of a basic block, with the SSA values it reads and defines.
+ */
+public final class Node {
+
+	private final Instruction instruction;
+
+	private final Value previous;
+
+	private final Value source;
+
+	private final Value result;
+
+	/**
+	 * @param instruction the instruction
+	 * @param previous the value of the register written or tested by the instruction before it runs
+	 * @param source the value of the source register of an arithmetic instruction, or null
+	 * @param result the value defined by the instruction, or null
+	 */
+	Node(Instruction instruction, Value previous, Value source, Value result) {
+		this.instruction = instruction;
+		this.previous = previous;
+		this.source = source;
+		this.result = result;
+	}
+
+	public Instruction getInstruction() {
+		return instruction;
+	}
+
+	/**
+	 * Returns the value of the register written, printed or tested by the instruction, before it runs.
+	 *
+	 * @return the value of the register
+	 */
+	public Value getPrevious() {
+		return previous;
+	}
+
+	/**
+	 * Returns the value of the source register of an arithmetic instruction.
+	 *
+	 * @return the value, or {@code null} if the instruction is not arithmetic
+	 */
+	public Value getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the value defined by the instruction.
+	 *
+	 * @return the value, or {@code null} for {@code out} and {@code jnz}
+	 */
+	public Value getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns a string representation of the node in the format "result = instruction".
+	 *
+	 * @return a string representation of the node
+	 */
+	@Override
+	public String toString() {
+		String operands = (source == null) ? "" : " [" + previous + ", " + source + "]";
+		return (result == null) ? instruction + " [" + previous + "]" : result + " = " + instruction + operands;
+	}
+}
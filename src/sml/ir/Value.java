@@ -0,0 +1,87 @@
+package sml.ir;
+
+import sml.RegisterName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An SSA value: the content of one register between one definition and the next.
+ * <p>
+ * A value is defined once, either on entry to the program, by a phi at the start of a block where control flow
+ * merges, or by an instruction.
+ */
+public final class Value {
+
+	/** How a value is defined. */
+	public enum Kind {
+		/** The content of the register when the program starts. */
+		ENTRY,
+		/** The merge of the values reaching a block from its predecessors. */
+		PHI,
+		/** The result of an instruction. */
+		INSTRUCTION
+	}
+
+	private final int id;
+
+	private final RegisterName register;
+
+	private final Kind kind;
+
+	private final Block block;
+
+	private final List<Value> operands = new ArrayList<>();
+
+	Value(int id, RegisterName register, Kind kind, Block block) {
+		this.id = id;
+		this.register = register;
+		this.kind = kind;
+		this.block = block;
+	}
+
+	/**
+	 * Returns the number of the value, unique within its graph.
+	 *
+	 * @return the number of the value
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public RegisterName getRegister() {
+		return register;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the block defining the value.
+	 *
+	 * @return the block, or {@code null} for an entry value
+	 */
+	public Block getBlock() {
+		return block;
+	}
+
+	/**
+	 * Returns the operands of a phi, one for each predecessor of its block in the same order.
+	 *
+	 * @return the operands, empty unless the value is a phi
+	 */
+	public List<Value> getOperands() {
+		return operands;
+	}
+
+	/**
+	 * Returns a string representation of the value in the format "register.id".
+	 *
+	 * @return a string representation of the value
+	 */
+	@Override
+	public String toString() {
+		return register + "." + id;
+	}
+}
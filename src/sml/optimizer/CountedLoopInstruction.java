@@ -0,0 +1,278 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.JnzInstruction;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The closing {@code jnz} of a counted loop, evaluating all the remaining iterations of the loop at once.
+ * <p>
+ * The body of the loop is made of {@code mov}, {@code add}, {@code sub} and {@code mul} instructions, and the counter
+ * tested by the {@code jnz} changes by a loop-invariant amount on every iteration. Integer arithmetic wraps around, so
+ * one iteration is an affine map of the registers written by the body modulo 2<sup>32</sup>: the number of
+ * remaining iterations is the solution of a linear congruence, and their effect is a power of the matrix of the map,
+ * computed by repeated squaring. When the loop would never end the instruction jumps back like a {@code jnz}, so
+ * that the program behaves exactly as before.
+ */
+public final class CountedLoopInstruction extends Instruction {
+
+	/** The opcode of the instruction. */
+	public static final String OP_CODE = "loop";
+
+	private static final int UNLINKED = -1;
+
+	private static final int MOV = -1;
+
+	/** Below this number of iterations, the iterations are applied one at a time rather than by squaring. */
+	private static final long SQUARING_THRESHOLD = 64;
+
+	private final RegisterName register;
+
+	private final String otherLabel;
+
+	private final int counterIndex;
+
+	/** The body: for each instruction, the ordinal of its operation or MOV, its result, and its source or value. */
+	private final int[] operations;
+
+	private final int[] results;
+
+	private final int[] sources;
+
+	/** The registers written by the body, in the order of the rows of the matrix. */
+	private final int[] written;
+
+	/** The row of the matrix of every register written by the body, or -1. */
+	private final int[] rows;
+
+	/** The address of the instruction with the other label, or {@code UNLINKED} before the program is linked. */
+	private final int target;
+
+	/**
+	 * Constructs the instruction closing a counted loop. The loop must have been checked by {@link LoopEvaluator}.
+	 *
+	 * @param label the label of the {@code jnz} instruction, or null if none
+	 * @param register the register tested by the {@code jnz} instruction
+	 * @param otherLabel the label at the head of the loop
+	 * @param operations the operations of the body, as ordinals of {@link Operation}, or -1 for {@code mov}
+	 * @param results the result registers of the body
+	 * @param sources the source registers of the body, or the values of its {@code mov} instructions
+	 */
+	CountedLoopInstruction(String label, RegisterName register, String otherLabel,
+						   int[] operations, int[] results, int[] sources) {
+		this(label, register, otherLabel, operations, results, sources, UNLINKED);
+	}
+
+	private CountedLoopInstruction(String label, RegisterName register, String otherLabel,
+								   int[] operations, int[] results, int[] sources, int target) {
+		super(label, OP_CODE);
+		this.register = register;
+		this.otherLabel = otherLabel;
+		this.counterIndex = Registers.indexOf(register);
+		this.operations = operations;
+		this.results = results;
+		this.sources = sources;
+		this.rows = new int[Registers.COUNT];
+		Arrays.fill(rows, -1);
+		int count = 0;
+		for (int result : results) {
+			if (rows[result] < 0)
+				rows[result] = count++;
+		}
+		this.written = new int[count];
+		for (int index = 0; index < Registers.COUNT; index++) {
+			if (rows[index] >= 0)
+				written[rows[index]] = index;
+		}
+		this.target = target;
+	}
+
+	/**
+	 * Runs the remaining iterations of the loop, whose body has just run once.
+	 *
+	 * @param m the Machine object on which to execute the instruction
+	 * @return the normal program counter update once the loop is over, or the address of the head of the loop if the
+	 * loop never ends
+	 */
+	@Override
+	public int execute(Machine m) {
+		Registers registers = m.getRegisters();
+		int counter = registers.get(counterIndex);
+		if (counter == 0) return NORMAL_PROGRAM_COUNTER_UPDATE;
+
+		int[][] matrix = matrix(registers);
+		long iterations = iterations(counter, matrix[rows[counterIndex]][written.length]);
+		if (iterations < 0)
+			return (target != UNLINKED) ? target : m.getLabels().getAddress(otherLabel);
+
+		int[] state = new int[written.length + 1];
+		for (int row = 0; row < written.length; row++)
+			state[row] = registers.get(written[row]);
+		state[written.length] = 1;
+		if (iterations < SQUARING_THRESHOLD) {
+			for (long i = 0; i < iterations; i++)
+				state = apply(matrix, state);
+		} else {
+			state = apply(power(matrix, iterations), state);
+		}
+		for (int row = 0; row < written.length; row++)
+			registers.set(written[row], state[row]);
+		return NORMAL_PROGRAM_COUNTER_UPDATE;
+	}
+
+	/**
+	 * Returns the matrix of one iteration of the body, for the current values of the loop-invariant registers. The
+	 * last row and column stand for the constant 1.
+	 */
+	private int[][] matrix(Registers registers) {
+		int size = written.length + 1;
+		int[][] matrix = new int[size][size];
+		for (int row = 0; row < size; row++)
+			matrix[row][row] = 1;
+
+		for (int i = 0; i < operations.length; i++) {
+			int[] result = matrix[rows[results[i]]];
+			if (operations[i] == MOV) {
+				Arrays.fill(result, 0);
+				result[written.length] = sources[i];
+				continue;
+			}
+			int[] source = (rows[sources[i]] >= 0) ? matrix[rows[sources[i]]].clone() : constant(size, registers.get(sources[i]));
+			switch (Operation.values()[operations[i]]) {
+				case ADD -> { for (int j = 0; j < size; j++) result[j] += source[j]; }
+				case SUB -> { for (int j = 0; j < size; j++) result[j] -= source[j]; }
+				case MUL -> {
+					if (!isConstant(source) && !isConstant(result))
+						throw new IllegalStateException("Non-linear multiplication in loop body");
+					int[] factor = isConstant(source) ? source : result;
+					int[] other = (factor == source) ? result : source;
+					int value = factor[written.length];
+					int[] product = new int[size];
+					for (int j = 0; j < size; j++) product[j] = other[j] * value;
+					System.arraycopy(product, 0, result, 0, size);
+				}
+				default -> throw new IllegalStateException("Unexpected operation in loop body: " + operations[i]);
+			}
+		}
+		return matrix;
+	}
+
+	private static int[] constant(int size, int value) {
+		int[] row = new int[size];
+		row[size - 1] = value;
+		return row;
+	}
+
+	private static boolean isConstant(int[] row) {
+		for (int j = 0; j < row.length - 1; j++) {
+			if (row[j] != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of iterations after which the counter becomes zero, if it changes by a step on every
+	 * iteration: the least positive solution of {@code counter + iterations * step = 0} modulo 2<sup>32</sup>.
+	 *
+	 * @return the number of iterations, or -1 if the counter never becomes zero
+	 */
+	static long iterations(int counter, int step) {
+		if (step == 0) return -1;
+		int shift = Integer.numberOfTrailingZeros(step);
+		long negated = -(long) counter & 0xFFFF_FFFFL;
+		if ((negated & ((1L << shift) - 1)) != 0) return -1;
+		long modulus = 1L << (32 - shift);
+		long odd = (step & 0xFFFF_FFFFL) >>> shift;
+		long inverse = odd;
+		for (int i = 0; i < 5; i++)
+			inverse *= 2 - odd * inverse;
+		long iterations = ((negated >>> shift) * inverse) & (modulus - 1);
+		return (iterations == 0) ? modulus : iterations;
+	}
+
+	private static int[] apply(int[][] matrix, int[] state) {
+		int[] next = new int[state.length];
+		for (int row = 0; row < state.length; row++) {
+			int value = 0;
+			for (int j = 0; j < state.length; j++)
+				value += matrix[row][j] * state[j];
+			next[row] = value;
+		}
+		return next;
+	}
+
+	private static int[][] power(int[][] matrix, long exponent) {
+		int size = matrix.length;
+		int[][] result = new int[size][size];
+		for (int row = 0; row < size; row++)
+			result[row][row] = 1;
+		while (exponent > 0) {
+			if ((exponent & 1) != 0)
+				result = multiply(matrix, result);
+			matrix = multiply(matrix, matrix);
+			exponent >>>= 1;
+		}
+		return result;
+	}
+
+	private static int[][] multiply(int[][] a, int[][] b) {
+		int size = a.length;
+		int[][] product = new int[size][size];
+		for (int i = 0; i < size; i++) {
+			for (int k = 0; k < size; k++) {
+				int value = a[i][k];
+				if (value == 0) continue;
+				for (int j = 0; j < size; j++)
+					product[i][j] += value * b[k][j];
+			}
+		}
+		return product;
+	}
+
+	@Override
+	public Instruction link(Labels labels) {
+		if (!labels.contains(otherLabel))
+			throw new IllegalArgumentException("Label '" + otherLabel + "' in '" + this + "' does not exist");
+		return new CountedLoopInstruction(label, register, otherLabel, operations, results, sources,
+				labels.getAddress(otherLabel));
+	}
+
+	public RegisterName getRegister() {
+		return register;
+	}
+
+	public String getOtherLabel() {
+		return otherLabel;
+	}
+
+	/**
+	 * Returns a string representation of the instruction in the format "label: loop register other_label", which
+	 * reads like the {@code jnz} it replaces.
+	 *
+	 * @return a string representation of the instruction
+	 */
+	@Override
+	public String toString() {
+		return getLabelString() + getOpcode() + " " + register + " " + otherLabel;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CountedLoopInstruction that)) return false;
+		return Objects.equals(register, that.register) && Objects.equals(otherLabel, that.otherLabel)
+				&& Arrays.equals(operations, that.operations) && Arrays.equals(results, that.results)
+				&& Arrays.equals(sources, that.sources) && Objects.equals(label, that.label);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(register, otherLabel, Arrays.hashCode(operations));
+	}
+}
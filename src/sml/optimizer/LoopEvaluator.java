@@ -0,0 +1,127 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+
+import java.util.List;
+
+/**
+ * An analysis finding the counted loops of a program and replacing their closing {@code jnz} by a
+ * {@link CountedLoopInstruction}, which evaluates all the remaining iterations of the loop in closed form once the
+ * body has run for the first time.
+ * <p>
+ * A loop is a {@code jnz} jumping back to a label at or before it. It is counted when
+ * <ul>
+ *     <li>its body, from the label to the {@code jnz}, contains only {@code mov}, {@code add}, {@code sub} and
+ *     {@code mul} instructions, so that it cannot print, fail or jump;</li>
+ *     <li>the register tested by the {@code jnz} is written only by {@code add} or {@code sub} instructions whose
+ *     source is not written in the body;</li>
+ *     <li>every multiplication has at least one operand whose value does not depend on the registers at the start
+ *     of the iteration, so that an iteration is an affine map of the registers.</li>
+ * </ul>
+ * Other loops are left unchanged. The analysis should run before the {@link PeepholeOptimizer}, which fuses loop
+ * bodies into superinstructions it does not look into.
+ */
+public final class LoopEvaluator {
+
+	private LoopEvaluator() {
+	}
+
+	/**
+	 * Replaces the counted loops of the program of a machine in place.
+	 *
+	 * @param machine the machine, which must own its program
+	 * @return the number of loops replaced
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	public static int optimize(Machine machine) {
+		return optimize(machine.getProgram(), machine.getLabels());
+	}
+
+	/**
+	 * Replaces the counted loops of a program in place. Addresses and labels do not change.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @return the number of loops replaced
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	public static int optimize(List<Instruction> program, Labels labels) {
+		int replaced = 0;
+		for (int address = 0; address < program.size(); address++) {
+			if (!(program.get(address) instanceof JnzInstruction jnz))
+				continue;
+			if (!labels.contains(jnz.getOtherLabel()))
+				throw new IllegalArgumentException("Label '" + jnz.getOtherLabel() + "' in '" + jnz + "' does not exist");
+			int head = labels.getAddress(jnz.getOtherLabel());
+			if (head < 0 || head > address)
+				continue;
+			CountedLoopInstruction loop = counted(program.subList(head, address), jnz);
+			if (loop != null) {
+				program.set(address, loop.link(labels));
+				replaced++;
+			}
+		}
+		return replaced;
+	}
+
+	/**
+	 * Returns the instruction evaluating a loop in closed form, or {@code null} if the loop is not counted.
+	 */
+	private static CountedLoopInstruction counted(List<Instruction> body, JnzInstruction jnz) {
+		int size = body.size();
+		int[] operations = new int[size];
+		int[] results = new int[size];
+		int[] sources = new int[size];
+		boolean[] writtenInBody = new boolean[Registers.COUNT];
+		for (int i = 0; i < size; i++) {
+			Instruction ins = body.get(i);
+			if (ins instanceof MovInstruction mov) {
+				operations[i] = -1;
+				results[i] = Registers.indexOf(mov.getRegister());
+				sources[i] = mov.getValue();
+			} else {
+				Operation.Arithmetic arithmetic = Operation.of(ins);
+				if (arithmetic == null || arithmetic.operation() == Operation.DIV)
+					return null;
+				operations[i] = arithmetic.operation().ordinal();
+				results[i] = Registers.indexOf(arithmetic.result());
+				sources[i] = Registers.indexOf(arithmetic.source());
+			}
+			writtenInBody[results[i]] = true;
+		}
+
+		int counter = Registers.indexOf(jnz.getRegister());
+		if (!writtenInBody[counter])
+			return null;
+		// whether the value of each register at this point of the body is independent of the start of the iteration
+		boolean[] constant = new boolean[Registers.COUNT];
+		for (int index = 0; index < Registers.COUNT; index++)
+			constant[index] = !writtenInBody[index];
+		for (int i = 0; i < size; i++) {
+			int result = results[i], source = sources[i];
+			if (operations[i] == -1) {
+				if (result == counter) return null;
+				constant[result] = true;
+				continue;
+			}
+			Operation operation = Operation.values()[operations[i]];
+			if (result == counter && (operation == Operation.MUL || writtenInBody[source]))
+				return null;
+			if (operation == Operation.MUL) {
+				if (!constant[source] && !constant[result])
+					return null;
+				constant[result] = constant[result] && constant[source];
+			} else {
+				constant[result] = constant[result] && constant[source];
+			}
+		}
+		RegisterName register = jnz.getRegister();
+		return new CountedLoopInstruction(jnz.getLabel(), register, jnz.getOtherLabel(), operations, results, sources);
+	}
+}
@@ -0,0 +1,129 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.JnzInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.Objects;
+
+/**
+ * A superinstruction running the body of a one-instruction counted loop, such as the factorial loop
+ * {@code mul EBX EAX; sub EAX ECX; jnz EAX f3}: an arithmetic instruction followed by a decrement-and-branch.
+ */
+public final class LoopStepInstruction extends Instruction {
+
+	private static final int UNLINKED = -1;
+
+	private final Operation operation;
+
+	private final RegisterName result;
+
+	private final RegisterName source;
+
+	private final RegisterName counter;
+
+	private final RegisterName step;
+
+	private final String otherLabel;
+
+	private final int resultIndex;
+
+	private final int sourceIndex;
+
+	private final int counterIndex;
+
+	private final int stepIndex;
+
+	/** The address of the instruction with the other label, or {@code UNLINKED} before the program is linked. */
+	private final int target;
+
+	/**
+	 * Constructs the superinstruction from the operands of the instructions it fuses.
+	 *
+	 * @param label the label of the arithmetic instruction, or null if none
+	 * @param operation the operation of the arithmetic instruction
+	 * @param result the result register of the arithmetic instruction
+	 * @param source the source register of the arithmetic instruction
+	 * @param counter the register decremented and tested
+	 * @param step the register holding the decrement
+	 * @param otherLabel the label of the instruction to jump to
+	 */
+	LoopStepInstruction(String label, Operation operation, RegisterName result, RegisterName source,
+						RegisterName counter, RegisterName step, String otherLabel) {
+		this(label, operation, result, source, counter, step, otherLabel, UNLINKED);
+	}
+
+	private LoopStepInstruction(String label, Operation operation, RegisterName result, RegisterName source,
+								RegisterName counter, RegisterName step, String otherLabel, int target) {
+		super(label, operation.opcode() + SubInstruction.OP_CODE + JnzInstruction.OP_CODE);
+		this.operation = operation;
+		this.result = result;
+		this.source = source;
+		this.counter = counter;
+		this.step = step;
+		this.otherLabel = otherLabel;
+		this.resultIndex = Registers.indexOf(result);
+		this.sourceIndex = Registers.indexOf(source);
+		this.counterIndex = Registers.indexOf(counter);
+		this.stepIndex = Registers.indexOf(step);
+		this.target = target;
+	}
+
+	@Override
+	public int execute(Machine m) {
+		Registers registers = m.getRegisters();
+		registers.set(resultIndex, operation.apply(registers.get(resultIndex), registers.get(sourceIndex)));
+		int value = registers.get(counterIndex) - registers.get(stepIndex);
+		registers.set(counterIndex, value);
+		if (value == 0) return NORMAL_PROGRAM_COUNTER_UPDATE;
+		return (target != UNLINKED) ? target : m.getLabels().getAddress(otherLabel);
+	}
+
+	@Override
+	public Instruction link(Labels labels) {
+		if (!labels.contains(otherLabel))
+			throw new IllegalArgumentException("Label '" + otherLabel + "' in '" + this + "' does not exist");
+		return new LoopStepInstruction(label, operation, result, source, counter, step, otherLabel,
+				labels.getAddress(otherLabel));
+	}
+
+	public RegisterName getCounter() {
+		return counter;
+	}
+
+	public String getOtherLabel() {
+		return otherLabel;
+	}
+
+	/**
+	 * Returns the instructions fused, in the format
+	 * "label: opcode result source; sub counter step; jnz counter other_label".
+	 *
+	 * @return a string representation of the superinstruction
+	 */
+	@Override
+	public String toString() {
+		return getLabelString() + operation.opcode() + " " + result + " " + source + "; "
+				+ SubInstruction.OP_CODE + " " + counter + " " + step + "; "
+				+ JnzInstruction.OP_CODE + " " + counter + " " + otherLabel;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof LoopStepInstruction that)) return false;
+		return operation == that.operation && Objects.equals(result, that.result)
+				&& Objects.equals(source, that.source) && Objects.equals(counter, that.counter)
+				&& Objects.equals(step, that.step) && Objects.equals(otherLabel, that.otherLabel)
+				&& Objects.equals(label, that.label);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(operation, result, source, counter, step, otherLabel);
+	}
+}
@@ -0,0 +1,96 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.AddInstruction;
+import sml.instruction.MulInstruction;
+
+import java.util.Objects;
+
+/**
+ * A superinstruction multiplying a register and adding the product to another, fusing {@code mul P F} with the
+ * {@code add A P} following it.
+ */
+public final class MultiplyAccumulateInstruction extends Instruction {
+
+	/** The opcode of the superinstruction. */
+	public static final String OP_CODE = MulInstruction.OP_CODE + AddInstruction.OP_CODE;
+
+	private final RegisterName product;
+
+	private final RegisterName factor;
+
+	private final RegisterName accumulator;
+
+	private final int productIndex;
+
+	private final int factorIndex;
+
+	private final int accumulatorIndex;
+
+	/**
+	 * Constructs the superinstruction from the operands of the instructions it fuses.
+	 *
+	 * @param label the label of the {@code mul} instruction, or null if none
+	 * @param product the register multiplied
+	 * @param factor the register holding the factor
+	 * @param accumulator the register the product is added to
+	 */
+	public MultiplyAccumulateInstruction(String label, RegisterName product, RegisterName factor,
+										 RegisterName accumulator) {
+		super(label, OP_CODE);
+		this.product = product;
+		this.factor = factor;
+		this.accumulator = accumulator;
+		this.productIndex = Registers.indexOf(product);
+		this.factorIndex = Registers.indexOf(factor);
+		this.accumulatorIndex = Registers.indexOf(accumulator);
+	}
+
+	@Override
+	public int execute(Machine m) {
+		Registers registers = m.getRegisters();
+		int value = registers.get(productIndex) * registers.get(factorIndex);
+		registers.set(productIndex, value);
+		registers.set(accumulatorIndex, registers.get(accumulatorIndex) + value);
+		return NORMAL_PROGRAM_COUNTER_UPDATE;
+	}
+
+	public RegisterName getProduct() {
+		return product;
+	}
+
+	public RegisterName getFactor() {
+		return factor;
+	}
+
+	public RegisterName getAccumulator() {
+		return accumulator;
+	}
+
+	/**
+	 * Returns the instructions fused, in the format "label: mul product factor; add accumulator product".
+	 *
+	 * @return a string representation of the superinstruction
+	 */
+	@Override
+	public String toString() {
+		return getLabelString() + MulInstruction.OP_CODE + " " + product + " " + factor + "; "
+				+ AddInstruction.OP_CODE + " " + accumulator + " " + product;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof MultiplyAccumulateInstruction that)) return false;
+		return Objects.equals(product, that.product) && Objects.equals(factor, that.factor)
+				&& Objects.equals(accumulator, that.accumulator) && Objects.equals(label, that.label);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(product, factor, accumulator);
+	}
+}
@@ -0,0 +1,69 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.RegisterName;
+import sml.instruction.AddInstruction;
+import sml.instruction.DivInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.SubInstruction;
+
+/**
+ * The arithmetic operations of the machine language, with a uniform view of the instructions that perform them.
+ */
+enum Operation {
+	ADD(AddInstruction.OP_CODE),
+	SUB(SubInstruction.OP_CODE),
+	MUL(MulInstruction.OP_CODE),
+	DIV(DivInstruction.OP_CODE);
+
+	/**
+	 * An arithmetic instruction, seen as its operation and its operands.
+	 *
+	 * @param operation the operation
+	 * @param result the register holding the first operand and receiving the result
+	 * @param source the register holding the second operand
+	 */
+	record Arithmetic(Operation operation, RegisterName result, RegisterName source) {
+	}
+
+	private final String opcode;
+
+	Operation(String opcode) {
+		this.opcode = opcode;
+	}
+
+	/**
+	 * Returns the opcode of the instruction performing the operation.
+	 */
+	String opcode() {
+		return opcode;
+	}
+
+	/**
+	 * Applies the operation.
+	 *
+	 * @throws ArithmeticException if the operation is a division by zero
+	 */
+	int apply(int value1, int value2) {
+		return switch (this) {
+			case ADD -> value1 + value2;
+			case SUB -> value1 - value2;
+			case MUL -> value1 * value2;
+			case DIV -> value1 / value2;
+		};
+	}
+
+	/**
+	 * Returns the operation and the operands of an arithmetic instruction.
+	 *
+	 * @param ins the instruction
+	 * @return the arithmetic view of the instruction, or {@code null} if it is not an arithmetic instruction
+	 */
+	static Arithmetic of(Instruction ins) {
+		if (ins instanceof AddInstruction add) return new Arithmetic(ADD, add.getResult(), add.getSource());
+		if (ins instanceof SubInstruction sub) return new Arithmetic(SUB, sub.getResult(), sub.getSource());
+		if (ins instanceof MulInstruction mul) return new Arithmetic(MUL, mul.getResult(), mul.getSource());
+		if (ins instanceof DivInstruction div) return new Arithmetic(DIV, div.getResult(), div.getSource());
+		return null;
+	}
+}
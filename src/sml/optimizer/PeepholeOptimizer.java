@@ -0,0 +1,254 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.OutInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A peephole optimizer rewriting a program into a shorter one with the same observable behaviour: the same final
+ * registers, the same {@code out} values in the same order, and the same failures.
+ * <p>
+ * The optimizer works within the straight-line runs of a program, which begin at the targets of its jumps. It
+ * <ul>
+ *     <li>folds arithmetic on registers holding constants set by {@code mov} into a {@code mov} of the result;</li>
+ *     <li>removes a {@code mov} whose value is overwritten by another {@code mov} before it is read;</li>
+ *     <li>fuses common sequences into superinstructions: {@link LoopStepInstruction},
+ *     {@link SubJnzInstruction} and {@link MultiplyAccumulateInstruction}.</li>
+ * </ul>
+ * Loops replaced by the {@link LoopEvaluator} are kept, with their bodies optimized like any other code.
+ * Jump targets are never removed or fused into a preceding instruction, so their labels are kept; other labels are
+ * dropped with the instructions they label. The optimized program is linked.
+ * <p>
+ * Superinstructions are run by the interpreter of {@link Machine} and by {@link sml.compiler.ClosureEngine}; the
+ * engines compiling programs, which reach the same effect by other means, expect unoptimized programs.
+ */
+public final class PeepholeOptimizer {
+
+	private PeepholeOptimizer() {
+	}
+
+	/**
+	 * Optimizes the program of a machine in place.
+	 *
+	 * @param machine the machine, which must own its program
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 * @throws UnsupportedOperationException if the machine runs a shared program image
+	 */
+	public static void optimize(Machine machine) {
+		optimize(machine.getProgram(), machine.getLabels());
+	}
+
+	/**
+	 * Optimizes a program in place, replacing its instructions and its labels.
+	 *
+	 * @param program the instructions of the program
+	 * @param labels the labels of the program
+	 * @throws IllegalArgumentException if the program refers to a label that does not exist
+	 */
+	public static void optimize(List<Instruction> program, Labels labels) {
+		Instruction[] code = program.toArray(new Instruction[0]);
+		Map<String, Integer> jumps = new HashMap<>();
+		boolean[] targets = targets(code, labels, jumps);
+		fold(code, targets);
+		boolean[] removed = deadMoves(code, targets);
+
+		List<Instruction> optimized = new ArrayList<>(code.length);
+		int[] relocated = new int[code.length + 1];
+		for (int address = 0; address < code.length; ) {
+			if (removed[address]) {
+				address++;
+				continue;
+			}
+			relocated[address] = optimized.size();
+			int length = fuse(code, targets, removed, address, optimized);
+			address = next(removed, address, length);
+		}
+		relocated[code.length] = optimized.size();
+
+		labels.reset();
+		for (int address = 0; address < optimized.size(); address++) {
+			String label = optimized.get(address).getLabel();
+			if (label != null)
+				labels.addLabel(label, address);
+		}
+		for (Map.Entry<String, Integer> jump : jumps.entrySet()) {
+			if (!labels.contains(jump.getKey()))
+				labels.addLabel(jump.getKey(), relocated[jump.getValue()]);
+		}
+		program.clear();
+		for (Instruction ins : optimized)
+			program.add(ins.link(labels));
+	}
+
+	/**
+	 * Marks the addresses that are the target of a jump, recording the address of every label jumped to.
+	 */
+	private static boolean[] targets(Instruction[] code, Labels labels, Map<String, Integer> jumps) {
+		boolean[] targets = new boolean[code.length];
+		for (int address = 0; address < code.length; address++) {
+			Instruction ins = code[address];
+			String otherLabel = (ins instanceof JnzInstruction jnz) ? jnz.getOtherLabel()
+					: (ins instanceof CountedLoopInstruction loop) ? loop.getOtherLabel() : null;
+			if (otherLabel != null) {
+				if (!labels.contains(otherLabel))
+					throw new IllegalArgumentException("Label '" + otherLabel + "' in '" + ins + "' does not exist");
+				int target = labels.getAddress(otherLabel);
+				if (target < 0 || target > code.length)
+					throw new IllegalArgumentException("Label '" + otherLabel + "' in '" + ins + "' is out of range");
+				jumps.put(otherLabel, target);
+				if (target < code.length)
+					targets[target] = true;
+			} else if (Operation.of(ins) == null && !(ins instanceof MovInstruction) && !(ins instanceof OutInstruction)) {
+				// an instruction of unknown behaviour may jump anywhere, so nothing is optimized
+				Arrays.fill(targets, true);
+			}
+		}
+		return targets;
+	}
+
+
+	/**
+	 * Replaces arithmetic on registers of known value by a {@code mov} of the result. The values of registers are
+	 * known from the {@code mov} instructions earlier in the same straight-line run.
+	 */
+	private static void fold(Instruction[] code, boolean[] targets) {
+		int[] values = new int[Registers.COUNT];
+		boolean[] known = new boolean[Registers.COUNT];
+		for (int address = 0; address < code.length; address++) {
+			if (targets[address])
+				Arrays.fill(known, false);
+			Instruction ins = code[address];
+			if (ins instanceof MovInstruction mov) {
+				int register = Registers.indexOf(mov.getRegister());
+				values[register] = mov.getValue();
+				known[register] = true;
+				continue;
+			}
+			Operation.Arithmetic arithmetic = Operation.of(ins);
+			if (arithmetic == null) {
+				if (ins instanceof CountedLoopInstruction)
+					Arrays.fill(known, false);
+				continue;
+			}
+			int result = Registers.indexOf(arithmetic.result()), source = Registers.indexOf(arithmetic.source());
+			boolean foldable = known[result] && known[source]
+					&& !(arithmetic.operation() == Operation.DIV && values[source] == 0);
+			if (foldable) {
+				values[result] = arithmetic.operation().apply(values[result], values[source]);
+				code[address] = new MovInstruction(ins.getLabel(), arithmetic.result(), values[result]);
+			} else {
+				known[result] = false;
+			}
+		}
+	}
+
+	/**
+	 * Marks the {@code mov} instructions whose value is overwritten by a later {@code mov} of the same straight-line
+	 * run before it is read. The search stops at anything that may observe the register: a read, a jump, a jump
+	 * target, or a division, which may fail and leave the registers as they are.
+	 */
+	private static boolean[] deadMoves(Instruction[] code, boolean[] targets) {
+		boolean[] removed = new boolean[code.length];
+		for (int address = 0; address < code.length; address++) {
+			if (!(code[address] instanceof MovInstruction mov) || targets[address])
+				continue;
+			RegisterName register = mov.getRegister();
+			for (int next = address + 1; next < code.length && !targets[next]; next++) {
+				Instruction ins = code[next];
+				if (ins instanceof MovInstruction other) {
+					if (other.getRegister() == register) {
+						removed[address] = true;
+						break;
+					}
+					continue;
+				}
+				if (ins instanceof OutInstruction out && out.getRegister() != register)
+					continue;
+				Operation.Arithmetic arithmetic = Operation.of(ins);
+				if (arithmetic != null && !(ins instanceof DivInstruction)
+						&& arithmetic.result() != register && arithmetic.source() != register)
+					continue;
+				break;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Appends the superinstruction beginning at an address, or the instruction at the address if no sequence can be
+	 * fused there.
+	 *
+	 * @return the number of instructions fused
+	 */
+	private static int fuse(Instruction[] code, boolean[] targets, boolean[] removed, int address,
+							List<Instruction> optimized) {
+		Instruction first = code[address];
+		Operation.Arithmetic arithmetic = Operation.of(first);
+		if (arithmetic == null) {
+			optimized.add(first);
+			return 1;
+		}
+		Instruction second = following(code, targets, removed, address, 1);
+		Instruction third = following(code, targets, removed, address, 2);
+
+		Operation.Arithmetic decrement = Operation.of(second);
+		if (decrement != null && decrement.operation() == Operation.SUB
+				&& third instanceof JnzInstruction jnz && jnz.getRegister() == decrement.result()) {
+			optimized.add(new LoopStepInstruction(first.getLabel(), arithmetic.operation(), arithmetic.result(),
+					arithmetic.source(), decrement.result(), decrement.source(), jnz.getOtherLabel()));
+			return 3;
+		}
+		if (arithmetic.operation() == Operation.SUB
+				&& second instanceof JnzInstruction jnz && jnz.getRegister() == arithmetic.result()) {
+			optimized.add(new SubJnzInstruction(first.getLabel(), arithmetic.result(), arithmetic.source(),
+					jnz.getOtherLabel()));
+			return 2;
+		}
+		if (arithmetic.operation() == Operation.MUL
+				&& decrement != null && decrement.operation() == Operation.ADD
+				&& decrement.source() == arithmetic.result()) {
+			optimized.add(new MultiplyAccumulateInstruction(first.getLabel(), arithmetic.result(),
+					arithmetic.source(), decrement.result()));
+			return 2;
+		}
+		optimized.add(first);
+		return 1;
+	}
+
+	/**
+	 * Returns the n-th instruction kept after an address, or {@code null} if it is a jump target or there is none.
+	 */
+	private static Instruction following(Instruction[] code, boolean[] targets, boolean[] removed, int address, int n) {
+		int next = next(removed, address, n);
+		for (int skipped = address + 1; skipped <= next && skipped < code.length; skipped++) {
+			if (targets[skipped])
+				return null;
+		}
+		return (next < code.length) ? code[next] : null;
+	}
+
+	/**
+	 * Returns the address of the n-th instruction kept after an address.
+	 */
+	private static int next(boolean[] removed, int address, int n) {
+		int next = address;
+		for (int i = 0; i < n; i++) {
+			next++;
+			while (next < removed.length && removed[next])
+				next++;
+		}
+		return next;
+	}
+}
@@ -0,0 +1,110 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.JnzInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.Objects;
+
+/**
+ * A superinstruction decrementing a register and branching if it is not zero, fusing {@code sub R S} with the
+ * {@code jnz R L} following it.
+ */
+public final class SubJnzInstruction extends Instruction {
+
+	/** The opcode of the superinstruction. */
+	public static final String OP_CODE = SubInstruction.OP_CODE + JnzInstruction.OP_CODE;
+
+	private static final int UNLINKED = -1;
+
+	private final RegisterName result;
+
+	private final RegisterName source;
+
+	private final String otherLabel;
+
+	private final int resultIndex;
+
+	private final int sourceIndex;
+
+	/** The address of the instruction with the other label, or {@code UNLINKED} before the program is linked. */
+	private final int target;
+
+	/**
+	 * Constructs the superinstruction from the operands of the instructions it fuses.
+	 *
+	 * @param label the label of the {@code sub} instruction, or null if none
+	 * @param result the register decremented and tested
+	 * @param source the register holding the decrement
+	 * @param otherLabel the label of the instruction to jump to
+	 */
+	public SubJnzInstruction(String label, RegisterName result, RegisterName source, String otherLabel) {
+		this(label, result, source, otherLabel, UNLINKED);
+	}
+
+	private SubJnzInstruction(String label, RegisterName result, RegisterName source, String otherLabel, int target) {
+		super(label, OP_CODE);
+		this.result = result;
+		this.source = source;
+		this.otherLabel = otherLabel;
+		this.resultIndex = Registers.indexOf(result);
+		this.sourceIndex = Registers.indexOf(source);
+		this.target = target;
+	}
+
+	@Override
+	public int execute(Machine m) {
+		Registers registers = m.getRegisters();
+		int value = registers.get(resultIndex) - registers.get(sourceIndex);
+		registers.set(resultIndex, value);
+		if (value == 0) return NORMAL_PROGRAM_COUNTER_UPDATE;
+		return (target != UNLINKED) ? target : m.getLabels().getAddress(otherLabel);
+	}
+
+	@Override
+	public Instruction link(Labels labels) {
+		if (!labels.contains(otherLabel))
+			throw new IllegalArgumentException("Label '" + otherLabel + "' in '" + this + "' does not exist");
+		return new SubJnzInstruction(label, result, source, otherLabel, labels.getAddress(otherLabel));
+	}
+
+	public RegisterName getResult() {
+		return result;
+	}
+
+	public RegisterName getSource() {
+		return source;
+	}
+
+	public String getOtherLabel() {
+		return otherLabel;
+	}
+
+	/**
+	 * Returns the instructions fused, in the format "label: sub result source; jnz result other_label".
+	 *
+	 * @return a string representation of the superinstruction
+	 */
+	@Override
+	public String toString() {
+		return getLabelString() + SubInstruction.OP_CODE + " " + result + " " + source + "; "
+				+ JnzInstruction.OP_CODE + " " + result + " " + otherLabel;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof SubJnzInstruction that)) return false;
+		return Objects.equals(result, that.result) && Objects.equals(source, that.source)
+				&& Objects.equals(otherLabel, that.otherLabel) && Objects.equals(label, that.label);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(result, source, otherLabel);
+	}
+}
@@ -0,0 +1,130 @@
+package sml.output;
+
+import sml.OutputSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A sink formatting values straight into a reusable byte buffer, one per line, and writing the buffer to a stream
+ * in bulk when it is full or when the sink is flushed.
+ * <p>
+ * Unlike the console sink, printing a value neither takes a lock nor makes a system call. Instances are not
+ * thread-safe.
+ */
+public final class BufferedSink implements OutputSink {
+
+	/** The default size of the buffer, in bytes. */
+	public static final int DEFAULT_CAPACITY = 1 << 13;
+
+	// The longest value, "-2147483648", followed by the longest line separator.
+	private static final int MAX_LINE = 13;
+
+	private final OutputStream out;
+
+	private final byte[] buffer;
+
+	private final byte[] separator;
+
+	private int size;
+
+	/**
+	 * Creates a sink writing to {@link System#out}.
+	 */
+	public BufferedSink() {
+		this(System.out);
+	}
+
+	/**
+	 * Creates a sink writing to a stream.
+	 *
+	 * @param out the stream
+	 */
+	public BufferedSink(OutputStream out) {
+		this(out, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a sink writing to a stream through a buffer of the given size.
+	 *
+	 * @param out the stream
+	 * @param capacity the size of the buffer, in bytes
+	 * @throws IllegalArgumentException if the buffer cannot hold a line
+	 */
+	public BufferedSink(OutputStream out, int capacity) {
+		if (capacity < MAX_LINE)
+			throw new IllegalArgumentException("Buffer too small: " + capacity);
+		this.out = out;
+		this.buffer = new byte[capacity];
+		this.separator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Override
+	public void accept(int value) {
+		if (buffer.length - size < MAX_LINE)
+			drain();
+		size = format(value, buffer, size);
+		for (byte b : separator)
+			buffer[size++] = b;
+	}
+
+	/**
+	 * Writes the buffered lines to the stream and flushes it.
+	 *
+	 * @throws UncheckedIOException if the stream cannot be written
+	 */
+	@Override
+	public void flush() {
+		drain();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void drain() {
+		try {
+			out.write(buffer, 0, size);
+			size = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the decimal digits of a value into a buffer.
+	 *
+	 * @param value the value
+	 * @param buffer the buffer
+	 * @param position the index of the first byte to write
+	 * @return the index following the last byte written
+	 */
+	static int format(int value, byte[] buffer, int position) {
+		if (value == Integer.MIN_VALUE) {
+			byte[] min = "-2147483648".getBytes(StandardCharsets.US_ASCII);
+			System.arraycopy(min, 0, buffer, position, min.length);
+			return position + min.length;
+		}
+		if (value < 0) {
+			buffer[position++] = '-';
+			value = -value;
+		}
+		int end = position + digits(value);
+		int i = end;
+		do {
+			buffer[--i] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		return end;
+	}
+
+	private static int digits(int value) {
+		int digits = 1;
+		for (long limit = 10; limit <= value; limit *= 10)
+			digits++;
+		return digits;
+	}
+}
@@ -0,0 +1,54 @@
+package sml.output;
+
+import sml.OutputSink;
+
+import java.util.Arrays;
+
+/**
+ * A sink keeping the printed values in memory, in the order they were printed.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class CollectingSink implements OutputSink {
+
+	private int[] values = new int[8];
+
+	private int size;
+
+	@Override
+	public void accept(int value) {
+		if (size == values.length)
+			values = Arrays.copyOf(values, size * 2);
+		values[size++] = value;
+	}
+
+	/**
+	 * Returns the number of values printed so far.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the values printed so far.
+	 *
+	 * @return a copy of the values
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Forgets the values printed so far.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
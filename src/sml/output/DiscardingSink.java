@@ -0,0 +1,19 @@
+package sml.output;
+
+import sml.OutputSink;
+
+/**
+ * A sink ignoring every value, so that benchmarks measure the execution of a program and not its output.
+ */
+public final class DiscardingSink implements OutputSink {
+
+	/** The only instance. */
+	public static final DiscardingSink INSTANCE = new DiscardingSink();
+
+	private DiscardingSink() {
+	}
+
+	@Override
+	public void accept(int value) {
+	}
+}
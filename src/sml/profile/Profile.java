@@ -0,0 +1,209 @@
+package sml.profile;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.JnzInstruction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The profile of one execution of a program, recorded by a {@link Profiler}.
+ * <p>
+ * A region of the program begins at a labelled instruction, or at instruction 0, and ends before the next labelled
+ * instruction. A loop is a {@code jnz} jumping backwards; its body runs from the target of the jump to the jump
+ * itself.
+ */
+public final class Profile {
+
+	/** The name of the region before the first label of the program. */
+	public static final String ENTRY = "(entry)";
+
+	/**
+	 * A loop of the program.
+	 *
+	 * @param label the label at the head of the loop
+	 * @param start the address of the head of the loop
+	 * @param end the address of the {@code jnz} closing the loop
+	 * @param iterations the number of times the loop jumped back to its head
+	 * @param executions the number of instructions executed within the body of the loop
+	 */
+	public record Loop(String label, int start, int end, long iterations, long executions) {
+	}
+
+	private final List<Instruction> program;
+
+	private final Labels labels;
+
+	private final long[] counts;
+
+	private final long[] taken;
+
+	private final int[] regionOf;
+
+	private final long[] regionNanos;
+
+	Profile(List<Instruction> program, Labels labels, long[] counts, long[] taken, int[] regionOf, long[] regionNanos) {
+		this.program = program;
+		this.labels = labels;
+		this.counts = counts;
+		this.taken = taken;
+		this.regionOf = regionOf;
+		this.regionNanos = regionNanos;
+	}
+
+	/**
+	 * Maps every address of a program to the index of its region.
+	 */
+	static int[] regions(Instruction[] instructions) {
+		int[] regionOf = new int[instructions.length];
+		int region = 0;
+		for (int address = 0; address < instructions.length; address++) {
+			if (address > 0 && instructions[address].getLabel() != null)
+				region++;
+			regionOf[address] = region;
+		}
+		return regionOf;
+	}
+
+	/**
+	 * Returns the number of executions of the instruction at an address.
+	 *
+	 * @param address the address
+	 * @return the number of executions
+	 */
+	public long count(int address) {
+		return counts[address];
+	}
+
+	/**
+	 * Returns the number of times the {@code jnz} at an address jumped.
+	 *
+	 * @param address the address
+	 * @return the number of taken branches, or 0 if the instruction is not a {@code jnz}
+	 */
+	public long taken(int address) {
+		return taken[address];
+	}
+
+	/**
+	 * Returns the number of times the {@code jnz} at an address fell through to the next instruction.
+	 *
+	 * @param address the address
+	 * @return the number of branches not taken, or 0 if the instruction is not a {@code jnz}
+	 */
+	public long notTaken(int address) {
+		return (program.get(address) instanceof JnzInstruction) ? counts[address] - taken[address] : 0;
+	}
+
+	/**
+	 * Returns the total number of instructions executed.
+	 *
+	 * @return the number of instructions
+	 */
+	public long total() {
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		return total;
+	}
+
+	/**
+	 * Returns the number of executions of every opcode, the most executed first.
+	 *
+	 * @return the executions by opcode
+	 */
+	public Map<String, Long> opcodeCounts() {
+		Map<String, Long> opcodes = new LinkedHashMap<>();
+		for (int address = 0; address < counts.length; address++)
+			opcodes.merge(program.get(address).getOpcode(), counts[address], Long::sum);
+		Map<String, Long> sorted = new LinkedHashMap<>();
+		opcodes.entrySet().stream()
+				.sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+				.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+		return sorted;
+	}
+
+	/**
+	 * Returns the time spent in every region, in program order, by the label of the region.
+	 *
+	 * @return the nanoseconds spent by region
+	 */
+	public Map<String, Long> regionNanos() {
+		Map<String, Long> regions = new LinkedHashMap<>();
+		for (int address = 0; address < regionOf.length; address++) {
+			if (address == 0 || regionOf[address] != regionOf[address - 1])
+				regions.put(regionName(address), regionNanos[regionOf[address]]);
+		}
+		return regions;
+	}
+
+	/**
+	 * Returns the loops of the program, the loop executing the most instructions first.
+	 *
+	 * @return the loops
+	 */
+	public List<Loop> hotLoops() {
+		List<Loop> loops = new ArrayList<>();
+		for (int end = 0; end < program.size(); end++) {
+			if (program.get(end) instanceof JnzInstruction jnz && labels.contains(jnz.getOtherLabel())) {
+				int start = labels.getAddress(jnz.getOtherLabel());
+				if (start <= end) {
+					long executions = 0;
+					for (int address = start; address <= end; address++)
+						executions += counts[address];
+					loops.add(new Loop(jnz.getOtherLabel(), start, end, taken[end], executions));
+				}
+			}
+		}
+		loops.sort(Comparator.comparingLong(Loop::executions).reversed());
+		return loops;
+	}
+
+	private String regionName(int address) {
+		String label = program.get(address).getLabel();
+		return (label == null) ? ENTRY : label;
+	}
+
+	/**
+	 * Returns a report of the profile: the hot loops, the executions by opcode, the time by region and the
+	 * executions of every instruction.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		long total = total();
+		report.append(String.format("%d instructions executed%n", total));
+
+		report.append(String.format("%nHot loops:%n"));
+		for (Loop loop : hotLoops())
+			report.append(String.format("  %-12s %5d-%-5d %12d iterations %14d instructions %6.1f%%%n",
+					loop.label(), loop.start(), loop.end(), loop.iterations(), loop.executions(),
+					percent(loop.executions(), total)));
+
+		report.append(String.format("%nOpcodes:%n"));
+		for (Map.Entry<String, Long> opcode : opcodeCounts().entrySet())
+			report.append(String.format("  %-12s %14d %6.1f%%%n",
+					opcode.getKey(), opcode.getValue(), percent(opcode.getValue(), total)));
+
+		report.append(String.format("%nRegions:%n"));
+		for (Map.Entry<String, Long> region : regionNanos().entrySet())
+			report.append(String.format("  %-12s %12.3f ms%n", region.getKey(), region.getValue() / 1e6));
+
+		report.append(String.format("%nInstructions:%n"));
+		for (int address = 0; address < program.size(); address++) {
+			report.append(String.format("  %5d %14d  %s", address, counts[address], program.get(address)));
+			if (program.get(address) instanceof JnzInstruction)
+				report.append(String.format("  (taken %d, not taken %d)", taken(address), notTaken(address)));
+			report.append(System.lineSeparator());
+		}
+		return report.toString();
+	}
+
+	private static double percent(long part, long total) {
+		return (total == 0) ? 0 : 100.0 * part / total;
+	}
+}
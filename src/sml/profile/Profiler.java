@@ -0,0 +1,82 @@
+package sml.profile;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Machine;
+import sml.instruction.JnzInstruction;
+
+import java.util.List;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * An execution engine that interprets the program of a machine as the machine itself would, while counting the
+ * executions of every instruction, the taken and not-taken branches of every {@code jnz}, and the time spent in every
+ * labelled region of the program.
+ * <p>
+ * Profiling is selected like any other engine, with {@link Machine#setEngine(ExecutionEngine)}, so that a machine
+ * without a profiler runs its plain interpreter loop unchanged. The profile of the latest execution is returned by
+ * {@link #getProfile()}; a profile is also kept when the program fails, up to the failing instruction.
+ * Instances are not thread-safe.
+ */
+public final class Profiler implements ExecutionEngine {
+
+	private Profile profile;
+
+	/**
+	 * Executes the program of the machine, recording its profile.
+	 *
+	 * @param machine the machine whose program is executed
+	 */
+	@Override
+	public void execute(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		int size = program.size();
+		Instruction[] instructions = program.toArray(new Instruction[0]);
+		boolean[] branches = new boolean[size];
+		for (int address = 0; address < size; address++)
+			branches[address] = instructions[address] instanceof JnzInstruction;
+
+		int[] regionOf = Profile.regions(instructions);
+		long[] counts = new long[size];
+		long[] taken = new long[size];
+		long[] regionNanos = new long[(size == 0) ? 0 : regionOf[size - 1] + 1];
+		profile = new Profile(List.copyOf(program), machine.getLabels(), counts, taken, regionOf, regionNanos);
+
+		int programCounter = 0;
+		int region = -1;
+		long regionStart = System.nanoTime();
+		try {
+			while (programCounter < size) {
+				if (regionOf[programCounter] != region) {
+					long now = System.nanoTime();
+					if (region >= 0)
+						regionNanos[region] += now - regionStart;
+					region = regionOf[programCounter];
+					regionStart = now;
+				}
+				counts[programCounter]++;
+				int programCounterUpdate = instructions[programCounter].execute(machine);
+				if (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE) {
+					programCounter++;
+				} else {
+					if (branches[programCounter])
+						taken[programCounter]++;
+					programCounter = programCounterUpdate;
+				}
+			}
+		} finally {
+			if (region >= 0)
+				regionNanos[region] += System.nanoTime() - regionStart;
+		}
+	}
+
+	/**
+	 * Returns the profile of the latest execution.
+	 *
+	 * @return the profile, or {@code null} if the profiler has not executed a program
+	 */
+	public Profile getProfile() {
+		return profile;
+	}
+}
@@ -0,0 +1,228 @@
+package sml.scheduler;
+
+import sml.Machine;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many machines on a fixed number of carrier threads, giving each one time slices of a fixed number of
+ * instructions in turn.
+ * <p>
+ * A machine runs with {@link Machine#resume(long)}, which only checks for preemption at backward jumps, so
+ * straight-line code runs at full speed. At the end of its time slice a machine that has neither ended nor used up
+ * its budgets goes back to the end of the queue: a program that never ends only gets its share of the carrier
+ * threads, and the others keep running. The step budget of a task is checked at every backward jump, and its time
+ * budget at the end of every time slice.
+ */
+public final class Scheduler implements AutoCloseable {
+
+	/** The default number of instructions of a time slice. */
+	public static final long DEFAULT_QUANTUM = 10_000;
+
+	private final ExecutorService carriers;
+	private final long quantum;
+	private final long createdAt = System.nanoTime();
+	private final Set<Task> active = ConcurrentHashMap.newKeySet();
+
+	private final LongAdder finished = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder exceeded = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+	private final LongAdder slices = new LongAdder();
+	private final LongAdder preemptions = new LongAdder();
+	private final LongAdder steps = new LongAdder();
+
+	/**
+	 * Creates a scheduler with the default quantum.
+	 *
+	 * @param threads the number of carrier threads
+	 */
+	public Scheduler(int threads) {
+		this(threads, DEFAULT_QUANTUM);
+	}
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param threads the number of carrier threads
+	 * @param quantum the number of instructions of a time slice
+	 */
+	public Scheduler(int threads, long quantum) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		if (quantum <= 0)
+			throw new IllegalArgumentException("Quantum must be positive: " + quantum);
+		this.carriers = Executors.newFixedThreadPool(threads);
+		this.quantum = quantum;
+	}
+
+	/**
+	 * Submits a machine with no budgets.
+	 *
+	 * @param machine the machine
+	 * @return the task running the machine
+	 * @see #submit(Machine, long, long)
+	 */
+	public Task submit(Machine machine) {
+		return submit(machine, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Submits a machine, which runs its program from instruction 0 with its registers as they are. The machine
+	 * must not be used elsewhere until the task reaches a final state.
+	 *
+	 * @param machine the machine
+	 * @param maxSteps the maximum number of instructions the program may execute
+	 * @param maxNanos the maximum time the program may spend running, in nanoseconds
+	 * @return the task running the machine
+	 * @throws RejectedExecutionException if the scheduler is closed
+	 */
+	public Task submit(Machine machine, long maxSteps, long maxNanos) {
+		if (maxSteps <= 0 || maxNanos <= 0)
+			throw new IllegalArgumentException("Budgets must be positive: " + maxSteps + " steps, " + maxNanos + " ns");
+		machine.rewind();
+		Task task = new Task(machine, maxSteps, maxNanos);
+		active.add(task);
+		try {
+			carriers.execute(() -> slice(task));
+		} catch (RejectedExecutionException e) {
+			active.remove(task);
+			throw e;
+		}
+		return task;
+	}
+
+	/**
+	 * Runs one time slice of a task, and queues the task again if it must go on.
+	 */
+	private void slice(Task task) {
+		if (task.isCancelled()) {
+			complete(task, Task.State.CANCELLED, null);
+			return;
+		}
+		long start = System.nanoTime();
+		task.maxWaitNanos = Math.max(task.maxWaitNanos, start - task.queuedAt);
+		task.setState(Task.State.RUNNING);
+
+		Machine machine = task.getMachine();
+		long executed = 0;
+		Throwable error = null;
+		try {
+			executed = machine.resume(Math.min(quantum, task.getMaxSteps() - task.steps));
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		long end = System.nanoTime();
+		task.steps += executed;
+		task.slices++;
+		task.runNanos += end - start;
+		steps.add(executed);
+		slices.increment();
+
+		if (error != null) {
+			complete(task, Task.State.FAILED, error);
+		} else if (machine.isFinished()) {
+			complete(task, Task.State.FINISHED, null);
+		} else if (task.steps >= task.getMaxSteps()) {
+			complete(task, Task.State.STEP_LIMIT, null);
+		} else if (task.runNanos >= task.getMaxNanos()) {
+			complete(task, Task.State.TIME_LIMIT, null);
+		} else if (task.isCancelled()) {
+			complete(task, Task.State.CANCELLED, null);
+		} else {
+			preemptions.increment();
+			task.setState(Task.State.QUEUED);
+			task.queuedAt = System.nanoTime();
+			try {
+				carriers.execute(() -> slice(task));
+			} catch (RejectedExecutionException e) {
+				complete(task, Task.State.CANCELLED, null);
+			}
+		}
+	}
+
+	private void complete(Task task, Task.State state, Throwable error) {
+		// a queued task may be completed both by close and by its time slice
+		if (!active.remove(task))
+			return;
+		switch (state) {
+			case FINISHED -> finished.increment();
+			case FAILED -> failed.increment();
+			case STEP_LIMIT, TIME_LIMIT -> exceeded.increment();
+			default -> cancelled.increment();
+		}
+		if (state != Task.State.FINISHED && state != Task.State.FAILED)
+			task.getMachine().getOutput().flush();
+		task.complete(state, error);
+	}
+
+	/**
+	 * Returns the current counters of the scheduler.
+	 *
+	 * @return the statistics
+	 */
+	public SchedulerStatistics statistics() {
+		long now = System.nanoTime();
+		double sum = 0;
+		double sumOfSquares = 0;
+		int count = 0;
+		for (Task task : active) {
+			double share = (double) task.steps / Math.max(1, now - task.getSubmittedAt());
+			sum += share;
+			sumOfSquares += share * share;
+			count++;
+		}
+		double fairness = (sumOfSquares == 0) ? 1 : sum * sum / (count * sumOfSquares);
+		return new SchedulerStatistics(count, finished.sum(), failed.sum(), exceeded.sum(), cancelled.sum(),
+				slices.sum(), preemptions.sum(), steps.sum(), now - createdAt, fairness);
+	}
+
+	/**
+	 * Stops the scheduler, waiting up to one minute for the carrier threads to stop.
+	 *
+	 * @see #close(long, TimeUnit)
+	 */
+	@Override
+	public void close() {
+		close(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stops the scheduler: the tasks that have not reached a final state are cancelled at the end of their current
+	 * time slice, and no task can be submitted anymore.
+	 * <p>
+	 * If the carrier threads have not stopped within the timeout, or the thread is interrupted while waiting, the
+	 * time slices still queued are dropped and their tasks cancelled at once. A time slice that is running cannot be
+	 * interrupted, and ends with its quantum. The interrupt status of the thread is kept.
+	 *
+	 * @param timeout the longest time to wait for the carrier threads to stop
+	 * @param unit the unit of the timeout
+	 * @return {@code true} if the carrier threads stopped within the timeout, {@code false} otherwise
+	 */
+	public boolean close(long timeout, TimeUnit unit) {
+		for (Task task : active)
+			task.cancel();
+		carriers.shutdown();
+		boolean terminated;
+		try {
+			// the cancelled tasks run one more, empty, time slice to reach their final state
+			terminated = carriers.awaitTermination(timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			terminated = false;
+		}
+		if (!terminated) {
+			carriers.shutdownNow();
+			for (Task task : active)
+				if (task.getState() == Task.State.QUEUED)
+					complete(task, Task.State.CANCELLED, null);
+		}
+		return terminated;
+	}
+}
@@ -0,0 +1,42 @@
+package sml.scheduler;
+
+/**
+ * The counters of a {@link Scheduler} at one point in time.
+ *
+ * @param active the number of tasks submitted and not yet in a final state
+ * @param finished the number of tasks whose program ended
+ * @param failed the number of tasks whose program threw an exception
+ * @param exceeded the number of tasks stopped because they used up their step or time budget
+ * @param cancelled the number of tasks cancelled
+ * @param slices the number of time slices run
+ * @param preemptions the number of time slices after which the task went back to the queue
+ * @param steps the number of instructions executed
+ * @param wallNanos the time since the scheduler was created, in nanoseconds
+ * @param fairness Jain's fairness index of the rates at which the active tasks have executed instructions since they
+ *                 were submitted, between 1 / active (one task gets all) and 1 (all get the same); 1 if no task is
+ *                 active
+ */
+public record SchedulerStatistics(int active, long finished, long failed, long exceeded, long cancelled, long slices,
+								  long preemptions, long steps, long wallNanos, double fairness) {
+
+	/**
+	 * Returns the number of instructions executed per second over the life of the scheduler.
+	 *
+	 * @return the throughput
+	 */
+	public double throughput() {
+		return (wallNanos == 0) ? 0 : steps * 1e9 / wallNanos;
+	}
+
+	/**
+	 * Returns a description of the statistics.
+	 *
+	 * @return the counters, throughput and fairness
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d active, %d finished, %d failed, %d exceeded, %d cancelled, %d slices (%d preempted),"
+						+ " %.1f M steps/s, fairness %.3f",
+				active, finished, failed, exceeded, cancelled, slices, preemptions, throughput() / 1e6, fairness);
+	}
+}
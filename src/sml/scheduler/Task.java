@@ -0,0 +1,165 @@
+package sml.scheduler;
+
+import sml.Machine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A machine submitted to a {@link Scheduler}, with its budgets and the counters of its execution.
+ * <p>
+ * The counters are updated at the end of every time slice, and can be read at any time from any thread.
+ */
+public final class Task {
+
+	/**
+	 * The state of a task. A task is queued until it runs its first time slice, and goes back to the queue after
+	 * every time slice until it reaches one of the final states.
+	 */
+	public enum State {
+		QUEUED, RUNNING, FINISHED, FAILED, STEP_LIMIT, TIME_LIMIT, CANCELLED;
+
+		/**
+		 * Returns whether the state is final.
+		 *
+		 * @return true if the task will not run again
+		 */
+		public boolean isFinal() {
+			return this != QUEUED && this != RUNNING;
+		}
+	}
+
+	private final Machine machine;
+	private final long maxSteps;
+	private final long maxNanos;
+	private final long submittedAt = System.nanoTime();
+	private final CompletableFuture<Task> completion = new CompletableFuture<>();
+
+	private volatile State state = State.QUEUED;
+	private volatile Throwable error;
+	private volatile boolean cancelled;
+
+	// Written only by the carrier thread running the task; the queue orders the writes of successive slices.
+	volatile long queuedAt = submittedAt;
+	volatile long steps;
+	volatile long slices;
+	volatile long runNanos;
+	volatile long maxWaitNanos;
+
+	Task(Machine machine, long maxSteps, long maxNanos) {
+		this.machine = machine;
+		this.maxSteps = maxSteps;
+		this.maxNanos = maxNanos;
+	}
+
+	public Machine getMachine() {
+		return machine;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	void setState(State state) {
+		this.state = state;
+	}
+
+	/**
+	 * Returns the exception thrown by the program of a task that failed.
+	 *
+	 * @return the exception, or {@code null} if the task has not failed
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * Returns the maximum number of instructions the task may execute.
+	 *
+	 * @return the step budget
+	 */
+	public long getMaxSteps() {
+		return maxSteps;
+	}
+
+	/**
+	 * Returns the maximum time the task may spend running on a carrier thread, in nanoseconds.
+	 *
+	 * @return the time budget
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Returns the number of instructions executed so far.
+	 *
+	 * @return the number of instructions
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Returns the number of time slices run so far.
+	 *
+	 * @return the number of time slices
+	 */
+	public long getSlices() {
+		return slices;
+	}
+
+	/**
+	 * Returns the time spent running on a carrier thread so far, in nanoseconds.
+	 *
+	 * @return the running time
+	 */
+	public long getRunNanos() {
+		return runNanos;
+	}
+
+	/**
+	 * Returns the longest time the task has waited in the queue for a carrier thread, in nanoseconds.
+	 *
+	 * @return the longest wait
+	 */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	long getSubmittedAt() {
+		return submittedAt;
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Asks the scheduler to stop the task. A queued task is stopped before its next time slice, and a running one
+	 * at the end of its current time slice.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns a future completed with this task when it reaches a final state.
+	 *
+	 * @return the completion of the task
+	 */
+	public CompletableFuture<Task> completion() {
+		return completion;
+	}
+
+	void complete(State state, Throwable error) {
+		this.error = error;
+		this.state = state;
+		completion.complete(this);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s after %d steps in %d slices, %.3f ms running, max wait %.3f ms",
+				state, steps, slices, runNanos / 1e6, maxWaitNanos / 1e6);
+	}
+}
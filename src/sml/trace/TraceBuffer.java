@@ -0,0 +1,218 @@
+package sml.trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A preallocated ring buffer of fixed-size trace records, optionally spilled to a memory-mapped file.
+ * <p>
+ * Every record takes {@link #RECORD_INTS} ints of a single {@code int[]}, so recording an instruction is four array
+ * stores and an increment. The buffer holds the latest records, up to its capacity, overwriting the oldest ones.
+ * With a spill file, every time the ring fills up its content is copied to the file before being overwritten, so
+ * the file receives every record; {@link #close()} copies the remaining records and completes the file, which can
+ * then be read with {@link TraceDecoder#read(Path)}.
+ * <p>
+ * The spill file is laid out as follows, with all integers big-endian:
+ * <pre>
+ *     magic     "SMLT"
+ *     version   int, {@link #VERSION}
+ *     count     long, number of records
+ *     records   count * {@link #RECORD_INTS} ints: pc, opcode id, register index, value
+ * </pre>
+ * The file may be longer than its records, as it grows by mapped regions. Instances are not thread-safe.
+ */
+public final class TraceBuffer implements AutoCloseable {
+
+	/** The number of ints taken by every record. */
+	public static final int RECORD_INTS = 4;
+
+	/** The version of the spill file format. */
+	public static final int VERSION = 1;
+
+	static final int MAGIC = 0x534D4C54; // "SMLT"
+	static final int HEADER_SIZE = 16;
+
+	// the number of ring buffers held by a mapped region of the spill file
+	private static final int RINGS_PER_REGION = 16;
+
+	private final int[] data;
+	private final int mask;
+	private long count;
+	private boolean closed;
+
+	private final FileChannel channel;
+	private final long regionBytes;
+	private MappedByteBuffer region;
+	private IntBuffer regionInts;
+	private long regionStart;
+	private long spilled;
+
+	/**
+	 * Creates a buffer held in memory only.
+	 *
+	 * @param capacity the number of records held, rounded up to a power of two
+	 */
+	public TraceBuffer(int capacity) {
+		this(size(capacity), (FileChannel) null);
+	}
+
+	/**
+	 * Creates a buffer spilling every record to a file.
+	 *
+	 * @param capacity the number of records held, rounded up to a power of two
+	 * @param spill the spill file, created or truncated
+	 * @throws IOException if the file cannot be created
+	 */
+	public TraceBuffer(int capacity, Path spill) throws IOException {
+		// the capacity is checked before the file is opened, so that an invalid one does not leak the channel
+		this(size(capacity), FileChannel.open(spill, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	private TraceBuffer(int size, FileChannel channel) {
+		this.data = new int[size * RECORD_INTS];
+		this.mask = size - 1;
+		this.channel = channel;
+		this.regionBytes = channel == null ? 0 : regionBytes(size);
+		this.regionStart = HEADER_SIZE - regionBytes;
+	}
+
+	/**
+	 * Returns the size of a mapped region of the spill file of a buffer holding the given number of records. A
+	 * mapping is limited to {@link Integer#MAX_VALUE} bytes, so the region of a large buffer holds fewer rings, or
+	 * only part of one, rounded down to whole records.
+	 */
+	static long regionBytes(int size) {
+		long recordBytes = (long) RECORD_INTS * Integer.BYTES;
+		return Math.min(size * recordBytes * RINGS_PER_REGION, Integer.MAX_VALUE / recordBytes * recordBytes);
+	}
+
+	/**
+	 * Returns the number of records held by a buffer of the given capacity.
+	 */
+	private static int size(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 28)
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^28: " + capacity);
+		int size = Integer.highestOneBit(capacity);
+		return size < capacity ? size << 1 : size;
+	}
+
+	/**
+	 * Records an executed instruction.
+	 *
+	 * @throws IllegalStateException if the buffer is closed
+	 */
+	void record(int pc, int opcode, int register, int value) {
+		if (closed)
+			throw new IllegalStateException("The trace buffer is closed");
+		int[] data = this.data;
+		int i = ((int) count & mask) * RECORD_INTS;
+		data[i] = pc;
+		data[i + 1] = opcode;
+		data[i + 2] = register;
+		data[i + 3] = value;
+		if ((++count & mask) == 0 && channel != null)
+			spill();
+	}
+
+	/**
+	 * Copies the records not spilled yet to the spill file, mapping a new region of the file when needed.
+	 */
+	private void spill() {
+		try {
+			while (spilled < count) {
+				if (regionInts == null || !regionInts.hasRemaining()) {
+					regionStart += regionBytes;
+					region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionBytes);
+					regionInts = region.asIntBuffer();
+				}
+				int from = ((int) spilled & mask) * RECORD_INTS;
+				int length = (int) Math.min(count - spilled, mask + 1 - (spilled & mask)) * RECORD_INTS;
+				length = Math.min(length, regionInts.remaining());
+				regionInts.put(data, from, length);
+				spilled += length / RECORD_INTS;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the number of records held in memory.
+	 *
+	 * @return the capacity, a power of two
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Returns the number of records recorded since the buffer was created or cleared.
+	 *
+	 * @return the number of records, including those overwritten
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Returns the records held in memory: the latest ones, up to the capacity, oldest first.
+	 *
+	 * @return the records
+	 */
+	public List<TraceRecord> records() {
+		int held = (int) Math.min(count, mask + 1);
+		List<TraceRecord> records = new ArrayList<>(held);
+		for (long r = count - held; r < count; r++) {
+			int i = ((int) r & mask) * RECORD_INTS;
+			records.add(new TraceRecord(data[i], data[i + 1], data[i + 2], data[i + 3]));
+		}
+		return records;
+	}
+
+	/**
+	 * Drops the records held in memory. A buffer with a spill file cannot be cleared.
+	 *
+	 * @throws IllegalStateException if the buffer has a spill file
+	 */
+	public void clear() {
+		if (channel != null)
+			throw new IllegalStateException("A buffer with a spill file cannot be cleared");
+		count = 0;
+	}
+
+	/**
+	 * Copies the remaining records to the spill file and completes it. The buffer then rejects new records, while
+	 * those held in memory can still be read. Does nothing if the buffer is already closed.
+	 *
+	 * @throws IOException if an I/O error occurs while writing the file
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		if (channel == null)
+			return;
+		try {
+			spill();
+			if (region != null)
+				region.force();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+			while (header.hasRemaining())
+				channel.write(header, HEADER_SIZE - header.remaining());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package sml.trace;
+
+import sml.Instruction;
+import sml.Registers;
+import sml.compiler.PackedProgram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads traces back from spill files and prints them as SML, one executed instruction per line with its effect.
+ * <p>
+ * With the program that was traced, every line shows the instruction as written in the program; without it, only
+ * the opcode recorded. The effect is the new value of the register written, the value printed by an {@code out},
+ * or the address of the next instruction after a {@code jnz}:
+ * <pre>
+ *          3  f: mul EBX EAX           ; EBX = 6
+ *          5  jnz EAX f                ; -&gt; 3
+ *          6  out EBX                  ; out 720
+ * </pre>
+ */
+public final class TraceDecoder {
+
+	private TraceDecoder() {
+	}
+
+	/**
+	 * Reads the records of a spill file written by a {@link TraceBuffer}.
+	 *
+	 * @param file the spill file
+	 * @return the records, in the order they were recorded
+	 * @throws IOException if an I/O error occurs while reading the file, or if it is not a complete trace of the
+	 *                     current version
+	 */
+	public static List<TraceRecord> read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < TraceBuffer.HEADER_SIZE || buffer.getInt() != TraceBuffer.MAGIC)
+				throw new IOException(file + " is not an SML trace");
+			int version = buffer.getInt();
+			if (version != TraceBuffer.VERSION)
+				throw new IOException(file + " has version " + version + ", expected version " + TraceBuffer.VERSION);
+			long count = buffer.getLong();
+			if (count < 0 || count > buffer.remaining() / (TraceBuffer.RECORD_INTS * Integer.BYTES))
+				throw new IOException(file + " is truncated");
+
+			IntBuffer ints = buffer.asIntBuffer();
+			List<TraceRecord> records = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE - 8));
+			for (long r = 0; r < count; r++)
+				records.add(new TraceRecord(ints.get(), ints.get(), ints.get(), ints.get()));
+			return records;
+		}
+	}
+
+	/**
+	 * Returns the line of a record.
+	 *
+	 * @param record the record
+	 * @param program the traced program, or {@code null} to show the opcode only
+	 * @return the address, the instruction and its effect
+	 */
+	public static String decode(TraceRecord record, List<Instruction> program) {
+		String instruction;
+		if (program != null && record.pc() >= 0 && record.pc() < program.size())
+			instruction = program.get(record.pc()).toString();
+		else if (record.opcode() == TraceRecord.OTHER)
+			instruction = "?";
+		else
+			instruction = PackedProgram.opcode(record.opcode());
+
+		String effect;
+		if (record.register() != TraceRecord.NONE)
+			effect = Registers.registerAt(record.register()) + " = " + record.value();
+		else if (record.opcode() == PackedProgram.OUT)
+			effect = "out " + record.value();
+		else
+			effect = "-> " + record.value();
+		return String.format("%10d  %-24s ; %s", record.pc(), instruction, effect);
+	}
+
+	/**
+	 * Prints records, one per line.
+	 *
+	 * @param records the records
+	 * @param program the traced program, or {@code null} to show the opcodes only
+	 * @param out the destination of the lines
+	 */
+	public static void print(List<TraceRecord> records, List<Instruction> program, PrintStream out) {
+		for (TraceRecord record : records)
+			out.println(decode(record, program));
+	}
+}
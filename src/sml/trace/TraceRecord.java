@@ -0,0 +1,20 @@
+package sml.trace;
+
+/**
+ * One executed instruction of a trace.
+ *
+ * @param pc the address of the instruction
+ * @param opcode the opcode id of the instruction, as numbered by {@link sml.compiler.PackedProgram}, or
+ *               {@link #OTHER} for an instruction of another type
+ * @param register the register file index of the register written by the instruction, or {@link #NONE}
+ * @param value the new value of the register written; for an {@code out} the value printed, and for a {@code jnz}
+ *              or an instruction of another type the address of the next instruction
+ */
+public record TraceRecord(int pc, int opcode, int register, int value) {
+
+	/** The opcode id of instructions that are not part of the machine language. */
+	public static final int OTHER = -1;
+
+	/** The register index of instructions that write no register. */
+	public static final int NONE = -1;
+}
@@ -0,0 +1,104 @@
+package sml.trace;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.compiler.PackedProgram;
+import sml.instruction.*;
+
+import java.util.List;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * An execution engine that interprets the program of a machine as the machine itself would, while recording every
+ * executed instruction in a {@link TraceBuffer}: its address, its opcode id, the register it wrote and the new
+ * value of that register.
+ * <p>
+ * Tracing is selected like any other engine, with {@link Machine#setEngine(ExecutionEngine)}, so that a machine
+ * without a tracer runs its plain interpreter loop unchanged. The opcode and written register of every address are
+ * worked out before the program runs, so recording an instruction only reads the written register and stores a
+ * record. A program that fails is traced up to the instruction before the failing one. Instances are not
+ * thread-safe.
+ */
+public final class Tracer implements ExecutionEngine {
+
+	private final TraceBuffer buffer;
+
+	/**
+	 * Creates a tracer.
+	 *
+	 * @param buffer the buffer receiving the records
+	 */
+	public Tracer(TraceBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public TraceBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Executes the program of the machine, recording every instruction executed.
+	 *
+	 * @param machine the machine whose program is executed
+	 */
+	@Override
+	public void execute(Machine machine) {
+		List<Instruction> program = machine.getProgram();
+		int size = program.size();
+		Instruction[] instructions = program.toArray(new Instruction[0]);
+		int[] opcodes = new int[size];
+		int[] written = new int[size];
+		int[] printed = new int[size];
+		for (int address = 0; address < size; address++) {
+			Instruction ins = instructions[address];
+			written[address] = TraceRecord.NONE;
+			printed[address] = TraceRecord.NONE;
+			if (ins instanceof AddInstruction add) {
+				opcodes[address] = PackedProgram.ADD;
+				written[address] = Registers.indexOf(add.getResult());
+			} else if (ins instanceof SubInstruction sub) {
+				opcodes[address] = PackedProgram.SUB;
+				written[address] = Registers.indexOf(sub.getResult());
+			} else if (ins instanceof MulInstruction mul) {
+				opcodes[address] = PackedProgram.MUL;
+				written[address] = Registers.indexOf(mul.getResult());
+			} else if (ins instanceof DivInstruction div) {
+				opcodes[address] = PackedProgram.DIV;
+				written[address] = Registers.indexOf(div.getResult());
+			} else if (ins instanceof MovInstruction mov) {
+				opcodes[address] = PackedProgram.MOV;
+				written[address] = Registers.indexOf(mov.getRegister());
+			} else if (ins instanceof OutInstruction out) {
+				opcodes[address] = PackedProgram.OUT;
+				printed[address] = Registers.indexOf(out.getRegister());
+			} else if (ins instanceof JnzInstruction) {
+				opcodes[address] = PackedProgram.JNZ;
+			} else {
+				opcodes[address] = TraceRecord.OTHER;
+			}
+		}
+
+		TraceBuffer buffer = this.buffer;
+		Registers registers = machine.getRegisters();
+		int programCounter = 0;
+		while (programCounter < size) {
+			int programCounterUpdate = instructions[programCounter].execute(machine);
+			int next = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
+					? programCounter + 1
+					: programCounterUpdate;
+			int register = written[programCounter];
+			int value;
+			if (register != TraceRecord.NONE)
+				value = registers.get(register);
+			else if (printed[programCounter] != TraceRecord.NONE)
+				value = registers.get(printed[programCounter]);
+			else
+				value = next;
+			buffer.record(programCounter, opcodes[programCounter], register, value);
+			programCounter = next;
+		}
+	}
+}
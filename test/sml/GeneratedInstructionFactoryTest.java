@@ -0,0 +1,96 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneratedInstructionFactoryTest {
+    private AbstractInstructionFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        factory = new GeneratedInstructionFactory();
+    }
+
+    @AfterEach
+    void tearDown() {
+        factory = null;
+    }
+
+    @Test
+    void createInstructionSameAsReflection() {
+        String[][] lines = {
+                {"add", "EAX", "EBX"}, {"sub", "ECX", "EDX"}, {"mul", "ESP", "EBP"}, {"div", "ESI", "EDI"},
+                {"mov", "EAX", "-12"}, {"out", "EBX"}, {"jnz", "ECX", "f3"}};
+        for (String[] line : lines) {
+            List<String> arguments = List.of(line).subList(1, line.length);
+            Iterator<String> generated = arguments.iterator(), reflective = arguments.iterator();
+            assertEquals(InstructionFactory.getInstance().createInstruction("l", line[0], reflective::next),
+                    factory.createInstruction("l", line[0], generated::next));
+        }
+    }
+
+    @Test
+    void createInstructionInvalidRegister() {
+        Iterator<String> arguments = List.of("EZZ", "EAX").iterator();
+        assertThrows(IllegalArgumentException.class, () -> factory.createInstruction(null, "add", arguments::next));
+    }
+
+    @Test
+    void getInstanceUsesGeneratedFactory() {
+        assertInstanceOf(GeneratedInstructionFactory.class, AbstractInstructionFactory.getInstance());
+    }
+
+    @Test
+    void getInstanceUsesSingletonOfNamedFactory() throws Exception {
+        // a fresh copy of the classes, whose factory has not been created yet
+        URL classes = AbstractInstructionFactory.class.getProtectionDomain().getCodeSource().getLocation();
+        String previous = System.getProperty(AbstractInstructionFactory.FACTORY_PROPERTY);
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, ClassLoader.getPlatformClassLoader())) {
+            System.setProperty(AbstractInstructionFactory.FACTORY_PROPERTY, InstructionFactory.class.getName());
+            Object factory = loader.loadClass(AbstractInstructionFactory.class.getName()).getMethod("getInstance").invoke(null);
+            assertSame(loader.loadClass(InstructionFactory.class.getName()).getMethod("getInstance").invoke(null), factory);
+
+            System.setProperty(AbstractInstructionFactory.FACTORY_PROPERTY, GeneratedInstructionFactory.class.getName());
+            assertSame(factory, loader.loadClass(AbstractInstructionFactory.class.getName()).getMethod("getInstance").invoke(null));
+        } finally {
+            if (previous != null)
+                System.setProperty(AbstractInstructionFactory.FACTORY_PROPERTY, previous);
+            else
+                System.clearProperty(AbstractInstructionFactory.FACTORY_PROPERTY);
+        }
+    }
+
+    @Test
+    void getInstanceTriesAgainAfterFailure() throws Exception {
+        // a fresh copy of the classes, whose factory has not been created yet
+        URL classes = AbstractInstructionFactory.class.getProtectionDomain().getCodeSource().getLocation();
+        String previous = System.getProperty(AbstractInstructionFactory.FACTORY_PROPERTY);
+        ClassLoader context = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, ClassLoader.getPlatformClassLoader())) {
+            Thread.currentThread().setContextClassLoader(loader);
+            Method getInstance = loader.loadClass(AbstractInstructionFactory.class.getName()).getMethod("getInstance");
+            // a missing class, and a class that is not a factory
+            for (String className : List.of("sml.NoSuchFactory", String.class.getName())) {
+                System.setProperty(AbstractInstructionFactory.FACTORY_PROPERTY, className);
+                InvocationTargetException e = assertThrows(InvocationTargetException.class, () -> getInstance.invoke(null));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+            System.clearProperty(AbstractInstructionFactory.FACTORY_PROPERTY);
+            assertEquals(GeneratedInstructionFactory.class.getName(), getInstance.invoke(null).getClass().getName());
+        } finally {
+            Thread.currentThread().setContextClassLoader(context);
+            if (previous != null)
+                System.setProperty(AbstractInstructionFactory.FACTORY_PROPERTY, previous);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalTranslatorTest {
+    private Path file;
+    private IncrementalTranslator translator;
+    private Labels labels;
+    private List<Instruction> program;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("program.sml");
+        translator = new IncrementalTranslator(file.toString());
+        labels = new Labels();
+        program = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        translator = null;
+        labels = null;
+        program = null;
+    }
+
+    private void translate(List<String> lines) throws IOException {
+        Files.write(file, lines);
+        translator.readAndTranslate(labels, program);
+
+        Labels expectedLabels = new Labels();
+        List<Instruction> expectedProgram = new ArrayList<>();
+        new Translator(file.toString()).readAndTranslate(expectedLabels, expectedProgram);
+        assertEquals(expectedProgram, program);
+        assertEquals(expectedLabels, labels);
+    }
+
+    @Test
+    void readAndTranslateAppended() throws IOException {
+        List<String> lines = new ArrayList<>(List.of("mov EAX 6", "mov EBX 1", "mov ECX 1", "f: mul EBX EAX"));
+        translate(lines);
+        assertEquals(4, translator.getTranslatedLines());
+
+        lines.addAll(List.of("sub EAX ECX", "jnz EAX f", "out EBX"));
+        translate(lines);
+        assertEquals(3, translator.getTranslatedLines());
+        assertEquals(3, labels.getAddress("f"));
+    }
+
+    @Test
+    void readAndTranslatePatchedShiftsLabels() throws IOException {
+        List<String> lines = new ArrayList<>(List.of("a: mov EAX 1", "d:", "b: mov EBX 2", "c: out EAX", "e: out EBX"));
+        translate(lines);
+
+        lines.set(1, "mov ECX 3");
+        lines.add(2, "mov EDX 4");
+        translate(lines);
+        assertEquals(2, translator.getTranslatedLines());
+        assertEquals(3, labels.getAddress("b"));
+        assertEquals(4, labels.getAddress("c"));
+        assertEquals(5, labels.getAddress("e"));
+
+        lines.remove(0);
+        lines.set(1, "mov EDX 4");
+        translate(lines);
+        assertEquals(0, translator.getTranslatedLines());
+        assertFalse(labels.contains("a"));
+        assertEquals(2, labels.getAddress("b"));
+
+        lines.set(2, "c: mov EAX 1");
+        lines.set(3, "b: out EAX");
+        translate(lines);
+        assertEquals(2, translator.getTranslatedLines());
+        assertEquals(2, labels.getAddress("c"));
+        assertEquals(3, labels.getAddress("b"));
+    }
+
+    @Test
+    void readAndTranslateAfterLink() throws IOException {
+        Machine machine = new Machine(new Registers());
+        CollectingSink output = new CollectingSink();
+        machine.setOutput(output);
+        List<String> lines = new ArrayList<>(List.of("mov EAX 3", "mov EBX 1", "l: out EAX", "sub EAX EBX", "jnz EAX l"));
+        Files.write(file, lines);
+        translator.readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.link();
+        machine.execute();
+        assertArrayEquals(new int[]{3, 2, 1}, output.toArray());
+
+        lines.addAll(0, List.of("mov ECX 7", "out ECX"));
+        Files.write(file, lines);
+        translator.readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(2, translator.getTranslatedLines());
+        output.clear();
+        machine.execute();
+        assertArrayEquals(new int[]{7, 3, 2, 1}, output.toArray());
+
+        machine.link();
+        lines.remove(0);
+        lines.set(0, "out EAX");
+        Files.write(file, lines);
+        translator.readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(1, translator.getTranslatedLines());
+        machine.link();
+        output.clear();
+        machine.execute();
+        assertArrayEquals(new int[]{0, 3, 2, 1}, output.toArray());
+    }
+
+    @Test
+    void readAndTranslateRecoversFromError() throws IOException {
+        List<String> lines = new ArrayList<>(List.of("a: mov EAX 1", "b: out EAX"));
+        translate(lines);
+
+        Files.write(file, List.of("a: mov EAX 1", "a: out EAX"));
+        assertThrows(IllegalArgumentException.class, () -> translator.readAndTranslate(labels, program));
+
+        translate(lines);
+        assertEquals(2, translator.getTranslatedLines());
+    }
+
+    @Test
+    void readAndTranslateOtherProgram() throws IOException {
+        translate(List.of("mov EAX 1"));
+        labels = new Labels();
+        program = new ArrayList<>();
+        translate(List.of("mov EAX 1"));
+        assertEquals(1, translator.getTranslatedLines());
+    }
+
+    @Test
+    void readAndTranslateLineSeparators() throws IOException {
+        Files.writeString(file, "a: mov EAX 1\r\nmov EBX 2\rout EAX\u2028b: out EBX\n");
+        translator.readAndTranslate(labels, program);
+        Labels expectedLabels = new Labels();
+        List<Instruction> expectedProgram = new ArrayList<>();
+        new Translator(file.toString()).readAndTranslate(expectedLabels, expectedProgram);
+        assertEquals(expectedProgram, program);
+        assertEquals(expectedLabels, labels);
+        assertEquals(4, translator.getTranslatedLines());
+    }
+
+    @Test
+    void readAndTranslateRandomEdits() throws IOException {
+        Random random = new Random(23);
+        String[] templates = {"mov EAX %d", "add EBX ECX", "out EDX", "mul EDX EBX", "sub ECX EAX", "jnz EAX l%d"};
+        List<String> lines = new ArrayList<>();
+        int nextLabel = 0;
+        for (int round = 0; round < 300; round++) {
+            int edits = (round % 3 == 0) ? 3 : 1;
+            for (int e = 0; e < edits; e++) {
+                int position = random.nextInt(lines.size() + 1);
+                int kind = random.nextInt(3);
+                String text = String.format(templates[random.nextInt(templates.length)], random.nextInt(10));
+                if (random.nextInt(4) == 0)
+                    text = "l" + nextLabel++ + ": " + text;
+                if (kind == 0 || lines.isEmpty())
+                    lines.add(position, text);
+                else if (kind == 1)
+                    lines.remove(Math.min(position, lines.size() - 1));
+                else
+                    lines.set(Math.min(position, lines.size() - 1), text);
+            }
+            translate(lines);
+            if (edits == 1 && round > 0)
+                assertTrue(translator.getTranslatedLines() <= 1);
+        }
+    }
+}
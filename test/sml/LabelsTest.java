@@ -40,6 +40,13 @@ class LabelsTest {
         assertThrows(NullPointerException.class, ()->labels.getAddress("K"));
     }
 
+    @Test
+    void contains() {
+        labels.addLabel("M", 0);
+        assertTrue(labels.contains("M"));
+        assertFalse(labels.contains("K"));
+    }
+
     @Test
     void testToString() {
         labels.addLabel("M", 1);
@@ -0,0 +1,78 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelTranslatorTest {
+    private ForkJoinPool pool;
+    private Machine machine;
+    private Machine reference;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+        machine = new Machine(new Registers());
+        reference = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        machine = null;
+        reference = null;
+    }
+
+    @Test
+    void readAndTranslateSameAsSequential() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+            source.append("l").append(i).append(": mov EAX ").append(i).append("\n\nsub EAX EBX\njnz EAX l").append(i / 2).append('\n');
+        Path file = directory.resolve("program.sml");
+        Files.writeString(file, source);
+
+        new StreamingTranslator(file.toString()).readAndTranslate(reference.getLabels(), reference.getProgram());
+        new ParallelTranslator(file.toString(), pool, 64).readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(1500, machine.getProgram().size());
+        assertEquals(reference.getProgram(), machine.getProgram());
+        assertEquals(reference.getLabels(), machine.getLabels());
+    }
+
+    @Test
+    void readAndTranslateSmallFile() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(reference.getLabels(), reference.getProgram());
+        new ParallelTranslator("test_program.txt", pool).readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(reference.getProgram(), machine.getProgram());
+        assertEquals(reference.getLabels(), machine.getLabels());
+    }
+
+    @Test
+    void readAndTranslateDuplicateLabelAcrossChunks() throws IOException {
+        Path file = directory.resolve("program.sml");
+        Files.writeString(file, "l: mov EAX 1\n" + "out EAX\n".repeat(100) + "l: mov EAX 2\n");
+        ParallelTranslator translator = new ParallelTranslator(file.toString(), pool, 64);
+        assertThrows(IllegalArgumentException.class,
+                () -> translator.readAndTranslate(machine.getLabels(), machine.getProgram()));
+    }
+
+    @Test
+    void readAndTranslateInvalidRegister() throws IOException {
+        Path file = directory.resolve("program.sml");
+        Files.writeString(file, "out EAX\n".repeat(100) + "out EZZ\n");
+        ParallelTranslator translator = new ParallelTranslator(file.toString(), pool, 64);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> translator.readAndTranslate(machine.getLabels(), machine.getProgram()));
+        assertTrue(e.getMessage().contains("line 101"));
+    }
+}
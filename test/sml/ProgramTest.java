@@ -0,0 +1,98 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.compiler.ClosureEngine;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ProgramTest {
+    private Program program;
+
+    @BeforeEach
+    void setUp() {
+        // EBX = EAX!, computed from the initial value of EAX
+        Labels labels = new Labels();
+        labels.addLabel("f", 2);
+        program = Program.of(labels, List.of(
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        program = null;
+    }
+
+    @Test
+    void runFromInitialRegisters() {
+        Registers initial = new Registers();
+        initial.set(EAX, 5);
+        Machine machine = program.newMachine(initial);
+        machine.run();
+        assertEquals(120, machine.getRegisters().get(EBX));
+        assertEquals(5, initial.get(EAX));
+    }
+
+    @Test
+    void runConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ExecutionEngine engine = new ClosureEngine();
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int n = 1; n <= 12; n++) {
+                Registers initial = new Registers();
+                initial.set(EAX, n);
+                results.add(executor.submit(() -> {
+                    Machine machine = program.newMachine(initial);
+                    machine.setEngine(engine);
+                    machine.run();
+                    return machine.getRegisters().get(EBX);
+                }));
+            }
+            int factorial = 1;
+            for (int n = 1; n <= 12; n++) {
+                factorial *= n;
+                assertEquals(factorial, results.get(n - 1).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void imageIsImmutable() throws IOException {
+        Machine machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        Program image = Program.of(machine);
+        machine.getProgram().clear();
+        machine.getLabels().reset();
+        assertEquals(7, image.getInstructions().size());
+        assertEquals(3, image.getLabels().getAddress("f3"));
+
+        Machine shared = image.newMachine();
+        assertThrows(UnsupportedOperationException.class, () -> shared.getProgram().clear());
+        assertThrows(UnsupportedOperationException.class, () -> shared.getLabels().addLabel("x", 0));
+        shared.link();
+        assertSame(image, Program.of(shared));
+    }
+
+    @Test
+    void unknownLabel() {
+        List<Instruction> instructions = List.of(new JnzInstruction(null, EAX, "nowhere"));
+        assertThrows(IllegalArgumentException.class, () -> Program.of(new Labels(), instructions));
+    }
+}
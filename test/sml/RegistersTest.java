@@ -0,0 +1,57 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class RegistersTest {
+    private Registers registers;
+
+    @BeforeEach
+    void setUp() {
+        registers = new Registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        registers = null;
+    }
+
+    @Test
+    void getAndSetByIndex() {
+        int index = Registers.indexOf(ECX);
+        registers.set(index, 7);
+        assertEquals(7, registers.get(ECX));
+        registers.set(ECX, 9);
+        assertEquals(9, registers.get(index));
+        assertEquals(ECX, Registers.registerAt(index));
+    }
+
+    @Test
+    void clear() {
+        registers.set(EAX, 1);
+        registers.set(EDI, 2);
+        registers.clear();
+        assertEquals(new Registers(), registers);
+    }
+
+    @Test
+    void testToString() {
+        registers.set(EBX, 720);
+        assertEquals("[EAX = 0, EBX = 720, ECX = 0, EDX = 0, ESP = 0, EBP = 0, ESI = 0, EDI = 0]",
+                registers.toString());
+    }
+
+    @Test
+    void testEqualsAndHashCode() {
+        Registers other = new Registers();
+        registers.set(ESI, 3);
+        assertNotEquals(registers, other);
+        other.set(ESI, 3);
+        assertEquals(registers, other);
+        assertEquals(registers.hashCode(), other.hashCode());
+    }
+}
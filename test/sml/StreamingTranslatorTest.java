@@ -0,0 +1,75 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class StreamingTranslatorTest {
+    private Machine machine;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void readAndTranslateSameAsTranslator() throws IOException {
+        for (String fileName : new String[]{"test/resources/program.txt", "test_program.txt"}) {
+            Machine reference = new Machine(new Registers());
+            new Translator(fileName).readAndTranslate(reference.getLabels(), reference.getProgram());
+            new StreamingTranslator(fileName).readAndTranslate(machine.getLabels(), machine.getProgram());
+            assertEquals(reference.getProgram(), machine.getProgram());
+            assertEquals(reference.getLabels(), machine.getLabels());
+        }
+    }
+
+    @Test
+    void readAndTranslateWhitespace() throws IOException {
+        Path file = directory.resolve("program.sml");
+        Files.writeString(file, "\r\n  l1:\tmov EAX -2147483648\r\n\n  out   EAX  \r\nl2: jnz EAX l1");
+        new StreamingTranslator(file.toString()).readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(new MovInstruction("l1", EAX, Integer.MIN_VALUE), machine.getProgram().get(0));
+        assertEquals(new OutInstruction(null, EAX), machine.getProgram().get(1));
+        assertEquals(new JnzInstruction("l2", EAX, "l1"), machine.getProgram().get(2));
+        assertEquals(2, machine.getLabels().getAddress("l2"));
+    }
+
+    @Test
+    void readAndTranslateLongLines() throws IOException {
+        Path file = directory.resolve("program.sml");
+        String label = "l".repeat(200_000);
+        Files.writeString(file, "mov EAX 1\n" + label + ": out EAX\njnz EAX " + label + "\n");
+        new StreamingTranslator(file.toString()).readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(3, machine.getProgram().size());
+        assertEquals(1, machine.getLabels().getAddress(label));
+    }
+
+    @Test
+    void readAndTranslateInvalid() throws IOException {
+        Path file = directory.resolve("program.sml");
+        Files.writeString(file, "add EAX EZZ\n");
+        StreamingTranslator translator = new StreamingTranslator(file.toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> translator.readAndTranslate(machine.getLabels(), machine.getProgram()));
+        Files.writeString(file, "mov EAX 2147483648\n");
+        assertThrows(NumberFormatException.class,
+                () -> translator.readAndTranslate(machine.getLabels(), machine.getProgram()));
+    }
+}
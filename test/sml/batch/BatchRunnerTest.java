@@ -0,0 +1,116 @@
+package sml.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.cache.ResultCache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class BatchRunnerTest {
+    private BatchRunner runner;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        runner = new BatchRunner(2, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner = null;
+    }
+
+    @Test
+    void runIsolatesFailures() throws IOException, InterruptedException {
+        Files.copy(Path.of("test_program.txt"), directory.resolve("a_factorial.sml"));
+        Files.writeString(directory.resolve("b_division.sml"), "mov EAX 1\nout EAX\ndiv EAX EBX\n");
+        Files.writeString(directory.resolve("c_label.sml"), "jnz EAX nowhere\n");
+        Files.writeString(directory.resolve("d_output.sml"), "mov EAX 3\nmov EBX 1\nl: out EAX\nsub EAX EBX\njnz EAX l\n");
+
+        List<BatchResult> results = runner.run(BatchRunner.programFiles(List.of(directory)));
+        assertEquals(4, results.size());
+
+        assertTrue(results.get(0).isSuccess());
+        assertArrayEquals(new int[]{720}, results.get(0).output());
+        assertEquals(720, results.get(0).registers().get(EBX));
+
+        assertInstanceOf(ArithmeticException.class, results.get(1).error());
+        assertArrayEquals(new int[]{1}, results.get(1).output());
+        assertEquals(1, results.get(1).registers().get(EAX));
+
+        assertInstanceOf(IllegalArgumentException.class, results.get(2).error());
+        assertNull(results.get(2).registers());
+
+        assertArrayEquals(new int[]{3, 2, 1}, results.get(3).output());
+
+        BatchSummary summary = BatchSummary.of(results, 1_000_000_000L);
+        assertEquals(4, summary.programs());
+        assertEquals(2, summary.failures());
+        assertEquals(4.0, summary.throughput());
+        assertTrue(summary.percentile(50) <= summary.percentile(99));
+    }
+
+    @Test
+    void runAnswersRepeatsFromCache() throws IOException, InterruptedException {
+        Files.copy(Path.of("test_program.txt"), directory.resolve("a.sml"));
+        Files.copy(Path.of("test_program.txt"), directory.resolve("b.sml"));
+        ResultCache cache = new ResultCache(10);
+        List<BatchResult> results = new BatchRunner(1, null, cache).run(BatchRunner.programFiles(List.of(directory)));
+        for (BatchResult result : results) {
+            assertArrayEquals(new int[]{720}, result.output());
+            assertEquals(720, result.registers().get(EBX));
+        }
+        assertEquals(1, cache.statistics().memoryHits());
+        assertEquals(1, cache.statistics().misses());
+    }
+
+    @Test
+    void runStopsProgramsOverBudget() throws IOException, InterruptedException {
+        Files.writeString(directory.resolve("a_forever.sml"), "mov EAX 1\nl: out EAX\njnz EAX l\n");
+        Files.copy(Path.of("test_program.txt"), directory.resolve("b_factorial.sml"));
+        List<BatchResult> results = new BatchRunner(1, null, 1_000).run(BatchRunner.programFiles(List.of(directory)));
+
+        assertInstanceOf(IllegalStateException.class, results.get(0).error());
+        assertEquals(500, results.get(0).output().length);
+        assertTrue(results.get(1).isSuccess());
+        assertArrayEquals(new int[]{720}, results.get(1).output());
+    }
+
+    @Test
+    void runIsolatesErrors() throws IOException, InterruptedException {
+        Files.copy(Path.of("test_program.txt"), directory.resolve("a.sml"));
+        Files.copy(Path.of("test_program.txt"), directory.resolve("b.sml"));
+        List<BatchResult> results = new BatchRunner(1, machine -> {
+            throw new StackOverflowError();
+        }).run(BatchRunner.programFiles(List.of(directory)));
+
+        assertEquals(2, results.size());
+        for (BatchResult result : results)
+            assertInstanceOf(StackOverflowError.class, result.error());
+    }
+
+    @Test
+    void runMissingFile() {
+        BatchResult result = runner.run(directory.resolve("missing.sml"));
+        assertFalse(result.isSuccess());
+        assertInstanceOf(IOException.class, result.error());
+    }
+
+    @Test
+    void percentile() {
+        BatchSummary summary = new BatchSummary(4, 0, 1, new long[]{10, 20, 30, 40});
+        assertEquals(20, summary.percentile(50));
+        assertEquals(40, summary.percentile(99));
+        assertEquals(10, summary.percentile(0));
+    }
+}
@@ -0,0 +1,154 @@
+package sml.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+import sml.optimizer.PeepholeOptimizer;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ResultCacheTest {
+    private Program factorial;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Machine machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        factorial = Program.of(machine);
+    }
+
+    @AfterEach
+    void tearDown() {
+        factorial = null;
+    }
+
+    private static Program countdown(String label, int n) {
+        Labels labels = new Labels();
+        labels.addLabel(label, 2);
+        return Program.of(labels, List.of(
+                new MovInstruction(null, EAX, n),
+                new MovInstruction(null, ECX, 1),
+                new OutInstruction(label, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, label)));
+    }
+
+    @Test
+    void keyIgnoresLabelNames() {
+        assertEquals(ResultKey.of(countdown("a", 3)), ResultKey.of(countdown("b", 3)));
+        assertNotEquals(ResultKey.of(countdown("a", 3)), ResultKey.of(countdown("a", 4)));
+        Registers initial = new Registers();
+        initial.set(EDX, 1);
+        assertNotEquals(ResultKey.of(countdown("a", 3)), ResultKey.of(countdown("a", 3), initial));
+        assertEquals(64, ResultKey.of(factorial).hash().length());
+    }
+
+    @Test
+    void runAnswersRepeatsFromMemory() {
+        ResultCache cache = new ResultCache(10);
+        CachedRun first = cache.run(factorial, new Registers(), null);
+        CachedRun second = cache.run(factorial, new Registers(), null);
+        assertEquals(first, second);
+        assertArrayEquals(new int[]{720}, second.output());
+        assertEquals(720, second.registers().get(EBX));
+        assertEquals(new CacheStatistics(1, 0, 1, 0, 0, 0, 1), cache.statistics());
+        assertEquals(0.5, cache.statistics().hitRatio());
+    }
+
+    @Test
+    void runReplaysIntoMachine() {
+        ResultCache cache = new ResultCache(10);
+        cache.run(factorial.newMachine());
+        Machine machine = factorial.newMachine();
+        CollectingSink output = new CollectingSink();
+        machine.setOutput(output);
+        cache.run(machine);
+        assertEquals(1, cache.statistics().memoryHits());
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertArrayEquals(new int[]{720}, output.toArray());
+    }
+
+    @Test
+    void putEvictsLeastRecentlyUsed() {
+        ResultCache cache = new ResultCache(2);
+        cache.run(countdown("a", 1), new Registers(), null);
+        cache.run(countdown("a", 2), new Registers(), null);
+        cache.run(countdown("a", 1), new Registers(), null);
+        cache.run(countdown("a", 3), new Registers(), null);
+        assertEquals(1, cache.statistics().evictions());
+        assertTrue(cache.get(ResultKey.of(countdown("a", 1))).isPresent());
+        assertTrue(cache.get(ResultKey.of(countdown("a", 2))).isEmpty());
+    }
+
+    @Test
+    void getReadsFromDisk() throws IOException {
+        new ResultCache(10, directory).run(factorial, new Registers(), null);
+        ResultCache cache = new ResultCache(10, directory);
+        CachedRun run = cache.run(factorial, new Registers(), null);
+        assertArrayEquals(new int[]{720}, run.output());
+        assertEquals(1, cache.statistics().diskHits());
+        cache.run(factorial, new Registers(), null);
+        assertEquals(1, cache.statistics().memoryHits());
+
+        Path file = directory.resolve(ResultKey.of(factorial).hash() + ResultCache.EXTENSION);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        ResultCache corrupt = new ResultCache(10, directory);
+        assertTrue(corrupt.get(ResultKey.of(factorial)).isEmpty());
+        assertEquals(1, corrupt.statistics().diskErrors());
+    }
+
+    @Test
+    void runDoesNotCacheFailures() {
+        ResultCache cache = new ResultCache(10);
+        Program division = Program.of(new Labels(), List.of(new DivInstruction(null, EAX, EBX)));
+        assertThrows(ArithmeticException.class, () -> cache.run(division, new Registers(), null));
+        assertThrows(ArithmeticException.class, () -> cache.run(division, new Registers(), null));
+        assertEquals(2, cache.statistics().misses());
+        assertEquals(0, cache.statistics().size());
+    }
+
+    @Test
+    void runDoesNotCacheLargeOutput() {
+        ResultCache cache = new ResultCache(10, null, 4);
+        CachedRun run = cache.run(countdown("a", 5), new Registers(), null);
+        assertArrayEquals(new int[]{5, 4, 3, 2, 1}, run.output());
+        assertEquals(1, cache.statistics().bypasses());
+        assertTrue(cache.get(ResultKey.of(countdown("a", 5))).isEmpty());
+
+        cache.run(countdown("a", 4), new Registers(), null);
+        assertEquals(1, cache.statistics().bypasses());
+        assertTrue(cache.get(ResultKey.of(countdown("a", 4))).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> new ResultCache(10, null, -1));
+    }
+
+    @Test
+    void runBypassesUnpackablePrograms() throws IOException {
+        Machine machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        PeepholeOptimizer.optimize(machine);
+        machine.setOutput(new CollectingSink());
+        ResultCache cache = new ResultCache(10);
+        cache.run(machine);
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertEquals(1, cache.statistics().bypasses());
+    }
+}
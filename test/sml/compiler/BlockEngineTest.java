@@ -0,0 +1,130 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+import sml.optimizer.LoopEvaluator;
+import sml.optimizer.PeepholeOptimizer;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class BlockEngineTest {
+    private Machine machine;
+    private BlockEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        engine = new BlockEngine();
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        engine = null;
+    }
+
+    @Test
+    void executeFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.setEngine(engine);
+        machine.setOutput(value -> assertEquals(720, value));
+        machine.execute();
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertEquals(List.of(
+                new BlockEngine.BlockCount(0, 3, 1),
+                new BlockEngine.BlockCount(3, 6, 6),
+                new BlockEngine.BlockCount(6, 7, 1)), engine.blockCounts());
+
+        machine.execute();
+        assertEquals(12, engine.blockCounts().get(1).count());
+    }
+
+    @Test
+    void executeOptimized() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.execute();
+        Registers expected = new Registers(machine.getRegisters());
+
+        PeepholeOptimizer.optimize(machine);
+        machine.setEngine(engine);
+        machine.execute();
+        assertEquals(expected, machine.getRegisters());
+        assertEquals(6, engine.blockCounts().get(1).count());
+    }
+
+    @Test
+    void executeCountedLoop() {
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("s", 2);
+        program.add(new MovInstruction(null, EAX, 1_000_000_000));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new AddInstruction("s", EBX, ECX));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "s"));
+        LoopEvaluator.optimize(machine);
+        machine.setEngine(engine);
+        machine.execute();
+        assertEquals(1_000_000_000, machine.getRegisters().get(EBX));
+        assertEquals(1, engine.blockCounts().get(1).count());
+    }
+
+    @Test
+    void executeJumpIntoBlock() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new Instruction(null, "skip") {
+            @Override
+            public int execute(Machine m) {
+                return 2;
+            }
+
+            @Override
+            public String toString() {
+                return "skip";
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return this == o;
+            }
+
+            @Override
+            public int hashCode() {
+                return 0;
+            }
+        });
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new MovInstruction(null, EAX, 2));
+        program.add(new AddInstruction(null, EAX, EAX));
+        machine.setEngine(engine);
+        machine.execute();
+        assertEquals(4, machine.getRegisters().get(EAX));
+        assertEquals(0, engine.blockCounts().get(1).count());
+    }
+
+    @Test
+    void executeFailureKeepsCounts() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new DivInstruction(null, EAX, EBX));
+        machine.setEngine(engine);
+        assertThrows(ArithmeticException.class, machine::execute);
+        assertEquals(1, engine.blockCounts().get(0).count());
+    }
+
+    @Test
+    void executeUnknownLabel() {
+        machine.getProgram().add(new JnzInstruction(null, EAX, "nowhere"));
+        machine.setEngine(engine);
+        assertThrows(IllegalArgumentException.class, machine::execute);
+    }
+}
@@ -0,0 +1,93 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class BytecodeCompilerTest {
+    private Machine machine;
+    private List<Integer> output;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        output = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        output = null;
+    }
+
+    @Test
+    void runFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.execute();
+        Registers expected = machine.getRegisters();
+
+        Registers registers = new Registers();
+        BytecodeCompiler.compile(machine.getProgram(), machine.getLabels()).run(registers, output::add);
+        assertEquals(expected, registers);
+        assertEquals(List.of(720), output);
+    }
+
+    @Test
+    void runAllOpcodes() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 100_000));
+        program.add(new MovInstruction(null, EBX, -7));
+        program.add(new MovInstruction(null, ECX, 300));
+        program.add(new AddInstruction(null, EAX, ECX));
+        program.add(new DivInstruction(null, EAX, EBX));
+        program.add(new MulInstruction(null, ECX, EBX));
+        program.add(new SubInstruction(null, EDX, ECX));
+        program.add(new OutInstruction(null, EDX));
+        machine.execute();
+
+        Registers registers = new Registers();
+        BytecodeCompiler.compile(program, machine.getLabels()).run(registers, output::add);
+        assertEquals(machine.getRegisters(), registers);
+        assertEquals(List.of(2100), output);
+    }
+
+    @Test
+    void runDivisionByZeroKeepsRegisters() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 5));
+        program.add(new DivInstruction(null, EAX, EBX));
+
+        Registers registers = new Registers();
+        CompiledProgram compiled = BytecodeCompiler.compile(program, machine.getLabels());
+        assertThrows(ArithmeticException.class, () -> compiled.run(registers, output::add));
+        assertEquals(5, registers.get(EAX));
+    }
+
+    @Test
+    void compileUnknownLabel() {
+        machine.getProgram().add(new JnzInstruction(null, EAX, "nowhere"));
+        assertThrows(IllegalArgumentException.class,
+                () -> BytecodeCompiler.compile(machine.getProgram(), machine.getLabels()));
+    }
+
+    @Test
+    void executeWithEngine() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.setEngine(new BytecodeEngine());
+        machine.execute();
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertEquals(0, machine.getRegisters().get(EAX));
+    }
+}
@@ -0,0 +1,81 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ClosureEngineTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void executeFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.execute();
+        Registers expected = new Registers();
+        expected.set(EBX, machine.getRegisters().get(EBX));
+        expected.set(ECX, machine.getRegisters().get(ECX));
+
+        machine.setEngine(new ClosureEngine());
+        machine.execute();
+        assertEquals(expected, machine.getRegisters());
+    }
+
+    @Test
+    void executeAllOpcodes() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 100_000));
+        program.add(new MovInstruction(null, EBX, -7));
+        program.add(new MovInstruction(null, ECX, 300));
+        program.add(new AddInstruction(null, EAX, ECX));
+        program.add(new DivInstruction(null, EAX, EBX));
+        program.add(new MulInstruction(null, ECX, EBX));
+        program.add(new SubInstruction(null, EDX, ECX));
+        machine.execute();
+        Registers expected = new Registers();
+        for (Registers.Register register : Registers.Register.values())
+            expected.set(register, machine.getRegisters().get(register));
+
+        machine.setEngine(new ClosureEngine());
+        machine.execute();
+        assertEquals(expected, machine.getRegisters());
+    }
+
+    @Test
+    void executeRebuildsChangedProgram() {
+        machine.setEngine(new ClosureEngine());
+        machine.getProgram().add(new MovInstruction(null, EAX, 1));
+        machine.execute();
+        assertEquals(1, machine.getRegisters().get(EAX));
+        machine.getProgram().set(0, new MovInstruction(null, EAX, 2));
+        machine.execute();
+        assertEquals(2, machine.getRegisters().get(EAX));
+    }
+
+    @Test
+    void executeUnknownLabel() {
+        machine.setEngine(new ClosureEngine());
+        machine.getProgram().add(new JnzInstruction(null, EAX, "nowhere"));
+        assertThrows(IllegalArgumentException.class, () -> machine.execute());
+    }
+}
@@ -0,0 +1,86 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class PackedProgramTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void packAndUnpack() {
+        PackedProgram packed = PackedProgram.pack(machine.getProgram(), machine.getLabels());
+        assertEquals(7, packed.size());
+        assertEquals(machine.toString(), packed.toString());
+
+        Labels labels = new Labels();
+        List<Instruction> program = new ArrayList<>();
+        packed.unpack(labels, program);
+        assertEquals(machine.getLabels(), labels);
+        assertEquals(machine.getProgram(), program);
+    }
+
+    @Test
+    void packedCode() {
+        int[] code = PackedProgram.pack(machine.getProgram(), machine.getLabels()).code();
+        assertArrayEquals(new int[]{PackedProgram.MOV, Registers.indexOf(EAX), 0, 6}, slice(code, 0));
+        assertArrayEquals(new int[]{PackedProgram.MUL, Registers.indexOf(EBX), Registers.indexOf(EAX), 0}, slice(code, 3));
+        assertArrayEquals(new int[]{PackedProgram.JNZ, Registers.indexOf(EAX), 0, 3 * PackedProgram.WORDS}, slice(code, 5));
+    }
+
+    @Test
+    void run() {
+        List<Integer> output = new ArrayList<>();
+        Registers registers = new Registers();
+        PackedProgram.pack(machine.getProgram(), machine.getLabels()).run(registers, output::add);
+        machine.execute();
+        assertEquals(machine.getRegisters(), registers);
+        assertEquals(List.of(720), output);
+    }
+
+    @Test
+    void executeWithEngine() {
+        machine.setEngine(new PackedEngine());
+        machine.execute();
+        assertEquals(720, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void runDivisionByZeroKeepsRegisters() {
+        List<Instruction> program = List.of(new MovInstruction(null, EAX, 5), new DivInstruction(null, EAX, EBX));
+        Registers registers = new Registers();
+        PackedProgram packed = PackedProgram.pack(program, new Labels());
+        assertThrows(ArithmeticException.class, () -> packed.run(registers, value -> {}));
+        assertEquals(5, registers.get(EAX));
+    }
+
+    private static int[] slice(int[] code, int address) {
+        int[] words = new int[PackedProgram.WORDS];
+        System.arraycopy(code, address * PackedProgram.WORDS, words, 0, words.length);
+        return words;
+    }
+}
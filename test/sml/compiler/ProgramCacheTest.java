@@ -0,0 +1,106 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.Registers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ProgramCacheTest {
+    private ProgramCache cache;
+    private Path source;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = new ProgramCache(directory.resolve("cache"));
+        source = directory.resolve("factorial.sml");
+        Files.copy(Path.of("test_program.txt"), source);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache = null;
+        source = null;
+    }
+
+    private long entries() throws IOException {
+        try (Stream<Path> files = Files.list(cache.getDirectory())) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void loadTranslatesOnlyOnce() throws IOException {
+        PackedProgram first = cache.load(source);
+        PackedProgram second = cache.load(source);
+        assertEquals(first, second);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, entries());
+
+        Registers registers = new Registers();
+        second.run(registers, value -> assertEquals(720, value));
+        assertEquals(720, registers.get(EBX));
+
+        ProgramCache other = new ProgramCache(cache.getDirectory());
+        assertEquals(first, other.load(source));
+        assertEquals(1, other.hits());
+    }
+
+    @Test
+    void loadTranslatesChangedSource() throws IOException {
+        cache.load(source);
+        Files.writeString(source, "mov EAX 1\n");
+        assertEquals(1, cache.load(source).size());
+        assertEquals(2, cache.misses());
+        assertEquals(2, entries());
+    }
+
+    @Test
+    void loadReplacesCorruptEntry() throws IOException {
+        cache.load(source);
+        Path entry = cache.getDirectory().resolve(ProgramCache.key(Files.readAllBytes(source)) + ProgramFile.EXTENSION);
+        Files.writeString(entry, "garbage");
+        assertEquals(7, cache.load(source).size());
+        assertEquals(2, cache.misses());
+        assertTrue(ProgramFile.isCompiled(entry));
+    }
+
+    @Test
+    void loadEvictsLeastRecentlyUsed() throws IOException {
+        Path small = directory.resolve("small.sml");
+        Files.writeString(small, "mov EAX 1\n");
+        cache.load(source);
+        long size = Files.size(cache.getDirectory().resolve(ProgramCache.key(Files.readAllBytes(source)) + ProgramFile.EXTENSION));
+
+        ProgramCache bounded = new ProgramCache(cache.getDirectory(), size + 10);
+        try (Stream<Path> files = Files.list(cache.getDirectory())) {
+            for (Path file : files.toList())
+                Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        }
+        bounded.load(small);
+        assertEquals(1, bounded.evictions());
+        assertEquals(1, entries());
+        bounded.load(small);
+        assertEquals(1, bounded.hits());
+    }
+
+    @Test
+    void keyDependsOnOpcodeSet() {
+        assertTrue(ProgramCache.OPCODE_SET.startsWith("add,sub,mul,div,mov,out,jnz;"));
+        assertNotEquals(ProgramCache.key(new byte[]{1}), ProgramCache.key(new byte[]{2}));
+        assertEquals(64, ProgramCache.key(new byte[0]).length());
+    }
+}
@@ -0,0 +1,68 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramFileTest {
+    private PackedProgram program;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Machine machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        program = PackedProgram.pack(machine.getProgram(), machine.getLabels());
+    }
+
+    @AfterEach
+    void tearDown() {
+        program = null;
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        Path file = directory.resolve("factorial" + ProgramFile.EXTENSION);
+        ProgramFile.write(program, file);
+        assertTrue(ProgramFile.isCompiled(file));
+        assertEquals(program, ProgramFile.read(file));
+    }
+
+    @Test
+    void readCorrupt() throws IOException {
+        Path file = directory.resolve("factorial" + ProgramFile.EXTENSION);
+        ProgramFile.write(program, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> ProgramFile.read(file));
+    }
+
+    @Test
+    void readOtherVersion() throws IOException {
+        Path file = directory.resolve("factorial" + ProgramFile.EXTENSION);
+        ProgramFile.write(program, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[7] = (byte) (ProgramFile.VERSION + 1);
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> ProgramFile.read(file));
+    }
+
+    @Test
+    void readSource() throws IOException {
+        assertFalse(ProgramFile.isCompiled(Path.of("test_program.txt")));
+        assertThrows(IOException.class, () -> ProgramFile.read(Path.of("test_program.txt")));
+    }
+}
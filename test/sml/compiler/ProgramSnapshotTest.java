@@ -0,0 +1,49 @@
+package sml.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ProgramSnapshotTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        machine.getProgram().add(new MovInstruction(null, EAX, 6));
+        machine.getProgram().add(new OutInstruction(null, EAX));
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void ofKeepsInstructionsOfImage() {
+        Program image = Program.of(machine);
+        List<Instruction> snapshot = ProgramSnapshot.of(image.newMachine());
+        assertSame(image.getInstructions(), snapshot);
+        assertTrue(ProgramSnapshot.matches(image.newMachine().getProgram(), snapshot));
+    }
+
+    @Test
+    void ofCopiesProgramOfMachine() {
+        List<Instruction> snapshot = ProgramSnapshot.of(machine);
+        assertNotSame(machine.getProgram(), snapshot);
+        assertTrue(ProgramSnapshot.matches(machine.getProgram(), snapshot));
+
+        machine.getProgram().add(new OutInstruction(null, EAX));
+        assertFalse(ProgramSnapshot.matches(machine.getProgram(), snapshot));
+    }
+}
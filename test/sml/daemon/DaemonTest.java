@@ -0,0 +1,260 @@
+package sml.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.Main;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaemonTest {
+    private Daemon daemon;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        daemon = Daemon.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        daemon.close();
+        daemon = null;
+    }
+
+    private static String main(String... args) {
+        return console(() -> Main.main(args));
+    }
+
+    private String client(String... args) {
+        String[] command = new String[args.length + 2];
+        command[0] = "-l";
+        command[1] = String.valueOf(((InetSocketAddress) daemon.getAddress()).getPort());
+        System.arraycopy(args, 0, command, 2, args.length);
+        return console(() -> DaemonClient.main(command));
+    }
+
+    private static String console(Runnable runnable) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            runnable.run();
+        } finally {
+            System.setOut(console);
+        }
+        // times differ from one run to the next
+        return bytes.toString(StandardCharsets.UTF_8).replaceAll("[0-9.]+ (ms|programs/s)", "$1");
+    }
+
+    private static String run(DaemonClient client, Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        client.runFile(file, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void runFilePrintsAsMain() throws IOException {
+        try (DaemonClient client = new DaemonClient(daemon.getAddress())) {
+            assertEquals(main("test_program.txt"), run(client, Path.of("test_program.txt")));
+            Path label = directory.resolve("label.sml");
+            Files.writeString(label, "jnz EAX nowhere\n");
+            assertEquals(main(label.toString()), run(client, label));
+            Path literal = directory.resolve("literal.sml");
+            Files.writeString(literal, "mov EAX 1x\n");
+            assertEquals(main(literal.toString()), run(client, literal));
+            Path missing = directory.resolve("missing.sml");
+            assertEquals(main(missing.toString()), run(client, missing));
+            assertEquals(4, daemon.jobs());
+        }
+    }
+
+    @Test
+    void runSource() throws IOException {
+        try (DaemonClient client = new DaemonClient(daemon.getAddress())) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream printer = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+            assertTrue(client.runSource("mov EAX 3\nmov EBX 1\nl: out EAX\nsub EAX EBX\njnz EAX l\n", printer));
+            assertTrue(bytes.toString(StandardCharsets.UTF_8).contains("Beginning program execution.\n3\n2\n1\nEnding"));
+
+            bytes.reset();
+            assertFalse(client.runSource("mov EAX 1\nout EAX\ndiv EAX EBX", printer));
+            assertEquals("1\nError running the program from the source: java.lang.ArithmeticException: / by zero\n",
+                    bytes.toString(StandardCharsets.UTF_8).split("execution.\n")[1]);
+        }
+    }
+
+    @Test
+    void mainPrintsAsMain() throws IOException {
+        for (String option : List.of("-p", "-t", "-O"))
+            assertEquals(main(option, "test_program.txt"), client(option, "test_program.txt"));
+
+        Path compiled = directory.resolve("main.smlc"), daemonCompiled = directory.resolve("daemon.smlc");
+        assertEquals(main("-c", "test_program.txt", compiled.toString()).replace(compiled.toString(), "target"),
+                client("-c", "test_program.txt", daemonCompiled.toString()).replace(daemonCompiled.toString(), "target"));
+        assertEquals(-1, Files.mismatch(compiled, daemonCompiled));
+        assertEquals(main(compiled.toString()), client(daemonCompiled.toString()));
+
+        Path programs = directory.resolve("programs");
+        Files.createDirectory(programs);
+        Files.copy(Path.of("test_program.txt"), programs.resolve("a.sml"));
+        Files.writeString(programs.resolve("b.sml"), "mov EAX 1\nout EAX\ndiv EAX EBX\n");
+        assertEquals(main("-b", programs.toString(), "test_program.txt"),
+                client("-b", programs.toString(), "test_program.txt"));
+    }
+
+    @Test
+    void runSourceRejectsInvalidCount() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(daemon.getAddress())) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            for (String count : List.of("x", "-1", "99999999999")) {
+                out.write("source " + count + "\n");
+                out.flush();
+                assertTrue(in.readLine().startsWith("error request "));
+            }
+            out.write("source 1\nout EAX\n");
+            out.flush();
+            assertEquals(List.of("program 1", "out EAX", "out 0", "registers 0 0 0 0 0 0 0 0", "done"),
+                    List.of(in.readLine(), in.readLine(), in.readLine(), in.readLine(), in.readLine()));
+        }
+    }
+
+    @Test
+    void runRejectsInvalidPaths() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(daemon.getAddress())) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            for (String request : List.of("file a\0b\n", "compile test_program.txt\na\0b\n", "batch 1\n.\na\0b\n")) {
+                out.write(request);
+                out.flush();
+                assertTrue(in.readLine().startsWith("error request Invalid path "));
+            }
+            out.write("source 1\nout EAX\n");
+            out.flush();
+            assertEquals(List.of("program 1", "out EAX", "out 0", "registers 0 0 0 0 0 0 0 0", "done"),
+                    List.of(in.readLine(), in.readLine(), in.readLine(), in.readLine(), in.readLine()));
+        }
+    }
+
+    @Test
+    void runStopsJobsOverBudget() throws IOException {
+        try (Daemon limited = Daemon.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 100_000, Long.MAX_VALUE);
+             DaemonClient client = new DaemonClient(limited.getAddress())) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream printer = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+            assertFalse(client.runSource("mov EAX 1\nl: jnz EAX l\n", printer));
+            assertTrue(bytes.toString(StandardCharsets.UTF_8).endsWith(
+                    "Error running the program from the source: Program exceeded its budget of 100000 instructions\n"));
+            assertEquals(main("test_program.txt"), run(client, Path.of("test_program.txt")));
+        }
+    }
+
+    @Test
+    void runStopsJobsWhoseClientDoesNotRead() throws Exception {
+        // as many jobs printing without end as there are carrier threads, whose clients do not read
+        List<SocketChannel> stuck = new ArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+                SocketChannel channel = SocketChannel.open(daemon.getAddress());
+                stuck.add(channel);
+                Writer out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+                out.write("source 3\nmov EAX 1\nl: out EAX\njnz EAX l\n");
+                out.flush();
+            }
+            Thread.sleep(500);
+
+            Future<String> result = executor.submit(() -> {
+                try (DaemonClient client = new DaemonClient(daemon.getAddress())) {
+                    return run(client, Path.of("test_program.txt"));
+                }
+            });
+            assertEquals(main("test_program.txt"), result.get(10, TimeUnit.SECONDS));
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(stuck.get(0)), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null && !line.startsWith("error "))
+                assertFalse(line.startsWith("registers "), line);
+            assertEquals("error run The client did not read the output of the program", line);
+        } finally {
+            executor.shutdownNow();
+            for (SocketChannel channel : stuck)
+                channel.close();
+        }
+    }
+
+    @Test
+    void closeStopsRunningJobs() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (DaemonClient client = new DaemonClient(daemon.getAddress())) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream printer = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+            Future<Boolean> result = executor.submit(() -> client.runSource("mov EAX 1\nl: jnz EAX l\n", printer));
+            while (!bytes.toString(StandardCharsets.UTF_8).contains("Beginning program execution."))
+                Thread.sleep(1);
+            daemon.close();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void runConcurrentClients() throws Exception {
+        String expected = main("test_program.txt");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                results.add(executor.submit(() -> {
+                    try (DaemonClient client = new DaemonClient(daemon.getAddress())) {
+                        return run(client, Path.of("test_program.txt"));
+                    }
+                }));
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void startOnUnixSocket() throws IOException {
+        Path socket = directory.resolve("sml.sock");
+        Files.createFile(socket);
+        try (Daemon unix = Daemon.start(UnixDomainSocketAddress.of(socket));
+             DaemonClient client = new DaemonClient(unix.getAddress())) {
+            assertEquals(main("test_program.txt"), run(client, Path.of("test_program.txt")));
+            assertThrows(IOException.class, () -> Daemon.start(UnixDomainSocketAddress.of(socket)));
+        }
+        assertFalse(Files.exists(socket));
+    }
+}
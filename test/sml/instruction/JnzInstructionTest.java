@@ -11,6 +11,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static sml.Registers.Register.*;
 
 class JnzInstructionTest {
@@ -54,6 +55,28 @@ class JnzInstructionTest {
         assertEquals(programCounter, Instruction.NORMAL_PROGRAM_COUNTER_UPDATE);
     }
 
+    @Test
+    void executeLinked() {
+        registers.set(EAX, 5);
+        Instruction instruction = new JnzInstruction(null, EAX, "z").link(machine.getLabels());
+        machine.getLabels().reset();
+        int programCounter = instruction.execute(machine);
+        assertEquals(1, programCounter);
+    }
+
+    @Test
+    void linkUnknownLabel() {
+        Instruction instruction = new JnzInstruction(null, EAX, "k");
+        assertThrows(IllegalArgumentException.class, () -> instruction.link(machine.getLabels()));
+    }
+
+    @Test
+    void linkKeepsEquality() {
+        Instruction instruction = new JnzInstruction(null, EAX, "z");
+        assertEquals(instruction, instruction.link(machine.getLabels()));
+        assertEquals("jnz EAX z", instruction.link(machine.getLabels()).toString());
+    }
+
     @Test
     void testToString() {
         JnzInstruction JnzInstruction = new JnzInstruction(null, EAX, "z");
@@ -0,0 +1,81 @@
+package sml.ir;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ControlFlowGraphTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void buildFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        ControlFlowGraph graph = new ControlFlowGraph(machine.getProgram(), machine.getLabels());
+
+        List<Block> blocks = graph.getBlocks();
+        assertEquals(3, blocks.size());
+        Block loop = blocks.get(1);
+        assertEquals(3, loop.getStart());
+        assertEquals(List.of("f3"), loop.getLabels());
+        assertEquals(loop, loop.getBranch());
+        assertEquals(blocks.get(2), loop.getNext());
+        assertEquals(List.of(blocks.get(0), loop), loop.getPredecessors());
+
+        Value counter = loop.getEntry()[Registers.indexOf(EAX)];
+        assertEquals(Value.Kind.PHI, counter.getKind());
+        assertEquals(List.of(blocks.get(0).getExit()[Registers.indexOf(EAX)], loop.getExit()[Registers.indexOf(EAX)]),
+                counter.getOperands());
+
+        Node sub = loop.getNodes().get(1);
+        assertEquals(counter, sub.getPrevious());
+        assertEquals(loop.getEntry()[Registers.indexOf(ECX)], sub.getSource());
+        assertEquals(sub.getResult(), loop.getNodes().get(2).getPrevious());
+        assertSame(loop.getExit()[Registers.indexOf(EBX)], blocks.get(2).getNodes().get(0).getPrevious());
+    }
+
+    @Test
+    void buildSplitsBlocks() {
+        machine.getLabels().addLabel("end", 3);
+        machine.getLabels().addLabel("other", 2);
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 1),
+                new JnzInstruction(null, EAX, "end"),
+                new OutInstruction("other", EAX),
+                new OutInstruction("end", EAX)));
+        ControlFlowGraph graph = new ControlFlowGraph(machine.getProgram(), machine.getLabels());
+        assertEquals(List.of(0, 2, 3), graph.getBlocks().stream().map(Block::getStart).toList());
+
+        Block end = graph.getBlocks().get(2);
+        assertEquals(List.of(graph.getBlocks().get(0), graph.getBlocks().get(1)), end.getPredecessors());
+        assertEquals(Value.Kind.PHI, end.getEntry()[Registers.indexOf(EAX)].getKind());
+        assertSame(graph.getBlocks().get(0).getExit()[Registers.indexOf(EAX)],
+                graph.getBlocks().get(1).getEntry()[Registers.indexOf(EAX)]);
+    }
+
+    @Test
+    void buildUnknownLabel() {
+        machine.getProgram().add(new JnzInstruction(null, EAX, "nowhere"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ControlFlowGraph(machine.getProgram(), machine.getLabels()));
+    }
+}
@@ -0,0 +1,197 @@
+package sml.ir;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class IrOptimizerTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void optimizeFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        List<Instruction> original = List.copyOf(machine.getProgram());
+        IrOptimizer.optimize(machine);
+        assertEquals(original, machine.getProgram());
+        machine.setOutput(value -> assertEquals(720, value));
+        machine.execute();
+    }
+
+    @Test
+    void optimizeConstantCode() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 2));
+        program.add(new MovInstruction(null, EBX, 3));
+        program.add(new MulInstruction(null, EAX, EBX));
+        program.add(new OutInstruction(null, EAX));
+        program.add(new AddInstruction(null, EAX, EBX));
+        program.add(new SubInstruction(null, ECX, EDX));
+        IrOptimizer.optimize(machine);
+
+        assertEquals(List.of(
+                new MovInstruction(null, EBX, 3),
+                new MovInstruction(null, EAX, 6),
+                new OutInstruction(null, EAX),
+                new MovInstruction(null, EAX, 9)), machine.getProgram());
+    }
+
+    @Test
+    void optimizeRemovesUnreachableBlocks() {
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("l", 4);
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new JnzInstruction(null, EAX, "l"));
+        program.add(new OutInstruction(null, EAX));
+        program.add(new MovInstruction(null, EBX, 5));
+        program.add(new OutInstruction("l", EAX));
+        program.add(new JnzInstruction(null, EBX, "l"));
+        IrOptimizer.optimize(machine);
+
+        assertEquals(List.of(
+                new MovInstruction(null, EAX, 1),
+                new JnzInstruction(null, EAX, "l"),
+                new OutInstruction("l", EAX)), machine.getProgram());
+        assertEquals(2, machine.getLabels().getAddress("l"));
+    }
+
+    @Test
+    void optimizePropagatesCopies() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, ECX, 0));
+        program.add(new AddInstruction(null, ECX, EAX));
+        program.add(new OutInstruction(null, ECX));
+        program.add(new MovInstruction(null, EDX, 0));
+        program.add(new AddInstruction(null, EBX, EDX));
+        program.add(new MovInstruction(null, ECX, 7));
+        IrOptimizer.optimize(program, machine.getLabels(), false);
+
+        assertEquals(List.of(
+                new OutInstruction(null, EAX),
+                new MovInstruction(null, EDX, 0),
+                new MovInstruction(null, ECX, 7)), program);
+    }
+
+    @Test
+    void optimizeKeepsFailures() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 4));
+        program.add(new DivInstruction(null, EAX, EBX));
+        program.add(new MovInstruction(null, EAX, 1));
+        IrOptimizer.optimize(machine);
+        assertEquals(3, program.size());
+        assertThrows(ArithmeticException.class, machine::execute);
+        assertEquals(4, machine.getRegisters().get(EAX));
+    }
+
+    @Test
+    void optimizeRandomPrograms() {
+        Random seeds = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            long seed = seeds.nextLong();
+            boolean zeroed = i % 2 == 0;
+            Registers initial = new Registers();
+            if (!zeroed) {
+                Random values = new Random(seed);
+                for (int index = 0; index < Registers.COUNT; index++)
+                    initial.set(index, values.nextInt(5) - 2);
+            }
+
+            Machine original = new Machine(new Registers(initial));
+            generate(new Random(seed), original.getProgram(), original.getLabels());
+            Machine optimized = new Machine(new Registers(initial));
+            generate(new Random(seed), optimized.getProgram(), optimized.getLabels());
+            IrOptimizer.optimize(optimized.getProgram(), optimized.getLabels(), zeroed);
+
+            String description = original.getProgram() + " -> " + optimized.getProgram();
+            assertEquals(run(original), run(optimized), description);
+            assertEquals(original.getRegisters(), optimized.getRegisters(), description);
+            assertTrue(optimized.getProgram().size() <= original.getProgram().size(), description);
+        }
+    }
+
+    private static String run(Machine machine) {
+        CollectingSink output = new CollectingSink();
+        machine.setOutput(output);
+        String failure = "";
+        try {
+            machine.run();
+        } catch (ArithmeticException e) {
+            failure = " failed";
+        }
+        return Arrays.toString(output.toArray()) + failure;
+    }
+
+    /**
+     * Generates blocks of random code over EAX to EDX, some of them skipped by forward jumps and some repeated by
+     * counted loops over ESI, with EDI as one.
+     */
+    private static void generate(Random random, List<Instruction> program, Labels labels) {
+        RegisterName[] registers = {EAX, EBX, ECX, EDX};
+        program.add(new MovInstruction(null, EDI, 1));
+        for (int block = 0; block < 4; block++) {
+            String label = "b" + block;
+            int kind = random.nextInt(3);
+            if (kind == 1)
+                program.add(new MovInstruction(null, ESI, 1 + random.nextInt(3)));
+            if (kind == 2) {
+                RegisterName tested = registers[random.nextInt(registers.length)];
+                String skip = "s" + block;
+                program.add(new JnzInstruction(null, tested, skip));
+                int length = 1 + random.nextInt(4);
+                for (int i = 0; i < length; i++)
+                    program.add(random(random, registers, null));
+                labels.addLabel(skip, program.size());
+                program.add(new MovInstruction(skip, registers[random.nextInt(registers.length)], random.nextInt(3)));
+                continue;
+            }
+            labels.addLabel(label, program.size());
+            int length = 1 + random.nextInt(5);
+            for (int i = 0; i < length; i++)
+                program.add(random(random, registers, (i == 0) ? label : null));
+            if (kind == 1) {
+                program.add(new SubInstruction(null, ESI, EDI));
+                program.add(new JnzInstruction(null, ESI, label));
+            }
+        }
+    }
+
+    private static Instruction random(Random random, RegisterName[] registers, String label) {
+        RegisterName result = registers[random.nextInt(registers.length)];
+        RegisterName source = registers[random.nextInt(registers.length)];
+        return switch (random.nextInt(7)) {
+            case 0 -> new AddInstruction(label, result, source);
+            case 1 -> new SubInstruction(label, result, source);
+            case 2 -> new MulInstruction(label, result, source);
+            case 3 -> new DivInstruction(label, result, source);
+            case 4 -> new OutInstruction(label, source);
+            default -> new MovInstruction(label, result, random.nextInt(4) - 1);
+        };
+    }
+}
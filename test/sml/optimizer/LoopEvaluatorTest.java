@@ -0,0 +1,182 @@
+package sml.optimizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class LoopEvaluatorTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void optimizeSum() {
+        int n = 2_000_000_000;
+        sum(n);
+        assertEquals(1, LoopEvaluator.optimize(machine));
+        assertInstanceOf(CountedLoopInstruction.class, machine.getProgram().get(5));
+        machine.execute();
+
+        long expected = (long) n * (n + 1) / 2;
+        assertEquals((int) expected, machine.getRegisters().get(EBX));
+        assertEquals(n, machine.getRegisters().get(EDX));
+        assertEquals(0, machine.getRegisters().get(EAX));
+    }
+
+    @Test
+    void optimizePower() {
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("p", 4);
+        program.add(new MovInstruction(null, EAX, Integer.MAX_VALUE));
+        program.add(new MovInstruction(null, EBX, 1));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new MovInstruction(null, EDX, 3));
+        program.add(new MulInstruction("p", EBX, EDX));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "p"));
+        machine.link();
+        assertEquals(1, LoopEvaluator.optimize(machine));
+        machine.execute();
+
+        int expected = BigInteger.valueOf(3).modPow(BigInteger.valueOf(Integer.MAX_VALUE), BigInteger.TWO.pow(32)).intValue();
+        assertEquals(expected, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void optimizeKeepsOtherLoops() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertEquals(0, LoopEvaluator.optimize(machine));
+
+        List<Instruction> program = machine.getProgram();
+        program.clear();
+        machine.getLabels().reset();
+        machine.getLabels().addLabel("o", 2);
+        machine.getLabels().addLabel("d", 6);
+        program.add(new MovInstruction(null, EAX, 3));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new OutInstruction("o", EAX));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "o"));
+        program.add(new MovInstruction(null, EAX, 3));
+        program.add(new DivInstruction("d", EBX, ECX));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "d"));
+        assertEquals(0, LoopEvaluator.optimize(machine));
+    }
+
+    @Test
+    void optimizeNeverEnding() {
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("l", 2);
+        program.add(new MovInstruction(null, EAX, 5));
+        program.add(new MovInstruction(null, ECX, 2));
+        program.add(new AddInstruction("l", EBX, ECX));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "l"));
+        assertEquals(1, LoopEvaluator.optimize(machine));
+        machine.link();
+
+        Instruction loop = machine.getProgram().get(4);
+        machine.getRegisters().set(EAX, 3);
+        assertEquals(2, loop.execute(machine));
+        assertEquals(3, machine.getRegisters().get(EAX));
+    }
+
+    @Test
+    void iterations() {
+        assertEquals(3, CountedLoopInstruction.iterations(3, -1));
+        assertEquals(3, CountedLoopInstruction.iterations(-3, 1));
+        assertEquals((1L << 32) - 3, CountedLoopInstruction.iterations(3, 1));
+        assertEquals(3, CountedLoopInstruction.iterations(6, -2));
+        assertEquals(-1, CountedLoopInstruction.iterations(5, -2));
+        assertEquals(-1, CountedLoopInstruction.iterations(5, 0));
+        assertEquals(1L << 31, CountedLoopInstruction.iterations(Integer.MIN_VALUE, 1));
+        assertEquals(5, CountedLoopInstruction.iterations(15, -3));
+    }
+
+    @Test
+    void optimizeRandomLoops() {
+        Random random = new Random(7);
+        RegisterName[] registers = {EAX, EBX, ECX, EDX};
+        for (int i = 0; i < 500; i++) {
+            Machine original = new Machine(new Registers());
+            Labels labels = original.getLabels();
+            List<Instruction> program = original.getProgram();
+            int step = new int[]{1, -1, 2, 3, -5}[random.nextInt(5)];
+            program.add(new MovInstruction(null, EDI, step));
+            program.add(new MovInstruction(null, ESI, step * (1 + random.nextInt(100))));
+            for (RegisterName register : registers)
+                program.add(new MovInstruction(null, register, random.nextInt(7) - 3));
+            labels.addLabel("l", program.size());
+            int length = 1 + random.nextInt(5);
+            for (int j = 0; j < length; j++) {
+                String label = (j == 0) ? "l" : null;
+                RegisterName result = registers[random.nextInt(registers.length)];
+                RegisterName source = (random.nextInt(4) == 0) ? ESI : registers[random.nextInt(registers.length)];
+                program.add(switch (random.nextInt(4)) {
+                    case 0 -> new AddInstruction(label, result, source);
+                    case 1 -> new SubInstruction(label, result, source);
+                    case 2 -> new MulInstruction(label, result, source);
+                    default -> new MovInstruction(label, result, random.nextInt(5));
+                });
+            }
+            program.add(new SubInstruction(null, ESI, EDI));
+            program.add(new JnzInstruction(null, ESI, "l"));
+            program.add(new OutInstruction(null, EBX));
+            original.link();
+
+            Machine optimized = new Machine(new Registers());
+            optimized.getProgram().addAll(program);
+            optimized.getLabels().addLabel("l", labels.getAddress("l"));
+            LoopEvaluator.optimize(optimized);
+            PeepholeOptimizer.optimize(optimized);
+
+            CollectingSink expected = new CollectingSink(), actual = new CollectingSink();
+            original.setOutput(expected);
+            optimized.setOutput(actual);
+            original.execute();
+            optimized.execute();
+            assertEquals(original.getRegisters(), optimized.getRegisters(), program.toString());
+            assertArrayEquals(expected.toArray(), actual.toArray());
+        }
+    }
+
+    /**
+     * Sets the program of the machine to sum the integers from 1 to n into EBX, counting the iterations in EDX.
+     */
+    private void sum(int n) {
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("s", 2);
+        program.add(new MovInstruction(null, EAX, n));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new AddInstruction("s", EBX, EAX));
+        program.add(new AddInstruction(null, EDX, ECX));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "s"));
+        machine.link();
+    }
+}
@@ -0,0 +1,189 @@
+package sml.optimizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.Translator;
+import sml.compiler.ClosureEngine;
+import sml.instruction.*;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class PeepholeOptimizerTest {
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void optimizeFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        assertSameBehaviour();
+
+        List<Instruction> program = machine.getProgram();
+        assertEquals(5, program.size());
+        assertInstanceOf(LoopStepInstruction.class, program.get(3));
+        assertEquals("f3: mul EBX EAX; sub EAX ECX; jnz EAX f3", program.get(3).toString());
+        assertEquals(3, machine.getLabels().getAddress("f3"));
+    }
+
+    @Test
+    void optimizeFoldsConstants() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 6));
+        program.add(new MovInstruction(null, EBX, 4));
+        program.add(new AddInstruction(null, EAX, EBX));
+        program.add(new MulInstruction(null, EAX, EBX));
+        program.add(new DivInstruction(null, EAX, ECX));
+        assertSameBehaviour();
+
+        assertEquals(List.of(
+                new MovInstruction(null, EBX, 4),
+                new MovInstruction(null, EAX, 40),
+                new DivInstruction(null, EAX, ECX)), machine.getProgram());
+    }
+
+    @Test
+    void optimizeRemovesDeadMoves() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new MovInstruction(null, EBX, 2));
+        program.add(new OutInstruction(null, EBX));
+        program.add(new MovInstruction(null, EAX, 3));
+        program.add(new MovInstruction(null, EBX, 4));
+        assertSameBehaviour();
+
+        assertEquals(List.of(
+                new MovInstruction(null, EBX, 2),
+                new OutInstruction(null, EBX),
+                new MovInstruction(null, EAX, 3),
+                new MovInstruction(null, EBX, 4)), machine.getProgram());
+    }
+
+    @Test
+    void optimizeKeepsJumpTargets() {
+        List<Instruction> program = machine.getProgram();
+        Labels labels = machine.getLabels();
+        program.add(new MovInstruction(null, EAX, 3));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new MovInstruction("unused", EBX, 0));
+        program.add(new AddInstruction(null, EBX, EAX));
+        program.add(new SubInstruction("loop", EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "loop"));
+        program.add(new MulInstruction(null, EBX, ECX));
+        program.add(new AddInstruction(null, EDX, EBX));
+        labels.addLabel("unused", 2);
+        labels.addLabel("loop", 4);
+        assertSameBehaviour();
+
+        assertEquals(List.of(
+                new MovInstruction(null, EAX, 3),
+                new MovInstruction(null, ECX, 1),
+                new MovInstruction(null, EBX, 3),
+                new SubJnzInstruction("loop", EAX, ECX, "loop"),
+                new MultiplyAccumulateInstruction(null, EBX, ECX, EDX)), machine.getProgram());
+        assertEquals(3, machine.getLabels().getAddress("loop"));
+        assertFalse(machine.getLabels().contains("unused"));
+    }
+
+    @Test
+    void optimizeUnknownLabel() {
+        machine.getProgram().add(new JnzInstruction(null, EAX, "nowhere"));
+        assertThrows(IllegalArgumentException.class, () -> PeepholeOptimizer.optimize(machine));
+    }
+
+    @Test
+    void optimizeRandomPrograms() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            machine = new Machine(new Registers());
+            generate(random, machine.getProgram(), machine.getLabels());
+            assertSameBehaviour();
+        }
+    }
+
+    /**
+     * Checks that the optimized program of the machine leaves the same registers, prints the same values and fails
+     * in the same way as the original program, with the interpreter and with the closure engine.
+     */
+    private void assertSameBehaviour() {
+        Behaviour expected = run(machine, null);
+        String original = machine.getProgram().toString();
+        int size = machine.getProgram().size();
+        PeepholeOptimizer.optimize(machine);
+        assertTrue(machine.getProgram().size() <= size);
+        assertEquals(expected, run(machine, null), original);
+        assertEquals(expected, run(machine, new ClosureEngine()), original);
+    }
+
+    private record Behaviour(Registers registers, List<Integer> output, Class<?> failure) {
+    }
+
+    private static Behaviour run(Machine machine, ExecutionEngine engine) {
+        CollectingSink output = new CollectingSink();
+        machine.setOutput(output);
+        machine.setEngine(engine);
+        Class<?> failure = null;
+        try {
+            machine.execute();
+        } catch (ArithmeticException e) {
+            failure = e.getClass();
+        }
+        Registers registers = new Registers(machine.getRegisters());
+        return new Behaviour(registers, Arrays.stream(output.toArray()).boxed().toList(), failure);
+    }
+
+    /**
+     * Generates straight-line code and counted loops over EAX to EDX, with ESI as the loop counter and EDI as one.
+     */
+    private static void generate(Random random, List<Instruction> program, Labels labels) {
+        RegisterName[] registers = {EAX, EBX, ECX, EDX};
+        program.add(new MovInstruction(null, EDI, 1));
+        for (int block = 0; block < 3; block++) {
+            String label = null;
+            if (random.nextBoolean()) {
+                program.add(new MovInstruction(null, ESI, 1 + random.nextInt(4)));
+                label = "l" + block;
+                labels.addLabel(label, program.size());
+            }
+            int length = 1 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                RegisterName result = registers[random.nextInt(registers.length)];
+                RegisterName source = registers[random.nextInt(registers.length)];
+                String instructionLabel = (i == 0) ? label : null;
+                program.add(switch (random.nextInt(7)) {
+                    case 0 -> new AddInstruction(instructionLabel, result, source);
+                    case 1 -> new SubInstruction(instructionLabel, result, source);
+                    case 2 -> new MulInstruction(instructionLabel, result, source);
+                    case 3 -> new DivInstruction(instructionLabel, result, source);
+                    case 4 -> new OutInstruction(instructionLabel, source);
+                    default -> new MovInstruction(instructionLabel, result, random.nextInt(5) - 1);
+                });
+            }
+            if (label != null) {
+                program.add(new SubInstruction(null, ESI, EDI));
+                program.add(new JnzInstruction(null, ESI, label));
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package sml.output;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.DivInstruction;
+import sml.instruction.OutInstruction;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class BufferedSinkTest {
+    private final String separator = System.lineSeparator();
+    private ByteArrayOutputStream stream;
+
+    @BeforeEach
+    void setUp() {
+        stream = new ByteArrayOutputStream();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream = null;
+    }
+
+    @Test
+    void acceptFormatsLikePrintln() {
+        BufferedSink sink = new BufferedSink(stream);
+        int[] values = {0, 7, -7, 10, 99, 100, -100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        StringBuilder expected = new StringBuilder();
+        for (int value : values) {
+            sink.accept(value);
+            expected.append(value).append(separator);
+        }
+        assertEquals("", stream.toString());
+        sink.flush();
+        assertEquals(expected.toString(), stream.toString());
+    }
+
+    @Test
+    void acceptDrainsFullBuffer() {
+        BufferedSink sink = new BufferedSink(stream, 16);
+        StringBuilder expected = new StringBuilder();
+        for (int value = -1000; value <= 1000; value += 7) {
+            sink.accept(value);
+            expected.append(value).append(separator);
+        }
+        assertNotEquals(0, stream.size());
+        sink.flush();
+        assertEquals(expected.toString(), stream.toString());
+    }
+
+    @Test
+    void constructTooSmall() {
+        assertThrows(IllegalArgumentException.class, () -> new BufferedSink(stream, 4));
+    }
+
+    @Test
+    void machineFlushesOnFailure() {
+        Machine machine = new Machine(new Registers());
+        machine.getProgram().addAll(List.of(
+                new OutInstruction(null, EAX),
+                new DivInstruction(null, EAX, EBX)));
+        machine.setOutput(new BufferedSink(stream));
+        assertThrows(ArithmeticException.class, machine::execute);
+        assertEquals("0" + separator, stream.toString());
+    }
+}
@@ -0,0 +1,40 @@
+package sml.output;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectingSinkTest {
+    private CollectingSink sink;
+
+    @BeforeEach
+    void setUp() {
+        sink = new CollectingSink();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink = null;
+    }
+
+    @Test
+    void acceptKeepsOrder() {
+        for (int i = 0; i < 100; i++)
+            sink.accept(i * i);
+        assertEquals(100, sink.size());
+        int[] values = sink.toArray();
+        assertEquals(0, values[0]);
+        assertEquals(99 * 99, values[99]);
+    }
+
+    @Test
+    void clear() {
+        sink.accept(1);
+        sink.clear();
+        sink.accept(2);
+        assertArrayEquals(new int[]{2}, sink.toArray());
+        assertEquals("[2]", sink.toString());
+    }
+}
@@ -0,0 +1,100 @@
+package sml.profile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class ProfilerTest {
+    private Machine machine;
+    private Profiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        profiler = new Profiler();
+        machine.setOutput(value -> { });
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        profiler = null;
+    }
+
+    @Test
+    void executeFactorial() throws IOException {
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.link();
+        machine.setEngine(profiler);
+        machine.execute();
+        assertEquals(720, machine.getRegisters().get(EBX));
+
+        Profile profile = profiler.getProfile();
+        assertEquals(1, profile.count(0));
+        assertEquals(6, profile.count(3));
+        assertEquals(5, profile.taken(5));
+        assertEquals(1, profile.notTaken(5));
+        assertEquals(0, profile.notTaken(3));
+        assertEquals(3 + 6 * 3 + 1, profile.total());
+
+        Map<String, Long> opcodes = profile.opcodeCounts();
+        assertEquals(List.of("mul", "sub", "jnz", "mov", "out"), List.copyOf(opcodes.keySet()));
+        assertEquals(6, opcodes.get("mul"));
+        assertEquals(3, opcodes.get("mov"));
+
+        assertEquals(List.of(Profile.ENTRY, "f3"), List.copyOf(profile.regionNanos().keySet()));
+
+        assertEquals(List.of(new Profile.Loop("f3", 3, 5, 5, 18)), profile.hotLoops());
+        assertTrue(profile.toString().contains("f3"));
+    }
+
+    @Test
+    void hotLoopsRanked() {
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("outer", 2);
+        machine.getLabels().addLabel("inner", 4);
+        program.add(new MovInstruction(null, EAX, 10));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new MovInstruction("outer", EBX, 20));
+        program.add(new OutInstruction(null, EAX));
+        program.add(new SubInstruction("inner", EBX, ECX));
+        program.add(new JnzInstruction(null, EBX, "inner"));
+        program.add(new SubInstruction(null, EAX, ECX));
+        program.add(new JnzInstruction(null, EAX, "outer"));
+        machine.link();
+        machine.setEngine(profiler);
+        machine.execute();
+
+        List<Profile.Loop> loops = profiler.getProfile().hotLoops();
+        assertEquals(List.of("outer", "inner"), loops.stream().map(Profile.Loop::label).toList());
+        assertEquals(9, loops.get(0).iterations());
+        assertEquals(10 * 19, loops.get(1).iterations());
+        assertEquals(10 * (1 + 1 + 40 + 2), loops.get(0).executions());
+        assertEquals(List.of(Profile.ENTRY, "outer", "inner"),
+                List.copyOf(profiler.getProfile().regionNanos().keySet()));
+    }
+
+    @Test
+    void executeFailureKeepsProfile() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new DivInstruction(null, EAX, EBX));
+        program.add(new OutInstruction(null, EAX));
+        machine.setEngine(profiler);
+        assertThrows(ArithmeticException.class, machine::execute);
+        assertEquals(1, profiler.getProfile().count(1));
+        assertEquals(0, profiler.getProfile().count(2));
+    }
+}
@@ -0,0 +1,179 @@
+package sml.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.*;
+import sml.output.CollectingSink;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class SchedulerTest {
+    private Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new Scheduler(1, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+        scheduler = null;
+    }
+
+    private static Machine factorial() throws IOException {
+        Machine machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.setOutput(new CollectingSink());
+        return machine;
+    }
+
+    private static Machine infinite() {
+        Machine machine = new Machine(new Registers());
+        List<Instruction> program = machine.getProgram();
+        machine.getLabels().addLabel("l", 1);
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new AddInstruction("l", EBX, EAX));
+        program.add(new JnzInstruction(null, EAX, "l"));
+        return machine;
+    }
+
+    @Test
+    void resumeStopsAtBackwardJump() {
+        Machine machine = infinite();
+        assertEquals(9, machine.resume(8));
+        assertEquals(4, machine.getRegisters().get(EBX));
+        assertFalse(machine.isFinished());
+        assertEquals(2, machine.resume(1));
+        assertEquals(5, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void submitRunsToCompletion() throws Exception {
+        Machine machine = factorial();
+        Task task = scheduler.submit(machine).completion().get(10, TimeUnit.SECONDS);
+        assertEquals(Task.State.FINISHED, task.getState());
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertArrayEquals(new int[]{720}, ((CollectingSink) machine.getOutput()).toArray());
+        assertEquals(3 + 6 * 3 + 1, task.getSteps());
+        assertEquals(1, task.getSlices());
+    }
+
+    @Test
+    void submitStopsAtStepLimit() throws Exception {
+        Task task = scheduler.submit(infinite(), 10_000, Long.MAX_VALUE).completion().get(10, TimeUnit.SECONDS);
+        assertEquals(Task.State.STEP_LIMIT, task.getState());
+        assertTrue(task.getSteps() >= 10_000 && task.getSteps() <= 10_002);
+        assertEquals(10, task.getSlices());
+    }
+
+    @Test
+    void submitStopsAtTimeLimit() throws Exception {
+        Task task = scheduler.submit(infinite(), Long.MAX_VALUE, TimeUnit.MILLISECONDS.toNanos(20))
+                .completion().get(10, TimeUnit.SECONDS);
+        assertEquals(Task.State.TIME_LIMIT, task.getState());
+        assertTrue(task.getRunNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void cancelStopsQueuedTask() throws Exception {
+        Task task = scheduler.submit(infinite());
+        task.cancel();
+        assertEquals(Task.State.CANCELLED, task.completion().get(10, TimeUnit.SECONDS).getState());
+    }
+
+    @Test
+    void submitIsolatesFailures() throws Exception {
+        Machine machine = new Machine(new Registers());
+        machine.getProgram().add(new DivInstruction(null, EAX, EBX));
+        Task task = scheduler.submit(machine).completion().get(10, TimeUnit.SECONDS);
+        assertEquals(Task.State.FAILED, task.getState());
+        assertInstanceOf(ArithmeticException.class, task.getError());
+    }
+
+    @Test
+    void stuckProgramsShareTheCarrier() throws Exception {
+        CountDownLatch queued = new CountDownLatch(1);
+        Machine blocker = new Machine(new Registers());
+        blocker.getProgram().add(new OutInstruction(null, EAX));
+        blocker.setOutput(value -> {
+            try {
+                queued.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        scheduler.submit(blocker);
+
+        Task first = scheduler.submit(infinite(), 100_000, Long.MAX_VALUE);
+        Task second = scheduler.submit(infinite(), 100_000, Long.MAX_VALUE);
+        Machine machine = factorial();
+        long[] slicesBefore = new long[2];
+        machine.setOutput(value -> {
+            slicesBefore[0] = first.getSlices();
+            slicesBefore[1] = second.getSlices();
+        });
+        Task task = scheduler.submit(machine);
+        SchedulerStatistics statistics = scheduler.statistics();
+        assertEquals(4, statistics.active());
+        queued.countDown();
+
+        assertEquals(Task.State.FINISHED, task.completion().get(10, TimeUnit.SECONDS).getState());
+        assertArrayEquals(new long[]{1, 1}, slicesBefore);
+        assertEquals(Task.State.STEP_LIMIT, first.completion().get(10, TimeUnit.SECONDS).getState());
+        assertEquals(Task.State.STEP_LIMIT, second.completion().get(10, TimeUnit.SECONDS).getState());
+        assertEquals(100, first.getSlices());
+        assertEquals(100, second.getSlices());
+
+        statistics = scheduler.statistics();
+        assertEquals(0, statistics.active());
+        assertEquals(2, statistics.finished());
+        assertEquals(2, statistics.exceeded());
+        assertEquals(198, statistics.preemptions());
+        assertEquals(1.0, statistics.fairness());
+    }
+
+    @Test
+    void closeCancelsActiveTasks() throws Exception {
+        Task first = scheduler.submit(infinite());
+        Task second = scheduler.submit(infinite());
+        while (second.getSlices() < 5)
+            Thread.sleep(1);
+        assertTrue(scheduler.statistics().fairness() > 0.5);
+
+        scheduler.close();
+        assertEquals(Task.State.CANCELLED, first.completion().get(10, TimeUnit.SECONDS).getState());
+        assertEquals(Task.State.CANCELLED, second.completion().get(10, TimeUnit.SECONDS).getState());
+        assertEquals(2, scheduler.statistics().cancelled());
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(infinite()));
+    }
+
+    @Test
+    void closeCancelsQueuedTasksAfterTimeout() throws Exception {
+        Scheduler scheduler = new Scheduler(1, Long.MAX_VALUE);
+        Task running = scheduler.submit(infinite(), 20_000_000, Long.MAX_VALUE);
+        Task queued = scheduler.submit(infinite());
+        while (running.getState() != Task.State.RUNNING)
+            Thread.sleep(1);
+
+        assertFalse(scheduler.close(1, TimeUnit.MILLISECONDS));
+        assertEquals(Task.State.CANCELLED, queued.completion().getNow(null).getState());
+        assertEquals(0, queued.getSlices());
+        // the running time slice is not interrupted, and ends with its budget
+        assertEquals(Task.State.STEP_LIMIT, running.completion().get(10, TimeUnit.SECONDS).getState());
+        assertEquals(1, scheduler.statistics().cancelled());
+        assertEquals(1, scheduler.statistics().exceeded());
+    }
+}
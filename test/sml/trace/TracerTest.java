@@ -0,0 +1,191 @@
+package sml.trace;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.compiler.PackedProgram;
+import sml.instruction.*;
+import sml.optimizer.PeepholeOptimizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sml.Registers.Register.*;
+
+class TracerTest {
+    private Machine machine;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        machine = new Machine(new Registers());
+        new Translator("test_program.txt").readAndTranslate(machine.getLabels(), machine.getProgram());
+        machine.setOutput(value -> { });
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+    }
+
+    @Test
+    void executeRecordsEveryInstruction() {
+        TraceBuffer buffer = new TraceBuffer(64);
+        machine.setEngine(new Tracer(buffer));
+        machine.execute();
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertEquals(22, buffer.count());
+
+        List<TraceRecord> records = buffer.records();
+        assertEquals(new TraceRecord(0, PackedProgram.MOV, Registers.indexOf(EAX), 6), records.get(0));
+        assertEquals(new TraceRecord(3, PackedProgram.MUL, Registers.indexOf(EBX), 6), records.get(3));
+        assertEquals(new TraceRecord(5, PackedProgram.JNZ, TraceRecord.NONE, 3), records.get(5));
+        assertEquals(new TraceRecord(5, PackedProgram.JNZ, TraceRecord.NONE, 6), records.get(20));
+        assertEquals(new TraceRecord(6, PackedProgram.OUT, TraceRecord.NONE, 720), records.get(21));
+    }
+
+    @Test
+    void recordKeepsLatestRecords() {
+        TraceBuffer full = new TraceBuffer(64);
+        machine.setEngine(new Tracer(full));
+        machine.execute();
+
+        TraceBuffer buffer = new TraceBuffer(5);
+        assertEquals(8, buffer.capacity());
+        machine.setEngine(new Tracer(buffer));
+        machine.execute();
+        assertEquals(22, buffer.count());
+        assertEquals(full.records().subList(14, 22), buffer.records());
+
+        buffer.clear();
+        assertEquals(0, buffer.records().size());
+    }
+
+    @Test
+    void closeCompletesSpillFile() throws IOException {
+        Path file = directory.resolve("trace.smlt");
+        TraceBuffer memory = new TraceBuffer(1 << 10);
+        machine.setEngine(new Tracer(memory));
+        machine.execute();
+
+        try (TraceBuffer buffer = new TraceBuffer(4, file)) {
+            machine.setEngine(new Tracer(buffer));
+            machine.execute();
+            machine.execute();
+            assertEquals(44, buffer.count());
+        }
+        List<TraceRecord> records = TraceDecoder.read(file);
+        assertEquals(44, records.size());
+        assertEquals(memory.records(), records.subList(0, 22));
+        assertEquals(memory.records(), records.subList(22, 44));
+    }
+
+    @Test
+    void recordRejectsRecordsAfterClose() throws IOException {
+        TraceBuffer buffer = new TraceBuffer(4, directory.resolve("trace.smlt"));
+        machine.setEngine(new Tracer(buffer));
+        machine.execute();
+        buffer.close();
+        buffer.close();
+        assertEquals(22, buffer.count());
+        assertEquals(4, buffer.records().size());
+        assertThrows(IllegalStateException.class, machine::execute);
+        assertEquals(22, buffer.count());
+        assertEquals(22, TraceDecoder.read(directory.resolve("trace.smlt")).size());
+
+        TraceBuffer memory = new TraceBuffer(64);
+        memory.close();
+        machine.setEngine(new Tracer(memory));
+        assertThrows(IllegalStateException.class, machine::execute);
+    }
+
+    @Test
+    void constructorsRejectInvalidCapacities() {
+        assertThrows(IllegalArgumentException.class, () -> new TraceBuffer(0));
+        assertThrows(IllegalArgumentException.class, () -> new TraceBuffer((1 << 28) + 1));
+        Path file = directory.resolve("invalid.smlt");
+        assertThrows(IllegalArgumentException.class, () -> new TraceBuffer(-1, file));
+        assertFalse(Files.exists(file));
+        assertEquals(8, new TraceBuffer(5).capacity());
+    }
+
+    @Test
+    void closeCompletesLargeSpillFile() throws IOException {
+        // the smallest capacity whose ring buffers do not fit sixteen to a mapped region
+        int capacity = 1 << 23;
+        assertTrue(TraceBuffer.regionBytes(capacity) <= Integer.MAX_VALUE);
+        assertEquals(0, TraceBuffer.regionBytes(1 << 28) % (TraceBuffer.RECORD_INTS * Integer.BYTES));
+        Path file = directory.resolve("large.smlt");
+        try (TraceBuffer buffer = new TraceBuffer(capacity, file)) {
+            for (int i = 0; i <= capacity; i++)
+                buffer.record(i, PackedProgram.MOV, 0, i);
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            assertEquals(TraceBuffer.MAGIC, in.readInt());
+            assertEquals(TraceBuffer.VERSION, in.readInt());
+            assertEquals(capacity + 1L, in.readLong());
+            in.skipNBytes((long) capacity * TraceBuffer.RECORD_INTS * Integer.BYTES);
+            assertEquals(List.of(capacity, PackedProgram.MOV, 0, capacity),
+                    List.of(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+        }
+    }
+
+    @Test
+    void readRejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.smlt");
+        Files.writeString(file, "not a trace at all");
+        assertThrows(IOException.class, () -> TraceDecoder.read(file));
+    }
+
+    @Test
+    void printDecodesAsSml() {
+        TraceBuffer buffer = new TraceBuffer(64);
+        machine.setEngine(new Tracer(buffer));
+        machine.execute();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceDecoder.print(buffer.records().subList(3, 6), machine.getProgram(),
+                new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        assertEquals(String.join(System.lineSeparator(),
+                "         3  f3: mul EBX EAX          ; EBX = 6",
+                "         4  sub EAX ECX              ; EAX = 5",
+                "         5  jnz EAX f3               ; -> 3",
+                ""), bytes.toString(StandardCharsets.UTF_8));
+        assertEquals("         6  out                      ; out 720",
+                TraceDecoder.decode(buffer.records().get(21), null));
+    }
+
+    @Test
+    void executeTracesSuperinstructions() {
+        PeepholeOptimizer.optimize(machine);
+        TraceBuffer buffer = new TraceBuffer(64);
+        machine.setEngine(new Tracer(buffer));
+        machine.execute();
+        assertEquals(720, machine.getRegisters().get(EBX));
+        assertTrue(buffer.records().stream().anyMatch(record -> record.opcode() == TraceRecord.OTHER));
+        assertTrue(buffer.count() < 22);
+    }
+
+    @Test
+    void executeTracesUntilFailure() {
+        machine.getProgram().clear();
+        machine.getProgram().add(new MovInstruction(null, EAX, 1));
+        machine.getProgram().add(new DivInstruction(null, EAX, EBX));
+        TraceBuffer buffer = new TraceBuffer(8);
+        machine.setEngine(new Tracer(buffer));
+        assertThrows(ArithmeticException.class, machine::execute);
+        assertEquals(List.of(new TraceRecord(0, PackedProgram.MOV, Registers.indexOf(EAX), 1)), buffer.records());
+    }
+}